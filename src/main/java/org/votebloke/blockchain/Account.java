@@ -155,7 +155,7 @@ public class Account {
     return tallyTransaction;
   }
 
-  private PrivateKey getPrivateKey() {
+  PrivateKey getPrivateKey() {
     return privateKey;
   }
 }
@@ -0,0 +1,261 @@
+package org.votebloke.blockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import org.springframework.lang.NonNull;
+
+/**
+ * Validates batches of Transactions concurrently.
+ *
+ * <p>Every Transaction is validated with Transaction.validate, which includes its ECDSA signature
+ * check. The Transactions are handed out to at most parallelism workers in ascending order. Once a
+ * Transaction fails, the workers do not start Transactions past it, yet finish those before it, so
+ * the reported failure is always the first failing Transaction of the batch.
+ *
+ * <p>The calling thread validates Transactions as well, and workers that have not started by the
+ * time it runs out of Transactions are withdrawn instead of awaited. A batch therefore never
+ * waits for queued work, and batches may be nested, for example a Block validated while a Chain
+ * is audited, even on a pool whose threads are all busy.
+ */
+public class BatchVerifier implements AutoCloseable {
+  /**
+   * The BatchVerifier used when none is provided. It is created on first use, runs daemon threads
+   * and lives as long as the class; it is never closed.
+   */
+  private static BatchVerifier sharedVerifier;
+
+  /** The executor running the workers. */
+  private final ExecutorService executor;
+
+  /** Whether the executor was created by this BatchVerifier and is shut down on close. */
+  private final boolean ownsExecutor;
+
+  /** The number of workers validating a single batch. */
+  private final int parallelism;
+
+  /**
+   * A constructor for BatchVerifier. Creates a bounded pool of daemon threads.
+   *
+   * @param parallelism the number of threads validating Transactions
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public BatchVerifier(int parallelism) throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be greater than 0");
+    }
+    this.executor =
+        Executors.newFixedThreadPool(
+            parallelism,
+            runnable -> {
+              Thread thread = new Thread(runnable, "batch-verifier");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.ownsExecutor = true;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * A constructor for BatchVerifier using the provided executor. The executor is not shut down on
+   * close.
+   *
+   * @param executor the executor running the workers
+   * @param parallelism the number of workers validating a single batch
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public BatchVerifier(@NonNull ExecutorService executor, int parallelism)
+      throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be greater than 0");
+    }
+    this.executor = executor;
+    this.ownsExecutor = false;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Returns the BatchVerifier shared by callers, which do not provide their own. It runs one daemon
+   * thread per available processor, so it does not keep the JVM alive. It is created on the first
+   * call and is never closed; callers must not close it.
+   *
+   * @return the shared BatchVerifier
+   */
+  static synchronized BatchVerifier shared() {
+    if (sharedVerifier == null) {
+      sharedVerifier = new BatchVerifier(Runtime.getRuntime().availableProcessors());
+    }
+    return sharedVerifier;
+  }
+
+  /**
+   * Validates a batch of Transactions.
+   *
+   * @param transactions the Transactions to validate
+   * @return the result identifying the first invalid Transaction by its position in the batch
+   */
+  public VerificationResult verify(@NonNull List<Transaction> transactions) {
+    int failed = findFirstInvalid(transactions);
+    if (failed < 0) {
+      return VerificationResult.VALID;
+    }
+    return new VerificationResult(-1, failed, transactions.get(failed));
+  }
+
+  /**
+   * Validates every Transaction of a batch. Unlike {@link #verify(List)}, validation does not stop
+   * at the first invalid Transaction.
+   *
+   * @param transactions the Transactions to validate
+   * @return whether each Transaction is valid, by its position in the batch
+   */
+  public boolean[] validateEach(@NonNull List<Transaction> transactions) {
+    boolean[] valid = new boolean[transactions.size()];
+    findFirstInvalid(
+        transactions.size(),
+        i -> {
+          valid[i] = isValid(transactions.get(i));
+          return true;
+        });
+    return valid;
+  }
+
+  /**
+   * Validates the Transactions of a Block.
+   *
+   * @param block the Block to verify
+   * @return the result identifying the first invalid Transaction by its position in the Block
+   */
+  public VerificationResult verify(@NonNull Block block) {
+    return verify(block.getTransactions());
+  }
+
+  /**
+   * Validates the Transactions of a range of Blocks of a Chain as a single batch.
+   *
+   * @param chain the Chain holding the Blocks
+   * @param from the position of the first verified Block, inclusive
+   * @param to the position of the last verified Block, exclusive
+   * @return the result identifying the first invalid Transaction by the position of its Block and
+   *     its position in that Block
+   */
+  public VerificationResult verify(@NonNull Chain chain, int from, int to) {
+    List<Transaction> transactions = new ArrayList<>();
+    int[] blockStarts = new int[to - from];
+    for (int position = from; position < to; position++) {
+      blockStarts[position - from] = transactions.size();
+      transactions.addAll(chain.getBlockAt(position).getTransactions());
+    }
+
+    int failed = findFirstInvalid(transactions);
+    if (failed < 0) {
+      return VerificationResult.VALID;
+    }
+    int block = blockStarts.length - 1;
+    while (blockStarts[block] > failed) {
+      block--;
+    }
+    return new VerificationResult(
+        from + block, failed - blockStarts[block], transactions.get(failed));
+  }
+
+  /** Shuts down the executor, if it was created by this BatchVerifier. */
+  @Override
+  public void close() {
+    if (ownsExecutor) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Finds the first invalid Transaction of a batch.
+   *
+   * @param transactions the Transactions to validate
+   * @return the position of the first invalid Transaction; -1 if all are valid
+   */
+  private int findFirstInvalid(List<Transaction> transactions) {
+    return findFirstInvalid(transactions.size(), i -> isValid(transactions.get(i)));
+  }
+
+  /**
+   * Finds the first invalid item of a batch. Items are validated concurrently; validation stops at
+   * items past the first invalid item found so far, so the result is the lowest invalid position
+   * regardless of scheduling. The calling thread runs a worker itself; workers still queued once
+   * it returns have no items left and are withdrawn, so only running workers are awaited.
+   *
+   * @param size the number of items
+   * @param validator validates the item at a position
+   * @return the position of the first invalid item; -1 if all are valid
+   */
+  int findFirstInvalid(int size, IntPredicate validator) {
+    AtomicInteger cursor = new AtomicInteger(0);
+    AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+    Runnable worker =
+        () -> {
+          for (int i = cursor.getAndIncrement();
+              i < size && i < firstFailure.get();
+              i = cursor.getAndIncrement()) {
+            if (!validator.test(i)) {
+              firstFailure.accumulateAndGet(i, Math::min);
+            }
+          }
+        };
+
+    int helpers = Math.max(Math.min(parallelism, size) - 1, 0);
+    AtomicInteger unstarted = new AtomicInteger(helpers);
+    CountDownLatch finished = new CountDownLatch(helpers);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Runnable helper =
+        () -> {
+          if (unstarted.getAndDecrement() <= 0) {
+            return;
+          }
+          try {
+            worker.run();
+          } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            finished.countDown();
+          }
+        };
+
+    for (int i = 0; i < helpers; i++) {
+      executor.execute(helper);
+    }
+    worker.run();
+    for (int i = unstarted.getAndSet(0); i > 0; i--) {
+      finished.countDown();
+    }
+    try {
+      finished.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    if (failure.get() != null) {
+      throw new RuntimeException(failure.get());
+    }
+
+    int failed = firstFailure.get();
+    return failed == Integer.MAX_VALUE ? -1 : failed;
+  }
+
+  /**
+   * Validates a single Transaction.
+   *
+   * @param transaction the Transaction to validate
+   * @return true if the Transaction is valid; false if it is invalid or its validation throws
+   */
+  private static boolean isValid(Transaction transaction) {
+    try {
+      return transaction.validate();
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+}
@@ -1,35 +1,48 @@
 package org.votebloke.blockchain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.security.PublicKey;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.springframework.lang.NonNull;
 
 /** This is a Block class. Represents a single block in the blockchain. */
-public class Block {
+public class Block implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   /**
-   * The id of this Block. ID of a Block is calculated based on the time stamp, previous hash and
-   * block version.
+   * The id of this Block. ID of a Block is calculated based on the time stamp, previous hash, block
+   * version and mining difficulty.
    */
-  private String id;
+  private Hash256 id;
   /**
    * The mined hash of this Block. Hash of this Block is mined based on the hash of the previous
    * Block in the Chain, the time stamp of creating this Block, the version of this Block and
    * Transactions in this Block.
    */
-  private String hash = "";
+  private Hash256 hash;
 
   /** The hash of the previous Block in the Chain. */
-  private final String previousHash;
+  private final Hash256 previousHash;
 
   /** The Transactions added to this Block. */
   private ArrayList<Transaction> transactions = new ArrayList<>();
 
   /** The time stamp of the creation of this Block. */
-  private final Date timeStamp = new Date(System.currentTimeMillis());
+  private final Date timeStamp;
 
   /** The nonce of this Block. */
   private int nonce = 0;
@@ -38,25 +51,52 @@ public class Block {
   private final String blockVersion;
 
   /**
-   * The mining difficulty of this Block. This is the number of leading zeros required in the mined
-   * hash.
+   * The mining difficulty of this Block. This is the number of leading zero bits required in the
+   * mined hash.
    */
   private final int miningDifficulty;
 
+  /** The public ECDSA key of the authority, which sealed this Block; null if mined. */
+  private PublicKey sealSigner;
+
+  /** The signature of the hash of this Block by the sealing authority; null if mined. */
+  private byte[] sealSignature;
+
+  /** The number of nonces tried by a mining worker between checks for changed Transactions. */
+  private static final int MINING_BATCH_SIZE = 4096;
+
+  /** The version of the Transactions in this Block. Incremented whenever a Transaction is added. */
+  private volatile int templateVersion = 0;
+
+  /**
+   * The set of unconsumed TransactionOutputs. Those outputs were not yet used up by Transactions.
+   * Not serialized or stored; a Block read back starts with an empty set.
+   */
+  private transient UtxoSet unconsumedOutputs;
+
+  /** The outputs spent and created by the Transactions in this Block. */
+  private BlockUndo undo = new BlockUndo();
+
   /**
-   * The list of unconsumed TransactionOutputs. Those outputs were not yet used up by Transactions.
+   * The pool of pending Transactions waiting for their signatures. Shared with the Blocks built on
+   * this Block; not serialized.
    */
-  private ArrayList<TransactionOutput> unconsumedOutputs;
+  private transient Mempool mempool;
 
-  /** The list of unsigned Transactions. */
-  private ArrayList<Transaction> unsignedTransactions;
+  /**
+   * The Merkle tree over the ids of the Transactions of this Block. Extended as Transactions are
+   * added; not serialized.
+   */
+  private transient MerkleTree merkleTree = new MerkleTree();
 
   /**
    * Constructor for the Block class.
    *
-   * @param previousHash the hash of the previous Block
+   * @param previousHash the 64-digit hex hash of the previous Block; any other string, such as
+   *     "0" for a genesis Block, is hashed to obtain the previous hash
    * @param blockVersion the version of this Block
-   * @param miningDifficulty the mining difficulty of this Block
+   * @param miningDifficulty the mining difficulty of this Block - the number of leading zero bits
+   *     required in the mined hash
    * @param unconsumedOutputs the pool of unconsumed TransactionOutputs
    */
   public Block(
@@ -64,20 +104,24 @@ public class Block {
       String blockVersion,
       int miningDifficulty,
       ArrayList<TransactionOutput> unconsumedOutputs) {
-    this.previousHash = previousHash;
+    this.previousHash = Hash256.fromString(previousHash);
+    this.timeStamp = new Date(System.currentTimeMillis());
     this.blockVersion = blockVersion;
     this.miningDifficulty = miningDifficulty;
-    this.unconsumedOutputs = Objects.requireNonNullElseGet(unconsumedOutputs, ArrayList::new);
-    this.unsignedTransactions = new ArrayList<>();
+    this.unconsumedOutputs =
+        unconsumedOutputs == null ? new UtxoSet() : new UtxoSet(unconsumedOutputs);
+    this.mempool = new Mempool();
     id = this.calculateId();
   }
 
   /**
    * Constructor for the Block class.
    *
-   * @param previousHash the hash of the previous Block
+   * @param previousHash the 64-digit hex hash of the previous Block; any other string, such as
+   *     "0" for a genesis Block, is hashed to obtain the previous hash
    * @param blockVersion the version of this Block
-   * @param miningDifficulty the mining difficulty of this Block
+   * @param miningDifficulty the mining difficulty of this Block - the number of leading zero bits
+   *     required in the mined hash
    * @param unconsumedOutputs the pool of unconsumed TransactionOutputs
    * @param unsignedTransactions the list of unsigned Transaction objects
    */
@@ -87,12 +131,114 @@ public class Block {
       int miningDifficulty,
       ArrayList<TransactionOutput> unconsumedOutputs,
       ArrayList<Transaction> unsignedTransactions) {
-    this.previousHash = previousHash;
+    this.previousHash = Hash256.fromString(previousHash);
+    this.timeStamp = new Date(System.currentTimeMillis());
+    this.blockVersion = blockVersion;
+    this.miningDifficulty = miningDifficulty;
+    this.unconsumedOutputs =
+        unconsumedOutputs == null ? new UtxoSet() : new UtxoSet(unconsumedOutputs);
+    this.mempool = new Mempool();
+    if (unsignedTransactions != null) {
+      unsignedTransactions.forEach(mempool::add);
+    }
+    id = this.calculateId();
+  }
+
+  /**
+   * Constructor for the Block class, which builds on a parent Block.
+   *
+   * <p>The unconsumed outputs of this Block are branched from the parent in constant time; the
+   * state of the parent is not affected by Transactions added to this Block.
+   *
+   * @param parent the sealed previous Block
+   * @param blockVersion the version of this Block
+   * @param miningDifficulty the mining difficulty of this Block - the number of leading zero bits
+   *     required in the mined hash
+   * @throws IllegalArgumentException if the parent Block was not mined or sealed
+   */
+  public Block(@NonNull Block parent, String blockVersion, int miningDifficulty)
+      throws IllegalArgumentException {
+    this(parent, blockVersion, miningDifficulty, parent.getMempool());
+  }
+
+  /**
+   * Constructor for the Block class, which builds on a parent Block and takes its pending
+   * Transactions from a provided Mempool.
+   *
+   * @param parent the sealed previous Block
+   * @param blockVersion the version of this Block
+   * @param miningDifficulty the mining difficulty of this Block - the number of leading zero bits
+   *     required in the mined hash
+   * @param mempool the pool of pending Transactions
+   * @throws IllegalArgumentException if the parent Block was not mined or sealed
+   */
+  public Block(
+      @NonNull Block parent, String blockVersion, int miningDifficulty, @NonNull Mempool mempool)
+      throws IllegalArgumentException {
+    if (parent.getHashDigest() == null) {
+      throw new IllegalArgumentException("The parent Block must be mined or sealed");
+    }
+    this.previousHash = parent.getHashDigest();
+    this.timeStamp = new Date(System.currentTimeMillis());
     this.blockVersion = blockVersion;
     this.miningDifficulty = miningDifficulty;
-    this.unconsumedOutputs = Objects.requireNonNullElseGet(unconsumedOutputs, ArrayList::new);
-    this.unsignedTransactions = unsignedTransactions;
+    this.unconsumedOutputs = parent.getUtxoSet().branch();
+    this.mempool = mempool;
+    id = this.calculateId();
+  }
+
+  /**
+   * Constructor for the Block class, which restores a stored Block, see BlockCodec. The Merkle
+   * root of the header is not used; it is recalculated from the Transactions. The id is calculated
+   * before the Transactions are restored, as it was when the Block was created. The restored Block
+   * starts with empty unconsumed outputs and an empty Mempool.
+   *
+   * @param header the header of the Block
+   * @param transactions the Transactions of the Block
+   * @param undo the outputs spent and created by the Transactions
+   */
+  Block(
+      @NonNull BlockHeader header,
+      @NonNull ArrayList<Transaction> transactions,
+      @NonNull BlockUndo undo) {
+    this.previousHash = header.getPreviousHash();
+    this.timeStamp = new Date(header.getTimeStamp());
+    this.blockVersion = header.getBlockVersion();
+    this.miningDifficulty = header.getMiningDifficulty();
+    this.nonce = header.getNonce();
+    this.hash = header.getHash();
+    this.sealSigner = header.getSealSigner();
+    this.sealSignature = header.getSealSignature();
+    this.unconsumedOutputs = new UtxoSet();
+    this.mempool = new Mempool();
     id = this.calculateId();
+    this.transactions = transactions;
+    this.undo = undo;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    unconsumedOutputs = new UtxoSet();
+    mempool = new Mempool();
+    merkleTree = new MerkleTree();
+  }
+
+  /**
+   * Replaces the set of unconsumed outputs of this Block, e.g. after it was read from a BlockStore.
+   *
+   * @param unconsumedOutputs the unconsumed outputs after this Block
+   */
+  synchronized void setUtxoSet(@NonNull UtxoSet unconsumedOutputs) {
+    this.unconsumedOutputs = unconsumedOutputs;
+  }
+
+  /**
+   * Replaces the BlockUndo of this Block, e.g. with the one a Chain computed from its Transactions.
+   *
+   * @param undo the outputs spent and created by the Transactions in this Block
+   */
+  synchronized void setUndo(@NonNull BlockUndo undo) {
+    this.undo = undo;
   }
 
   /**
@@ -115,10 +261,9 @@ public class Block {
    * @param transaction the transaction to be added
    * @return true if the Transaction object was successfully added to the Block; false otherwise
    */
-  public boolean addTransaction(@NonNull Transaction transaction) {
+  public synchronized boolean addTransaction(@NonNull Transaction transaction) {
     if (transaction.getSignature() == null) {
-      getUnsignedTransactions().add(transaction);
-      return true;
+      return mempool.add(transaction);
     }
 
     if (!transaction.validate()) {
@@ -126,46 +271,380 @@ public class Block {
     }
 
     if (transaction.inputs != null) {
+      HashSet<Outpoint> own = new HashSet<>();
       for (TransactionInput inputTransaction : transaction.inputs) {
-        if (!unconsumedOutputs.contains(inputTransaction.transactionOut)) {
+        if (!own.add(inputTransaction.transactionOut.getOutpoint())
+            || !unconsumedOutputs.contains(inputTransaction.transactionOut)) {
           return false;
         }
       }
 
-      transaction.inputs.forEach(
-          transactionInput -> unconsumedOutputs.remove(transactionInput.transactionOut));
+      for (TransactionInput transactionInput : transaction.inputs) {
+        TransactionOutput spent = unconsumedOutputs.spend(transactionInput.transactionOut);
+        if (spent != null) {
+          undo.recordSpend(spent);
+        }
+      }
+    }
+    for (TransactionOutput output : transaction.outputs) {
+      unconsumedOutputs.add(output);
+      undo.recordCreate(output);
     }
-    unconsumedOutputs.addAll(transaction.outputs);
 
     this.transactions.add(transaction);
+    merkleTree.append(transaction.getIdDigest());
+    templateVersion++;
     return true;
   }
 
   /**
-   * Calculates this \code{Block}'s id. Returns a 64-digit-long representation of this Block.
+   * Adds a batch of Transactions to this Block, validating their signatures with the shared
+   * BatchVerifier.
+   *
+   * @param batch the Transactions to add, in the order they should be recorded
+   * @return the result of each Transaction, in the order of the batch
+   * @see #addTransactions(Collection, BatchVerifier)
+   */
+  public List<TransactionResult> addTransactions(@NonNull Collection<Transaction> batch) {
+    return addTransactions(batch, BatchVerifier.shared());
+  }
+
+  /**
+   * Adds a batch of Transactions to this Block.
+   *
+   * <p>The signed Transactions are validated concurrently, without holding the lock of this
+   * Block. Their inputs are then checked in a single pass in the order of the batch: an input must
+   * be unconsumed or created by an earlier accepted Transaction of the batch, and must not be
+   * spent by an earlier accepted Transaction of the batch or earlier in the same Transaction. An
+   * output spent and created again, as a Vote does with its Elections, can be spent again. All
+   * accepted Transactions are applied to the unconsumed outputs at once, so a Transaction spending
+   * an output created earlier in the batch is recorded after its parent. Unsigned Transactions are
+   * added to the Mempool, as by addTransaction.
+   *
+   * @param batch the Transactions to add, in the order they should be recorded
+   * @param verifier the BatchVerifier validating the signed Transactions
+   * @return the result of each Transaction, in the order of the batch
+   */
+  public List<TransactionResult> addTransactions(
+      @NonNull Collection<Transaction> batch, @NonNull BatchVerifier verifier) {
+    List<Transaction> candidates = new ArrayList<>(batch);
+    List<Transaction> signed = new ArrayList<>();
+    for (Transaction transaction : candidates) {
+      if (transaction.getSignature() != null) {
+        signed.add(transaction);
+      }
+    }
+    boolean[] valid = verifier.validateEach(signed);
+
+    List<TransactionResult> results = new ArrayList<>(candidates.size());
+    synchronized (this) {
+      HashSet<Hash256> seen = new HashSet<>();
+      HashSet<Outpoint> spent = new HashSet<>();
+      HashSet<Outpoint> created = new HashSet<>();
+      List<Transaction> accepted = new ArrayList<>();
+      int signedIndex = 0;
+      for (Transaction transaction : candidates) {
+        if (transaction.getSignature() == null) {
+          results.add(
+              mempool.add(transaction) ? TransactionResult.PENDING : TransactionResult.DUPLICATE);
+          continue;
+        }
+        TransactionResult result;
+        if (!valid[signedIndex++]) {
+          result = TransactionResult.INVALID;
+        } else if (!seen.add(transaction.getIdDigest())) {
+          result = TransactionResult.DUPLICATE;
+        } else {
+          result = checkInputs(transaction, spent, created);
+        }
+        if (result == TransactionResult.ACCEPTED) {
+          if (transaction.inputs != null) {
+            for (TransactionInput input : transaction.inputs) {
+              Outpoint outpoint = input.transactionOut.getOutpoint();
+              created.remove(outpoint);
+              spent.add(outpoint);
+            }
+          }
+          for (TransactionOutput output : transaction.outputs) {
+            spent.remove(output.getOutpoint());
+            created.add(output.getOutpoint());
+          }
+          accepted.add(transaction);
+        }
+        results.add(result);
+      }
+
+      for (Transaction transaction : accepted) {
+        if (transaction.inputs != null) {
+          for (TransactionInput input : transaction.inputs) {
+            TransactionOutput output = unconsumedOutputs.spend(input.transactionOut);
+            if (output != null) {
+              undo.recordSpend(output);
+            }
+          }
+        }
+        for (TransactionOutput output : transaction.outputs) {
+          unconsumedOutputs.add(output);
+          undo.recordCreate(output);
+        }
+      }
+      if (!accepted.isEmpty()) {
+        transactions.addAll(accepted);
+        accepted.forEach(transaction -> merkleTree.append(transaction.getIdDigest()));
+        templateVersion++;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Checks the inputs of a valid Transaction of a batch against the unconsumed outputs and the
+   * earlier accepted Transactions of the batch.
+   *
+   * @param transaction the Transaction
+   * @param spent the outpoints spent by the earlier accepted Transactions and not created again
+   * @param created the outpoints created by the earlier accepted Transactions and not spent again
+   * @return ACCEPTED if every input is available, or the reason of the rejection
+   */
+  private TransactionResult checkInputs(
+      Transaction transaction, Set<Outpoint> spent, Set<Outpoint> created) {
+    if (transaction.inputs == null) {
+      return TransactionResult.ACCEPTED;
+    }
+    HashSet<Outpoint> own = new HashSet<>();
+    for (TransactionInput input : transaction.inputs) {
+      Outpoint outpoint = input.transactionOut.getOutpoint();
+      if (spent.contains(outpoint) || !own.add(outpoint)) {
+        return TransactionResult.DOUBLE_SPEND;
+      }
+      if (!created.contains(outpoint) && !unconsumedOutputs.contains(outpoint)) {
+        return TransactionResult.MISSING_INPUT;
+      }
+    }
+    return TransactionResult.ACCEPTED;
+  }
+
+  /**
+   * Calculates this \code{Block}'s id.
    *
    * @return this Block's id
    */
-  private String calculateId() {
-    return StringUtils.hashString(this.getHeader());
+  private Hash256 calculateId() {
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    encodeHeader(encoder);
+    return encoder.digest();
   }
 
   /** Mines the hash of this Block. */
   public void mineHash() {
-    String hashBase = getHeader() + transactions.toString();
-    String targetPrefix = new String(new char[miningDifficulty]).replace("\0", "0");
-    while (hash.equals("")) {
-      if (targetPrefix.equals(
-          StringUtils.hashString(hashBase + nonce).substring(0, miningDifficulty))) {
-        hash = StringUtils.hashString(hashBase + nonce);
-      } else {
-        nonce += 1;
+    MiningJob job = new MiningJob(this, 1);
+    searchNonce(job, 0, 1);
+    awaitMining(job);
+  }
+
+  /**
+   * Mines the hash of this Block using a dedicated pool of worker threads.
+   *
+   * @param parallelism the number of workers searching for the nonce of this Block
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public void mineHash(int parallelism) throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be greater than 0");
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      mineHash(pool, parallelism);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Mines the hash of this Block using workers submitted to the provided executor. Blocks until the
+   * hash is mined.
+   *
+   * @param executor the executor running the workers
+   * @param parallelism the number of workers searching for the nonce of this Block
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public void mineHash(@NonNull ExecutorService executor, int parallelism)
+      throws IllegalArgumentException {
+    MiningJob job = mineHashAsync(executor, parallelism);
+    try {
+      awaitMining(job);
+    } finally {
+      job.cancel(false);
+    }
+  }
+
+  /**
+   * Starts mining the hash of this Block using workers submitted to the provided executor.
+   *
+   * <p>The nonce space is split between the workers - the worker number i tries nonces i, i +
+   * parallelism, i + 2 * parallelism and so on. All workers stop as soon as one of them finds a
+   * hash matching the mining difficulty of this Block or the returned MiningJob is cancelled. If a
+   * Transaction is added to this Block while it is mined, the workers restart on the new contents.
+   *
+   * @param executor the executor running the workers
+   * @param parallelism the number of workers searching for the nonce of this Block
+   * @return the MiningJob completing with this Block once its hash is mined
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public MiningJob mineHashAsync(@NonNull ExecutorService executor, int parallelism)
+      throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be greater than 0");
+    }
+
+    MiningJob job = new MiningJob(this, parallelism);
+    for (int i = 0; i < parallelism && !job.isDone(); i++) {
+      int start = i;
+      try {
+        executor.execute(
+            () -> {
+              try {
+                searchNonce(job, start, parallelism);
+              } catch (RuntimeException e) {
+                job.completeExceptionally(e);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        job.completeExceptionally(e);
+      }
+    }
+    return job;
+  }
+
+  /**
+   * Starts mining the hash of this Block with a deadline.
+   *
+   * @param executor the executor running the workers
+   * @param parallelism the number of workers searching for the nonce of this Block
+   * @param timeout the time after which the returned MiningJob fails with a TimeoutException and
+   *     its workers stop
+   * @return the MiningJob completing with this Block once its hash is mined
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public MiningJob mineHashAsync(
+      @NonNull ExecutorService executor, int parallelism, @NonNull Duration timeout)
+      throws IllegalArgumentException {
+    MiningJob job = mineHashAsync(executor, parallelism);
+    job.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    return job;
+  }
+
+  /**
+   * Searches a slice of the nonce space for a hash matching the mining difficulty of this Block.
+   *
+   * <p>Tries nonces start, start + stride, start + 2 * stride and so on until either a matching
+   * hash is found, the MiningJob is completed by another worker or cancelled or the nonce space is
+   * exhausted. Every MINING_BATCH_SIZE nonces the worker reports its progress and restarts from
+   * the first nonce if the Transactions of this Block changed.
+   *
+   * @param job the MiningJob this worker belongs to
+   * @param start the first nonce to try
+   * @param stride the difference between consecutive nonces tried by this worker
+   */
+  private void searchNonce(MiningJob job, int start, int stride) {
+    while (!job.isDone()) {
+      int version;
+      MiningEngine engine;
+      synchronized (this) {
+        version = templateVersion;
+        engine = newMiningEngine();
+      }
+
+      int tried = 0;
+      boolean restart = false;
+      for (int candidate = start; candidate >= 0 && !job.isDone(); candidate += stride) {
+        tried++;
+        if (engine.tryNonce(candidate)) {
+          job.addNoncesTried(tried);
+          tried = 0;
+          if (completeMining(job, version, engine, candidate)) {
+            break;
+          }
+          restart = true;
+          break;
+        }
+        if (tried == MINING_BATCH_SIZE) {
+          job.addNoncesTried(tried);
+          tried = 0;
+          if (version != templateVersion) {
+            restart = true;
+            break;
+          }
+        }
       }
+      job.addNoncesTried(tried);
+
+      if (!restart) {
+        if (!job.isDone()) {
+          job.workerExhausted();
+        }
+        return;
+      }
+      job.addRestart();
+    }
+  }
+
+  /**
+   * Assigns a mined nonce to this Block and completes the MiningJob, unless the Transactions of
+   * this Block changed since the worker started or the MiningJob is already completed.
+   *
+   * @param job the MiningJob the worker belongs to
+   * @param version the version of the Transactions the worker mined
+   * @param engine the MiningEngine of the worker
+   * @param candidate the mined nonce
+   * @return true if the worker should stop; false if it should restart on the new Transactions
+   */
+  private synchronized boolean completeMining(
+      MiningJob job, int version, MiningEngine engine, int candidate) {
+    if (job.isDone()) {
+      return true;
+    }
+    if (version != templateVersion) {
+      return false;
     }
+    nonce = candidate;
+    hash = engine.hashOf(candidate);
+    job.complete(this);
+    return true;
   }
 
   /**
-   * Validates this Block.
+   * Waits for a MiningJob and rethrows its failure.
+   *
+   * @param job the MiningJob to wait for
+   */
+  private static void awaitMining(MiningJob job) {
+    try {
+      job.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Creates a MiningEngine for the current contents of this Block.
+   *
+   * <p>The hash base is the canonical encoding of the header of this Block, which covers its
+   * Transactions through their Merkle root, so its size does not depend on the Transactions.
+   *
+   * @return the MiningEngine computing the candidate hashes of this Block
+   */
+  private synchronized MiningEngine newMiningEngine() {
+    return getHeader().newMiningEngine();
+  }
+
+  /**
+   * Validates this Block. Checks the Transactions of this Block, whether the hash of this Block
+   * matches its contents and whether it has enough leading zero bits.
    *
    * @return true if this Block is valid; false otherwise
    */
@@ -176,17 +655,106 @@ public class Block {
           return false;
         }
       }
-
-      if (!StringUtils.hashString(getHeader() + transactions.toString() + nonce)
-          .equals(getHash())) {
-        return false;
-      }
     } catch (Exception e) {
-      System.out.println(e.getMessage());
       return false;
     }
 
-    return true;
+    return isHashValid();
+  }
+
+  /**
+   * Validates this Block and verifies its seal. The Transactions of this Block are validated
+   * concurrently.
+   *
+   * @param sealer the strategy the seal of this Block is verified with
+   * @param verifier the BatchVerifier validating the Transactions of this Block
+   * @return true if this Block is valid and sealed according to the sealer; false otherwise
+   */
+  public boolean isBlockValid(@NonNull BlockSealer sealer, @NonNull BatchVerifier verifier) {
+    return isHashValid() && sealer.verifySeal(this) && verifier.verify(this).isValid();
+  }
+
+  /**
+   * Checks whether the hash of this Block matches its contents and has enough leading zero bits.
+   * Does not validate the Transactions of this Block.
+   *
+   * @return true if the hash of this Block is valid; false otherwise
+   */
+  boolean isHashValid() {
+    try {
+      return calculateHash().equals(hash) && hashMeetsDifficulty();
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Validates this Block and verifies its seal.
+   *
+   * @param sealer the strategy the seal of this Block is verified with
+   * @return true if this Block is valid and sealed according to the sealer; false otherwise
+   */
+  public boolean isBlockValid(@NonNull BlockSealer sealer) {
+    return isBlockValid() && sealer.verifySeal(this);
+  }
+
+  /**
+   * Seals this Block.
+   *
+   * @param sealer the strategy sealing this Block
+   */
+  public void seal(@NonNull BlockSealer sealer) {
+    sealer.seal(this);
+  }
+
+  /**
+   * Calculates the hash of the current contents and nonce of this Block.
+   *
+   * @return the hash of this Block
+   */
+  synchronized Hash256 calculateHash() {
+    syncMerkleTree();
+    return newMiningEngine().hashOf(nonce);
+  }
+
+  /**
+   * Tests whether the hash of this Block has enough leading zero bits.
+   *
+   * @return true if the hash of this Block matches its mining difficulty; false otherwise
+   */
+  boolean hashMeetsDifficulty() {
+    return hash != null && hash.leadingZeroBits() >= miningDifficulty;
+  }
+
+  /**
+   * Assigns the hash of this Block sealed by an authority.
+   *
+   * @param hash the hash of this Block
+   * @param sealSigner the public ECDSA key of the sealing authority
+   * @param sealSignature the signature of the hash by the sealing authority
+   */
+  synchronized void setSeal(Hash256 hash, PublicKey sealSigner, byte[] sealSignature) {
+    this.hash = hash;
+    this.sealSigner = sealSigner;
+    this.sealSignature = sealSignature;
+  }
+
+  /**
+   * Returns the public ECDSA key of the authority, which sealed this Block.
+   *
+   * @return the public key of the sealing authority; null if this Block was mined
+   */
+  public PublicKey getSealSigner() {
+    return sealSigner;
+  }
+
+  /**
+   * Returns the signature of the hash of this Block by the sealing authority.
+   *
+   * @return the signature of the sealing authority; null if this Block was mined
+   */
+  public byte[] getSealSignature() {
+    return sealSignature;
   }
 
   /**
@@ -204,54 +772,91 @@ public class Block {
    * @return this Block's ID
    */
   public String getId() {
+    return this.id.toString();
+  }
+
+  /**
+   * ID getter.
+   *
+   * @return this Block's ID
+   */
+  public Hash256 getIdDigest() {
     return this.id;
   }
 
   /**
    * Hash getter.
    *
-   * @return this Block's mined hash
+   * @return this Block's mined 64-digit hex hash; an empty string if this Block is not sealed
    */
   public String getHash() {
+    return hash == null ? "" : hash.toString();
+  }
+
+  /**
+   * Hash getter.
+   *
+   * @return this Block's mined hash; null if this Block is not sealed
+   */
+  public Hash256 getHashDigest() {
     return this.hash;
   }
 
   /**
-   * Getter of unconsumed outputs of this Transaction.
+   * Returns the mining difficulty of this Block.
+   *
+   * @return the number of leading zero bits required in the mined hash of this Block
+   */
+  public int getMiningDifficulty() {
+    return this.miningDifficulty;
+  }
+
+  /**
+   * Getter of unconsumed outputs of this Block.
    *
-   * @return the unconsumed TransactionOutputs of this Block
+   * @return a copy of the unconsumed TransactionOutputs of this Block, in the order they were added
    */
-  public ArrayList<TransactionOutput> getUnconsumedOutputs() {
+  public synchronized ArrayList<TransactionOutput> getUnconsumedOutputs() {
+    return new ArrayList<>(unconsumedOutputs.outputs());
+  }
+
+  /**
+   * Getter of the set of unconsumed outputs of this Block.
+   *
+   * @return the UtxoSet of this Block
+   */
+  public UtxoSet getUtxoSet() {
     return unconsumedOutputs;
   }
 
+  /**
+   * Returns the outputs spent and created by the Transactions in this Block.
+   *
+   * @return the BlockUndo of this Block
+   */
+  public synchronized BlockUndo getUndo() {
+    return undo;
+  }
+
   /**
    * Returns entries authored by the provided public key.
    *
-   * <p>Searches through the unconsumed TransactionOutput objects stored in this Block and returns
-   * those authored by the provided ECDSA key.
+   * <p>Looks up the unconsumed TransactionOutput objects stored in this Block, which were authored
+   * by the provided ECDSA key, in the author index of the UtxoSet.
    *
    * @param author the public ECDSA key of the agent who authored the Entry objects looked for in
    *     this method
    * @return the array of the Entry objects authored by the provided public key
    */
-  public List<TransactionOutput> authoredBy(PublicKey author) {
-    List<TransactionOutput> outputs = new ArrayList<>();
-    unconsumedOutputs.forEach(
-        transactionOutput -> {
-          if (transactionOutput.isAddressedFrom(author)) {
-            outputs.add(transactionOutput);
-          }
-        });
-
-    return outputs;
+  public synchronized List<TransactionOutput> authoredBy(PublicKey author) {
+    return unconsumedOutputs.authoredBy(author);
   }
 
   /**
    * Returns entries authored by the provided public key.
    *
-   * <p>Searches through the unconsumed TransactionOutput objects stored in this Block and returns
-   * those authored by the provided ECDSA key.
+   * <p>Looks up the unconsumed TransactionOutput objects stored in this Block, which were authored
+   * by the provided ECDSA key, in the author and Entry class index of the UtxoSet.
    *
    * @param author the public ECDSA key of the agent who authored the Entry objects looked for in
    *     this method
@@ -259,18 +864,9 @@ public class Block {
    * @return the array of the TransactionOutput objects authored by the provided public key and of
    *     type specified by selectedClass
    */
-  public <T extends Entry> List<TransactionOutput> authoredBy(
+  public synchronized <T extends Entry> List<TransactionOutput> authoredBy(
       PublicKey author, Class<T> selectedClass) {
-    List<TransactionOutput> outputs = new ArrayList<>();
-    unconsumedOutputs.forEach(
-        transactionOutput -> {
-          if (transactionOutput.isAddressedFrom(author)
-              && selectedClass.isInstance(transactionOutput.data)) {
-            outputs.add(transactionOutput);
-          }
-        });
-
-    return outputs;
+    return unconsumedOutputs.authoredBy(author, selectedClass);
   }
 
   /**
@@ -280,17 +876,21 @@ public class Block {
    *     null returns all active Elections
    * @return the list of TransactionOutput objects with active Elections authored by the caller
    */
-  public ArrayList<TransactionOutput> getOpenElections(PublicKey caller) {
-    ArrayList<TransactionOutput> activeElections = new ArrayList<>();
-    unconsumedOutputs.forEach(
-        transactionOutput -> {
-          if (transactionOutput.data instanceof Elections
-              && (caller == null || transactionOutput.isAddressedFrom(caller))) {
-            activeElections.add(transactionOutput);
-          }
-        });
+  public synchronized ArrayList<TransactionOutput> getOpenElections(PublicKey caller) {
+    return new ArrayList<>(
+        caller == null
+            ? unconsumedOutputs.ofEntryClass(Elections.class)
+            : unconsumedOutputs.authoredBy(caller, Elections.class));
+  }
 
-    return activeElections;
+  /**
+   * Returns the unconsumed Votes cast in the Elections.
+   *
+   * @param electionsId the id of the Elections
+   * @return the list of TransactionOutput objects with Votes cast in the Elections
+   */
+  public synchronized ArrayList<TransactionOutput> getVotes(String electionsId) {
+    return new ArrayList<>(unconsumedOutputs.votesIn(Hash256.fromString(electionsId)));
   }
 
   /**
@@ -310,14 +910,7 @@ public class Block {
    * @return the list of unsigned Transaction objects in this Block.
    */
   public ArrayList<Transaction> getUnsignedTransactions(String keyId) {
-    ArrayList<Transaction> unsignedTransactions = new ArrayList<>();
-    unsignedTransactions.forEach(
-        transaction -> {
-          if (transaction.getSigner().equals(keyId) || keyId == null) {
-            unsignedTransactions.add(transaction);
-          }
-        });
-    return this.unsignedTransactions;
+    return new ArrayList<>(mempool.getUnsigned(keyId));
   }
 
   /**
@@ -329,6 +922,15 @@ public class Block {
     return getUnsignedTransactions(null);
   }
 
+  /**
+   * Returns the pool of pending Transactions of this Block.
+   *
+   * @return the Mempool
+   */
+  public Mempool getMempool() {
+    return mempool;
+  }
+
   /**
    * Returns the list of signed and recorded Transaction objects.
    *
@@ -344,17 +946,107 @@ public class Block {
    * @return the hash of the previous Block object in the blockchain
    */
   public final String getPreviousHash() {
+    return this.previousHash.toString();
+  }
+
+  /**
+   * Returns the hash of the previous Block in the blockchain.
+   *
+   * @return the hash of the previous Block object in the blockchain
+   */
+  public final Hash256 getPreviousHashDigest() {
     return this.previousHash;
   }
 
   /**
-   * Returns the header of this Block. The header consists of the time stamp of creation of this
-   * Block, the version of this Block and the hash of the previous Block object in the blockchain.
+   * Writes the canonical encoding of the header of this Block. The header consists of the version
+   * of this Block, the time stamp of creation of this Block, the hash of the previous Block object
+   * in the blockchain, the Merkle root of the Transactions of this Block and its mining difficulty.
+   *
+   * @param encoder the encoder to write to
+   */
+  public void encodeHeader(CanonicalEncoder encoder) {
+    getHeader().encode(encoder);
+  }
+
+  /**
+   * Returns the header of this Block, which covers the current Transactions through their Merkle
+   * root.
+   *
+   * @return the BlockHeader of this Block
+   */
+  public synchronized BlockHeader getHeader() {
+    return new BlockHeader(
+        blockVersion,
+        timeStamp.getTime(),
+        previousHash,
+        getMerkleRootDigest(),
+        miningDifficulty,
+        nonce,
+        hash,
+        sealSigner,
+        sealSignature);
+  }
+
+  /**
+   * Returns the Merkle root of the Transactions of this Block.
+   *
+   * @return the 64-digit hex Merkle root
+   */
+  public String getMerkleRoot() {
+    return getMerkleRootDigest().toString();
+  }
+
+  /**
+   * Returns the Merkle root of the Transactions of this Block.
+   *
+   * <p>The Merkle tree is extended whenever a Transaction is added, so the root is usually cached.
+   * It is rebuilt if the number of Transactions changed otherwise, e.g. after deserialization.
+   * Transactions replaced in the list returned by getTransactions are noticed when the hash of
+   * this Block is calculated.
+   *
+   * @return the Merkle root
+   */
+  public synchronized Hash256 getMerkleRootDigest() {
+    if (merkleTree.size() != transactions.size()) {
+      syncMerkleTree();
+    }
+    return merkleTree.getRoot();
+  }
+
+  /**
+   * Brings the Merkle tree in step with the Transactions: the leaves matching the Transactions are
+   * kept, and only the Transactions after the first mismatch are hashed again.
+   */
+  private void syncMerkleTree() {
+    int common = 0;
+    int shared = Math.min(merkleTree.size(), transactions.size());
+    while (common < shared
+        && merkleTree.getLeaf(common).equals(transactions.get(common).getIdDigest())) {
+      common++;
+    }
+    merkleTree.truncate(common);
+    for (int i = common; i < transactions.size(); i++) {
+      merkleTree.append(transactions.get(i).getIdDigest());
+    }
+  }
+
+  /**
+   * Returns the proof that this Block includes the Transaction at the provided position.
    *
-   * @return the header of this Block
+   * @param position the position of the Transaction in this Block
+   * @return the MerkleProof of the Transaction against the header of this Block
+   * @throws IndexOutOfBoundsException if there is no Transaction at the position
    */
-  private String getHeader() {
-    return this.timeStamp + this.blockVersion + this.previousHash;
+  public synchronized MerkleProof getInclusionProof(int position)
+      throws IndexOutOfBoundsException {
+    BlockHeader header = getHeader();
+    return new MerkleProof(
+        merkleTree.getLeaf(position),
+        position,
+        merkleTree.size(),
+        merkleTree.getAuditPath(position),
+        header);
   }
 
   /**
@@ -364,16 +1056,10 @@ public class Block {
    * @param signature the signature
    */
   public void signTransaction(String transactionId, byte[] signature) {
-    Transaction unsignedTransaction =
-        unsignedTransactions.stream()
-            .filter(transaction -> transaction.getId().equals(transactionId))
-            .findFirst()
-            .orElse(null);
-    if (unsignedTransaction != null
-        && unsignedTransaction.setSignature(signature)
-        && this.addTransaction(unsignedTransaction)) {
-      unsignedTransactions.remove(unsignedTransaction);
+    if (!Hash256.isHex(transactionId)) {
+      return;
     }
+    mempool.signAndTake(Hash256.fromHex(transactionId), signature, this::addTransaction);
   }
 
   /**
@@ -0,0 +1,373 @@
+package org.votebloke.blockchain;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.lang.NonNull;
+
+/**
+ * The binary format of stored Blocks, written with CanonicalEncoder and read with
+ * CanonicalDecoder.
+ *
+ * <p>A Block is written as BLOCK_TAG, the format version and its header, followed by a table of
+ * the Entry objects it references, its Transactions and its BlockUndo. Every Entry is written once,
+ * after the Entries it references, and referenced by its position in the table - or by -1 for
+ * null - so Entries shared by Transactions, outputs, Votes and Tallies are shared again after
+ * decoding. Only Elections, Vote and Tally can be written; the metadata of a Tally is written in
+ * the order of its keys. Nothing is deserialized by reflection, so a damaged or forged record can
+ * only fail to decode with an IllegalArgumentException.
+ */
+final class BlockCodec {
+  /** The version of the format written by encode. */
+  static final byte FORMAT_VERSION = 1;
+
+  /** The positions of the written Entries in the table. */
+  private final IdentityHashMap<Entry, Integer> positions = new IdentityHashMap<>();
+
+  /** The table of Entries, in the order they are written and read. */
+  private final List<Entry> entries = new ArrayList<>();
+
+  private BlockCodec() {}
+
+  /**
+   * Encodes a Block with its Transactions and BlockUndo.
+   *
+   * @param block the Block
+   * @return the encoded Block
+   * @throws IllegalArgumentException if the Block references an Entry other than Elections, Vote
+   *     or Tally
+   */
+  static byte[] encode(@NonNull Block block) throws IllegalArgumentException {
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    new BlockCodec().writeBlock(encoder, block);
+    return encoder.toByteArray();
+  }
+
+  /**
+   * Decodes a Block written by encode.
+   *
+   * @param bytes the encoded Block
+   * @return the Block
+   * @throws IllegalArgumentException if the bytes are not an encoded Block
+   */
+  static Block decode(@NonNull byte[] bytes) throws IllegalArgumentException {
+    CanonicalDecoder decoder = new CanonicalDecoder(bytes);
+    Block block = new BlockCodec().readBlock(decoder);
+    if (decoder.remaining() != 0) {
+      throw new IllegalArgumentException("Unexpected bytes after the Block");
+    }
+    return block;
+  }
+
+  private void writeBlock(CanonicalEncoder encoder, Block block) {
+    List<Transaction> transactions = block.getTransactions();
+    BlockUndo undo = block.getUndo();
+    for (Transaction transaction : transactions) {
+      collect(transaction.data);
+      if (transaction.inputs != null) {
+        transaction.inputs.forEach(input -> collect(input.transactionOut.data));
+      }
+      if (transaction.outputs != null) {
+        transaction.outputs.forEach(output -> collect(output.data));
+      }
+    }
+    undo.getSpent().forEach(output -> collect(output.data));
+    undo.getCreated().forEach(output -> collect(output.data));
+
+    BlockHeader header = block.getHeader();
+    encoder
+        .writeByte(CanonicalEncoder.BLOCK_TAG)
+        .writeByte(FORMAT_VERSION)
+        .writeString(header.getBlockVersion())
+        .writeLong(header.getTimeStamp())
+        .writeHash(header.getPreviousHash())
+        .writeHash(header.getMerkleRoot())
+        .writeInt(header.getMiningDifficulty())
+        .writeInt(header.getNonce())
+        .writeHash(header.getHash())
+        .writeKey(header.getSealSigner())
+        .writeBytes(header.getSealSignature());
+
+    encoder.writeInt(entries.size());
+    for (Entry entry : entries) {
+      writeEntry(encoder, entry);
+    }
+    encoder.writeInt(transactions.size());
+    for (Transaction transaction : transactions) {
+      writeTransaction(encoder, transaction);
+    }
+    writeOutputs(encoder, undo.getSpent());
+    writeOutputs(encoder, undo.getCreated());
+  }
+
+  private Block readBlock(CanonicalDecoder decoder) {
+    if (decoder.readByte() != CanonicalEncoder.BLOCK_TAG) {
+      throw new IllegalArgumentException("The bytes are not an encoded Block");
+    }
+    byte version = decoder.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported Block format version " + version);
+    }
+    String blockVersion = decoder.readString();
+    long timeStamp = decoder.readLong();
+    Hash256 previousHash = decoder.readHash();
+    Hash256 merkleRoot = decoder.readHash();
+    if (previousHash == null || merkleRoot == null) {
+      throw new IllegalArgumentException("A Block header must have hashes");
+    }
+    BlockHeader header =
+        new BlockHeader(
+            blockVersion,
+            timeStamp,
+            previousHash,
+            merkleRoot,
+            decoder.readInt(),
+            decoder.readInt(),
+            decoder.readHash(),
+            decoder.readKey(),
+            decoder.readBytes());
+
+    int entryCount = decoder.readCount();
+    for (int i = 0; i < entryCount; i++) {
+      entries.add(readEntry(decoder));
+    }
+    int transactionCount = decoder.readCount();
+    ArrayList<Transaction> transactions = new ArrayList<>(Math.max(transactionCount, 0));
+    for (int i = 0; i < transactionCount; i++) {
+      transactions.add(readTransaction(decoder));
+    }
+    BlockUndo undo = new BlockUndo();
+    List<TransactionOutput> spent = readOutputs(decoder);
+    List<TransactionOutput> created = readOutputs(decoder);
+    if (spent != null) {
+      spent.forEach(undo::recordSpend);
+    }
+    if (created != null) {
+      created.forEach(undo::recordCreate);
+    }
+    return new Block(header, transactions, undo);
+  }
+
+  /**
+   * Adds an Entry, after the Entries it references, to the table.
+   *
+   * @param entry the Entry; null is ignored
+   * @throws IllegalArgumentException if the Entry is neither Elections, Vote nor Tally
+   */
+  private void collect(Entry entry) {
+    if (entry == null || positions.containsKey(entry)) {
+      return;
+    }
+    if (entry instanceof Vote) {
+      collect(((Vote) entry).getElections());
+    } else if (entry instanceof Tally) {
+      Tally tally = (Tally) entry;
+      collect(tally.getElections());
+      if (tally.getVotes() != null) {
+        tally.getVotes().forEach(this::collect);
+      }
+    } else if (!(entry instanceof Elections)) {
+      throw new IllegalArgumentException(entry.getClass().getName() + " cannot be stored");
+    }
+    positions.put(entry, entries.size());
+    entries.add(entry);
+  }
+
+  private void writeEntry(CanonicalEncoder encoder, Entry entry) {
+    if (entry instanceof Elections) {
+      Elections elections = (Elections) entry;
+      encoder
+          .writeByte(CanonicalEncoder.ELECTIONS_TAG)
+          .writeKey(elections.getElectionsCaller())
+          .writeDate(elections.getTimeStamp())
+          .writeString(elections.getQuestion())
+          .writeStrings(elections.getAnswers())
+          .writeHash(elections.getIdDigest());
+    } else if (entry instanceof Vote) {
+      Vote vote = (Vote) entry;
+      encoder
+          .writeByte(CanonicalEncoder.VOTE_TAG)
+          .writeKey(vote.getVoter())
+          .writeDate(vote.getTimeStamp())
+          .writeInt(reference(vote.getElections()))
+          .writeString(vote.getAnswer())
+          .writeInt(vote.getAnswerIndex())
+          .writeHash(vote.getIdDigest());
+    } else {
+      Tally tally = (Tally) entry;
+      encoder
+          .writeByte(CanonicalEncoder.TALLY_TAG)
+          .writeKey(tally.getTeller())
+          .writeDate(tally.getTimeStamp())
+          .writeInt(reference(tally.getElections()));
+      List<Vote> votes = tally.getVotes();
+      encoder.writeInt(votes == null ? -1 : votes.size());
+      if (votes != null) {
+        votes.forEach(vote -> encoder.writeInt(reference(vote)));
+      }
+      Map<String, String[]> metadata = tally.getMetadata();
+      encoder.writeInt(metadata == null ? -1 : metadata.size());
+      if (metadata != null) {
+        new TreeMap<>(metadata)
+            .forEach((key, values) -> encoder.writeString(key).writeStrings(values));
+      }
+      encoder.writeHash(tally.getIdDigest());
+    }
+  }
+
+  private Entry readEntry(CanonicalDecoder decoder) {
+    byte tag = decoder.readByte();
+    switch (tag) {
+      case CanonicalEncoder.ELECTIONS_TAG:
+        return readElections(decoder);
+      case CanonicalEncoder.VOTE_TAG:
+        return readVote(decoder);
+      case CanonicalEncoder.TALLY_TAG:
+        return readTally(decoder);
+      default:
+        throw new IllegalArgumentException("Unknown Entry tag " + tag);
+    }
+  }
+
+  private Elections readElections(CanonicalDecoder decoder) {
+    PublicKey caller = decoder.readKey();
+    Date timeStamp = decoder.readDate();
+    String question = decoder.readString();
+    String[] answers = decoder.readStrings();
+    return new Elections(caller, question, answers, timeStamp, decoder.readHash());
+  }
+
+  private Vote readVote(CanonicalDecoder decoder) {
+    PublicKey voter = decoder.readKey();
+    Date timeStamp = decoder.readDate();
+    Elections elections = resolve(decoder.readInt(), Elections.class);
+    String answer = decoder.readString();
+    int answerIndex = decoder.readInt();
+    return new Vote(voter, elections, answer, answerIndex, timeStamp, decoder.readHash());
+  }
+
+  private Tally readTally(CanonicalDecoder decoder) {
+    PublicKey teller = decoder.readKey();
+    Date timeStamp = decoder.readDate();
+    Elections elections = resolve(decoder.readInt(), Elections.class);
+    int voteCount = decoder.readCount();
+    ArrayList<Vote> votes = voteCount < 0 ? null : new ArrayList<>(voteCount);
+    for (int i = 0; i < voteCount; i++) {
+      votes.add(resolve(decoder.readInt(), Vote.class));
+    }
+    int metadataSize = decoder.readCount();
+    HashMap<String, String[]> metadata = metadataSize < 0 ? null : new HashMap<>();
+    for (int i = 0; i < metadataSize; i++) {
+      metadata.put(decoder.readString(), decoder.readStrings());
+    }
+    return new Tally(teller, elections, votes, metadata, timeStamp, decoder.readHash());
+  }
+
+  private void writeTransaction(CanonicalEncoder encoder, Transaction transaction) {
+    encoder
+        .writeByte(CanonicalEncoder.TRANSACTION_TAG)
+        .writeKey(transaction.signee)
+        .writeDate(transaction.getTimeStampDate())
+        .writeInt(reference(transaction.data))
+        .writeHash(transaction.getIdDigest())
+        .writeBytes(transaction.getSignature());
+    List<TransactionOutput> inputOutputs = null;
+    if (transaction.inputs != null) {
+      inputOutputs = new ArrayList<>();
+      for (TransactionInput input : transaction.inputs) {
+        inputOutputs.add(input.transactionOut);
+      }
+    }
+    writeOutputs(encoder, inputOutputs);
+    writeOutputs(encoder, transaction.outputs);
+  }
+
+  private Transaction readTransaction(CanonicalDecoder decoder) {
+    if (decoder.readByte() != CanonicalEncoder.TRANSACTION_TAG) {
+      throw new IllegalArgumentException("Expected a Transaction");
+    }
+    PublicKey signee = decoder.readKey();
+    Date timeStamp = decoder.readDate();
+    Entry data = resolve(decoder.readInt(), Entry.class);
+    Hash256 id = decoder.readHash();
+    byte[] signature = decoder.readBytes();
+    List<TransactionOutput> inputOutputs = readOutputs(decoder);
+    List<TransactionInput> inputs = null;
+    if (inputOutputs != null) {
+      inputs = new ArrayList<>();
+      for (TransactionOutput output : inputOutputs) {
+        inputs.add(new TransactionInput(output));
+      }
+    }
+    List<TransactionOutput> outputs = readOutputs(decoder);
+    if (signee == null || data == null) {
+      throw new IllegalArgumentException("A Transaction must have a signee and data");
+    }
+    return new Transaction(signee, data, inputs, outputs, timeStamp, id, signature);
+  }
+
+  private void writeOutputs(CanonicalEncoder encoder, List<TransactionOutput> outputs) {
+    if (outputs == null) {
+      encoder.writeInt(-1);
+      return;
+    }
+    encoder.writeInt(outputs.size());
+    for (TransactionOutput output : outputs) {
+      encoder
+          .writeKey(output.author)
+          .writeInt(reference(output.data))
+          .writeHash(output.parentTransactionId)
+          .writeInt(output.index);
+    }
+  }
+
+  private List<TransactionOutput> readOutputs(CanonicalDecoder decoder) {
+    int count = decoder.readCount();
+    if (count < 0) {
+      return null;
+    }
+    List<TransactionOutput> outputs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      outputs.add(
+          new TransactionOutput(
+              decoder.readKey(),
+              resolve(decoder.readInt(), Entry.class),
+              decoder.readHash(),
+              decoder.readInt()));
+    }
+    return outputs;
+  }
+
+  /**
+   * Returns the position of a collected Entry in the table.
+   *
+   * @param entry the Entry; may be null
+   * @return the position of the Entry; -1 for null
+   */
+  private int reference(Entry entry) {
+    return entry == null ? -1 : positions.get(entry);
+  }
+
+  /**
+   * Returns the Entry at a position of the table, which was read before.
+   *
+   * @param position the position of the Entry; -1 for null
+   * @param type the class the Entry must have
+   * @return the Entry; null for the position -1
+   * @throws IllegalArgumentException if there is no such Entry read yet or it has another class
+   */
+  private <T extends Entry> T resolve(int position, Class<T> type) {
+    if (position == -1) {
+      return null;
+    }
+    if (position < 0 || position >= entries.size() || !type.isInstance(entries.get(position))) {
+      throw new IllegalArgumentException("Invalid reference to an Entry at " + position);
+    }
+    return type.cast(entries.get(position));
+  }
+}
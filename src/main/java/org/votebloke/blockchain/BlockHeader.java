@@ -0,0 +1,220 @@
+package org.votebloke.blockchain;
+
+import java.io.Serializable;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Objects;
+import org.springframework.lang.NonNull;
+
+/**
+ * The fixed-size header of a Block: its version, time stamp, the hash of the previous Block, the
+ * Merkle root of its Transactions, its mining difficulty and nonce, its hash, and the seal of the
+ * authority if the Block was sealed by authority.
+ *
+ * <p>The hash of a Block is the SHA-256 hash of the canonical encoding of its header followed by
+ * the nonce. The Transactions enter the hash only through the Merkle root, so a header alone
+ * suffices to check the hash of a Block and, with a MerkleProof, whether it includes a Transaction.
+ * The seal signs the hash, so it is carried by the header but not encoded into the hash.
+ */
+public final class BlockHeader implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final String blockVersion;
+  private final long timeStamp;
+  private final Hash256 previousHash;
+  private final Hash256 merkleRoot;
+  private final int miningDifficulty;
+  private final int nonce;
+
+  /** The hash the Block was sealed with; null if the Block is not sealed. */
+  private final Hash256 hash;
+
+  /** The public ECDSA key of the authority, which sealed the Block; null if it was mined. */
+  private final PublicKey sealSigner;
+
+  /** The signature of the hash by the sealing authority; null if the Block was mined. */
+  private final byte[] sealSignature;
+
+  /**
+   * A constructor for BlockHeader of a mined Block.
+   *
+   * @param blockVersion the version of the Block
+   * @param timeStamp the time stamp of creation of the Block in milliseconds since the epoch
+   * @param previousHash the hash of the previous Block
+   * @param merkleRoot the Merkle root of the Transactions of the Block
+   * @param miningDifficulty the number of leading zero bits required in the hash of the Block
+   * @param nonce the nonce of the Block
+   * @param hash the hash the Block was sealed with; null if the Block is not sealed
+   */
+  public BlockHeader(
+      String blockVersion,
+      long timeStamp,
+      @NonNull Hash256 previousHash,
+      @NonNull Hash256 merkleRoot,
+      int miningDifficulty,
+      int nonce,
+      Hash256 hash) {
+    this(
+        blockVersion,
+        timeStamp,
+        previousHash,
+        merkleRoot,
+        miningDifficulty,
+        nonce,
+        hash,
+        null,
+        null);
+  }
+
+  /**
+   * A constructor for BlockHeader.
+   *
+   * @param blockVersion the version of the Block
+   * @param timeStamp the time stamp of creation of the Block in milliseconds since the epoch
+   * @param previousHash the hash of the previous Block
+   * @param merkleRoot the Merkle root of the Transactions of the Block
+   * @param miningDifficulty the number of leading zero bits required in the hash of the Block
+   * @param nonce the nonce of the Block
+   * @param hash the hash the Block was sealed with; null if the Block is not sealed
+   * @param sealSigner the public ECDSA key of the sealing authority; null if the Block was mined
+   * @param sealSignature the signature of the hash by the sealing authority; null if the Block was
+   *     mined
+   */
+  public BlockHeader(
+      String blockVersion,
+      long timeStamp,
+      @NonNull Hash256 previousHash,
+      @NonNull Hash256 merkleRoot,
+      int miningDifficulty,
+      int nonce,
+      Hash256 hash,
+      PublicKey sealSigner,
+      byte[] sealSignature) {
+    this.blockVersion = blockVersion;
+    this.timeStamp = timeStamp;
+    this.previousHash = previousHash;
+    this.merkleRoot = merkleRoot;
+    this.miningDifficulty = miningDifficulty;
+    this.nonce = nonce;
+    this.hash = hash;
+    this.sealSigner = sealSigner;
+    this.sealSignature = sealSignature == null ? null : sealSignature.clone();
+  }
+
+  public String getBlockVersion() {
+    return blockVersion;
+  }
+
+  public long getTimeStamp() {
+    return timeStamp;
+  }
+
+  public Hash256 getPreviousHash() {
+    return previousHash;
+  }
+
+  public Hash256 getMerkleRoot() {
+    return merkleRoot;
+  }
+
+  public int getMiningDifficulty() {
+    return miningDifficulty;
+  }
+
+  public int getNonce() {
+    return nonce;
+  }
+
+  public Hash256 getHash() {
+    return hash;
+  }
+
+  public PublicKey getSealSigner() {
+    return sealSigner;
+  }
+
+  /**
+   * Returns the signature of the hash by the sealing authority.
+   *
+   * @return a copy of the signature; null if the Block was mined
+   */
+  public byte[] getSealSignature() {
+    return sealSignature == null ? null : sealSignature.clone();
+  }
+
+  /**
+   * Writes the canonical encoding of this header, without the nonce.
+   *
+   * @param encoder the encoder to write to
+   */
+  public void encode(@NonNull CanonicalEncoder encoder) {
+    encoder
+        .writeByte(CanonicalEncoder.BLOCK_HEADER_TAG)
+        .writeString(blockVersion)
+        .writeLong(timeStamp)
+        .writeHash(previousHash)
+        .writeHash(merkleRoot)
+        .writeInt(miningDifficulty);
+  }
+
+  /**
+   * Calculates the hash of this header and its nonce.
+   *
+   * @return the hash of the Block
+   */
+  public Hash256 calculateHash() {
+    return newMiningEngine().hashOf(nonce);
+  }
+
+  /**
+   * Checks whether the hash of this header matches its contents and has enough leading zero bits.
+   *
+   * @return true if the hash is valid; false otherwise
+   */
+  public boolean isHashValid() {
+    return hash != null
+        && hash.equals(calculateHash())
+        && hash.leadingZeroBits() >= miningDifficulty;
+  }
+
+  /**
+   * Creates a MiningEngine hashing this header with candidate nonces.
+   *
+   * @return the MiningEngine
+   */
+  MiningEngine newMiningEngine() {
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    encode(encoder);
+    return new MiningEngine(encoder.toByteArray(), miningDifficulty);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof BlockHeader)) {
+      return false;
+    }
+    BlockHeader other = (BlockHeader) o;
+    return timeStamp == other.timeStamp
+        && miningDifficulty == other.miningDifficulty
+        && nonce == other.nonce
+        && Objects.equals(blockVersion, other.blockVersion)
+        && previousHash.equals(other.previousHash)
+        && merkleRoot.equals(other.merkleRoot)
+        && Objects.equals(hash, other.hash)
+        && Objects.equals(sealSigner, other.sealSigner)
+        && Arrays.equals(sealSignature, other.sealSignature);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(blockVersion, timeStamp, previousHash, merkleRoot, miningDifficulty, nonce);
+  }
+
+  @Override
+  public String toString() {
+    return previousHash + "<-" + hash;
+  }
+}
@@ -0,0 +1,73 @@
+package org.votebloke.blockchain;
+
+import java.math.BigInteger;
+
+/**
+ * A Block in the tree of Blocks known to a Chain. Holds only what the fork choice and retargeting
+ * need, so the Block itself may stay on disk.
+ */
+final class BlockNode {
+  private final Hash256 hash;
+  private final BlockNode parent;
+  private final int height;
+
+  /** The work of all Blocks from the genesis Block up to and including this Block. */
+  private final BigInteger work;
+
+  private final long timeStamp;
+  private final int miningDifficulty;
+
+  /**
+   * A constructor for BlockNode.
+   *
+   * @param block the Block
+   * @param parent the node of the previous Block; null for the genesis Block
+   */
+  BlockNode(Block block, BlockNode parent) {
+    this.hash = block.getHashDigest();
+    this.parent = parent;
+    this.height = parent == null ? 0 : parent.height + 1;
+    this.miningDifficulty = block.getMiningDifficulty();
+    BigInteger blockWork = BigInteger.ONE.shiftLeft(Math.max(0, miningDifficulty));
+    this.work = parent == null ? blockWork : parent.work.add(blockWork);
+    this.timeStamp = block.getTimeStamp().getTime();
+  }
+
+  Hash256 getHash() {
+    return hash;
+  }
+
+  BlockNode getParent() {
+    return parent;
+  }
+
+  int getHeight() {
+    return height;
+  }
+
+  BigInteger getWork() {
+    return work;
+  }
+
+  long getTimeStamp() {
+    return timeStamp;
+  }
+
+  int getMiningDifficulty() {
+    return miningDifficulty;
+  }
+
+  /**
+   * Returns the ancestor of this node at the provided height.
+   *
+   * @param ancestorHeight the height of the ancestor, at most the height of this node
+   * @return the ancestor; this node if ancestorHeight is its height
+   */
+  BlockNode getAncestor(int ancestorHeight) {
+    BlockNode node = this;
+    while (node.height > ancestorHeight) {
+      node = node.parent;
+    }
+    return node;
+  }
+}
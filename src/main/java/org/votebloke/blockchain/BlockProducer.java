@@ -0,0 +1,474 @@
+package org.votebloke.blockchain;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.lang.NonNull;
+
+/**
+ * Assembles Blocks from the ready Transactions of a Mempool and appends them to a Chain.
+ *
+ * <p>Every step drains ready Transactions in batches into a template Block built on the newest
+ * Block of the Chain. The template is sealed and added to the Chain as soon as it holds
+ * maxTransactions Transactions, adding the next Transaction would exceed maxBytes encoded bytes, or
+ * the oldest Transaction in it waited for maxInterval. Filling the next template starts right away
+ * with the rest of the batch. Transactions are added to the template in batches with
+ * Block.addTransactions; those recorded in the Chain or not applicable to the template are
+ * dropped. Empty Blocks are never produced. If sealing throws or the Chain rejects a sealed Block,
+ * the step ends: the rest of the batch and the Transactions of the Block still applicable to the
+ * newest Block of the Chain are returned to the Mempool, the others are dropped, and steps back off
+ * for twice the pollInterval per consecutive failure, at most maxInterval.
+ *
+ * <p>Steps run on a background thread every pollInterval once {@link #start()} was called, or on
+ * the calling thread with {@link #produce()}. Steps are mutually exclusive. Other threads may read
+ * the Chain or add Blocks to it while a BlockProducer runs. A template built on a Block that is no
+ * longer the newest Block of the Chain is discarded and its Transactions are returned to the
+ * Mempool.
+ */
+public class BlockProducer implements AutoCloseable {
+  /** The default maximum number of Transactions in a Block. */
+  public static final int DEFAULT_MAX_TRANSACTIONS = 1_000;
+
+  /** The default maximum number of encoded bytes of the Transactions in a Block. */
+  public static final int DEFAULT_MAX_BYTES = 1 << 20;
+
+  /** The default maximum time the oldest Transaction in a template waits for its Block. */
+  public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(5);
+
+  /** The default time between two steps of a started BlockProducer. */
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(100);
+
+  /** The largest power of two the pollInterval is multiplied by to back off. */
+  private static final int MAX_BACKOFF_SHIFT = 16;
+
+  private final Chain chain;
+  private final BlockSealer sealer;
+  private final Mempool mempool;
+  private final String blockVersion;
+  private final int maxTransactions;
+  private final int maxBytes;
+  private final long maxInterval;
+  private final long pollInterval;
+
+  /** The Block being filled; null if no Transaction waits for a Block. */
+  private Block template;
+
+  /** The number of Transactions in the template. */
+  private int templateCount;
+
+  /** The number of encoded bytes of the Transactions in the template. */
+  private int templateBytes;
+
+  /** The time the first Transaction was added to the template in nanoseconds. */
+  private long templateStart;
+
+  /** The number of consecutive Blocks that were not added to the Chain, capped. */
+  private int failures;
+
+  /** The time before which steps do nothing after a Block was not added, in nanoseconds. */
+  private long backoffUntil = System.nanoTime();
+
+  /** The lock making steps mutually exclusive, held while the template is used. */
+  private final Object stepLock = new Object();
+
+  /** The thread running the steps; null if this BlockProducer was not started. */
+  private ScheduledExecutorService scheduler;
+
+  private final LongAdder blocksProduced = new LongAdder();
+  private final LongAdder transactionsIncluded = new LongAdder();
+  private final LongAdder transactionsRejected = new LongAdder();
+  private final LongAdder blocksRejected = new LongAdder();
+  private final LongAdder countTriggers = new LongAdder();
+  private final LongAdder sizeTriggers = new LongAdder();
+  private final LongAdder timeTriggers = new LongAdder();
+  private final LongAdder failedSteps = new LongAdder();
+
+  /**
+   * A constructor for BlockProducer.
+   *
+   * @param chain the Chain the produced Blocks are added to
+   * @param sealer the strategy the produced Blocks are sealed with
+   * @param mempool the pool the Transactions are taken from
+   * @param blockVersion the version of the produced Blocks
+   * @param maxTransactions the maximum number of Transactions in a Block
+   * @param maxBytes the maximum number of encoded bytes of the Transactions in a Block; a single
+   *     larger Transaction gets a Block of its own
+   * @param maxInterval the maximum time the oldest Transaction in a template waits for its Block
+   * @param pollInterval the time between two steps of a started BlockProducer
+   * @throws IllegalArgumentException if a limit or interval is not positive
+   */
+  public BlockProducer(
+      @NonNull Chain chain,
+      @NonNull BlockSealer sealer,
+      @NonNull Mempool mempool,
+      String blockVersion,
+      int maxTransactions,
+      int maxBytes,
+      @NonNull Duration maxInterval,
+      @NonNull Duration pollInterval)
+      throws IllegalArgumentException {
+    if (maxTransactions < 1 || maxBytes < 1) {
+      throw new IllegalArgumentException("maxTransactions and maxBytes must be greater than 0");
+    }
+    if (maxInterval.isNegative() || maxInterval.isZero()) {
+      throw new IllegalArgumentException("maxInterval must be positive");
+    }
+    if (pollInterval.isNegative() || pollInterval.isZero()) {
+      throw new IllegalArgumentException("pollInterval must be positive");
+    }
+    this.chain = chain;
+    this.sealer = sealer;
+    this.mempool = mempool;
+    this.blockVersion = blockVersion;
+    this.maxTransactions = maxTransactions;
+    this.maxBytes = maxBytes;
+    this.maxInterval = maxInterval.toNanos();
+    this.pollInterval = pollInterval.toNanos();
+  }
+
+  /**
+   * A constructor for BlockProducer with the default limits and intervals.
+   *
+   * @param chain the Chain the produced Blocks are added to
+   * @param sealer the strategy the produced Blocks are sealed with
+   * @param mempool the pool the Transactions are taken from
+   * @param blockVersion the version of the produced Blocks
+   */
+  public BlockProducer(
+      @NonNull Chain chain,
+      @NonNull BlockSealer sealer,
+      @NonNull Mempool mempool,
+      String blockVersion) {
+    this(
+        chain,
+        sealer,
+        mempool,
+        blockVersion,
+        DEFAULT_MAX_TRANSACTIONS,
+        DEFAULT_MAX_BYTES,
+        DEFAULT_MAX_INTERVAL,
+        DEFAULT_POLL_INTERVAL);
+  }
+
+  /**
+   * Starts running steps on a background daemon thread every pollInterval.
+   *
+   * @throws IllegalStateException if this BlockProducer was already started
+   */
+  public synchronized void start() throws IllegalStateException {
+    if (scheduler != null) {
+      throw new IllegalStateException("The BlockProducer was already started");
+    }
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "block-producer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        () -> {
+          try {
+            produce();
+          } catch (RuntimeException e) {
+            failedSteps.increment();
+          }
+        },
+        pollInterval,
+        pollInterval,
+        TimeUnit.NANOSECONDS);
+  }
+
+  /** Stops the background thread. The Transactions of the current template stay in it. */
+  @Override
+  public void close() {
+    ScheduledExecutorService stopped;
+    synchronized (this) {
+      stopped = scheduler;
+      scheduler = null;
+    }
+    if (stopped != null) {
+      stopped.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs a step: fills the template with the ready Transactions of the Mempool and seals every
+   * template reaching a limit.
+   *
+   * @return the number of Blocks added to the Chain
+   */
+  public int produce() {
+    synchronized (stepLock) {
+      return fillAndSeal();
+    }
+  }
+
+  private int fillAndSeal() {
+    if (System.nanoTime() - backoffUntil < 0) {
+      return 0;
+    }
+    Block latestBlock = chain.getBlockAt(chain.size() - 1);
+    if (template != null
+        && !Objects.equals(latestBlock.getHashDigest(), template.getPreviousHashDigest())) {
+      discardTemplate();
+    }
+    int produced = 0;
+    List<Transaction> batch;
+    do {
+      int room = template == null ? maxTransactions : maxTransactions - templateCount;
+      batch = mempool.drain(room);
+      int[] sizes = new int[batch.size()];
+      for (int i = 0; i < sizes.length; i++) {
+        sizes[i] = encodedSize(batch.get(i));
+      }
+      int next = 0;
+      try {
+        while (next < batch.size()) {
+          if (templateCount > 0 && templateBytes + sizes[next] > maxBytes) {
+            sizeTriggers.increment();
+            if (!seal()) {
+              return produced;
+            }
+            produced++;
+            continue;
+          }
+          if (template == null) {
+            template =
+                new Block(
+                    chain.getBlockAt(chain.size() - 1),
+                    blockVersion,
+                    chain.getNextMiningDifficulty(),
+                    mempool);
+            templateCount = 0;
+            templateBytes = 0;
+            templateStart = System.nanoTime();
+          }
+
+          List<Transaction> run = new ArrayList<>();
+          List<Integer> runSizes = new ArrayList<>();
+          int runBytes = 0;
+          while (next < batch.size() && templateCount + run.size() < maxTransactions) {
+            int size = sizes[next];
+            if ((templateCount > 0 || !run.isEmpty())
+                && templateBytes + runBytes + size > maxBytes) {
+              break;
+            }
+            Transaction transaction = batch.get(next++);
+            if (chain.getTransaction(transaction.getId()) != null) {
+              transactionsRejected.increment();
+              continue;
+            }
+            run.add(transaction);
+            runSizes.add(size);
+            runBytes += size;
+          }
+          List<TransactionResult> results = template.addTransactions(run);
+          for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == TransactionResult.ACCEPTED) {
+              templateCount++;
+              templateBytes += runSizes.get(i);
+            } else {
+              transactionsRejected.increment();
+            }
+          }
+
+          if (templateCount >= maxTransactions) {
+            countTriggers.increment();
+            if (!seal()) {
+              return produced;
+            }
+            produced++;
+          }
+        }
+      } finally {
+        mempool.restore(batch.subList(next, batch.size()));
+      }
+    } while (!batch.isEmpty());
+    if (templateCount > 0 && System.nanoTime() - templateStart >= maxInterval) {
+      timeTriggers.increment();
+      if (seal()) {
+        produced++;
+      }
+    }
+    return produced;
+  }
+
+  /**
+   * Seals the template and adds it to the Chain. If sealing fails or the Chain rejects the Block,
+   * the Transactions of the Block, which still apply to the newest Block of the Chain, are
+   * returned to the Mempool, the others are dropped, and the following steps back off.
+   *
+   * @return true if the Block was added to the Chain; false if the Chain rejected it
+   */
+  private boolean seal() {
+    Block block = template;
+    template = null;
+    templateCount = 0;
+    boolean added = false;
+    try {
+      sealer.seal(block);
+      added = chain.addBlock(block);
+    } finally {
+      if (!added) {
+        returnApplicable(block.getTransactions());
+        failures = Math.min(failures + 1, MAX_BACKOFF_SHIFT);
+        backoffUntil = System.nanoTime() + Math.min(pollInterval << failures, maxInterval);
+      }
+    }
+    if (!added) {
+      blocksRejected.increment();
+      return false;
+    }
+    failures = 0;
+    blocksProduced.increment();
+    transactionsIncluded.add(block.getTransactions().size());
+    return true;
+  }
+
+  /**
+   * Returns the Transactions of a Block the Chain did not take to the Mempool, if they still apply
+   * to the newest Block of the Chain. Transactions recorded in the Chain, invalid or spending
+   * consumed outputs fail permanently and are dropped rather than retried.
+   *
+   * @param transactions the Transactions of the Block
+   */
+  private void returnApplicable(List<Transaction> transactions) {
+    List<Transaction> unrecorded = new ArrayList<>();
+    for (Transaction transaction : transactions) {
+      if (chain.getTransaction(transaction.getId()) == null) {
+        unrecorded.add(transaction);
+      }
+    }
+    Block probe = new Block(chain.getBlockAt(chain.size() - 1), blockVersion, 0, new Mempool());
+    List<TransactionResult> results = probe.addTransactions(unrecorded);
+    List<Transaction> applicable = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i) == TransactionResult.ACCEPTED) {
+        applicable.add(unrecorded.get(i));
+      }
+    }
+    transactionsRejected.add(transactions.size() - applicable.size());
+    mempool.restore(applicable);
+  }
+
+  /** Drops the template and returns its Transactions to the Mempool. */
+  private void discardTemplate() {
+    mempool.restore(template.getTransactions());
+    template = null;
+    templateCount = 0;
+  }
+
+  private static int encodedSize(Transaction transaction) {
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    transaction.encode(encoder);
+    byte[] signature = transaction.getSignature();
+    return encoder.size() + (signature == null ? 0 : signature.length);
+  }
+
+  public int getMaxTransactions() {
+    return maxTransactions;
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public Duration getMaxInterval() {
+    return Duration.ofNanos(maxInterval);
+  }
+
+  public Duration getPollInterval() {
+    return Duration.ofNanos(pollInterval);
+  }
+
+  /**
+   * Returns the number of Blocks added to the Chain.
+   *
+   * @return the number of produced Blocks
+   */
+  public long getBlocksProduced() {
+    return blocksProduced.sum();
+  }
+
+  /**
+   * Returns the number of Transactions in the produced Blocks.
+   *
+   * @return the number of included Transactions
+   */
+  public long getTransactionsIncluded() {
+    return transactionsIncluded.sum();
+  }
+
+  /**
+   * Returns the number of ready Transactions dropped because they were recorded in the Chain or not
+   * applicable to a template.
+   *
+   * @return the number of rejected Transactions
+   */
+  public long getTransactionsRejected() {
+    return transactionsRejected.sum();
+  }
+
+  /**
+   * Returns the number of sealed Blocks the Chain rejected.
+   *
+   * @return the number of rejected Blocks
+   */
+  public long getBlocksRejected() {
+    return blocksRejected.sum();
+  }
+
+  /**
+   * Returns the number of Blocks sealed because they reached maxTransactions.
+   *
+   * @return the number of seals triggered by the count of Transactions
+   */
+  public long getCountTriggers() {
+    return countTriggers.sum();
+  }
+
+  /**
+   * Returns the number of Blocks sealed because the next Transaction would exceed maxBytes.
+   *
+   * @return the number of seals triggered by the size of Transactions
+   */
+  public long getSizeTriggers() {
+    return sizeTriggers.sum();
+  }
+
+  /**
+   * Returns the number of Blocks sealed because their oldest Transaction waited for maxInterval.
+   *
+   * @return the number of seals triggered by the time window
+   */
+  public long getTimeTriggers() {
+    return timeTriggers.sum();
+  }
+
+  /**
+   * Returns the number of background steps that threw an exception, for example because sealing
+   * failed. A failed step does not stop the background thread.
+   *
+   * @return the number of failed steps
+   */
+  public long getFailedSteps() {
+    return failedSteps.sum();
+  }
+
+  /**
+   * Returns the number of Transactions in the template.
+   *
+   * @return the number of Transactions waiting in the Block being filled
+   */
+  public int getTemplateSize() {
+    synchronized (stepLock) {
+      return template == null ? 0 : templateCount;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package org.votebloke.blockchain;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * A strategy of sealing Blocks.
+ *
+ * <p>Sealing a Block assigns its hash and whatever proof the strategy requires, for example a mined
+ * nonce or a signature of an authority. A Chain consults its BlockSealer to verify the seal of
+ * every Block added to it.
+ */
+public interface BlockSealer {
+  /**
+   * Seals the Block. After sealing, no Transactions should be added to the Block.
+   *
+   * @param block the Block to seal
+   */
+  void seal(@NonNull Block block);
+
+  /**
+   * Verifies the seal of the Block. Does not validate the Transactions of the Block.
+   *
+   * @param block the Block to verify
+   * @return true if the Block is sealed according to this strategy; false otherwise
+   */
+  boolean verifySeal(@NonNull Block block);
+
+  /**
+   * Verifies the seal carried by the header of a Block, e.g. in a HeaderChain. Does not check that
+   * the hash matches the header.
+   *
+   * @param header the header to verify
+   * @return true if the header is sealed according to this strategy; false otherwise
+   */
+  boolean verifySeal(@NonNull BlockHeader header);
+}
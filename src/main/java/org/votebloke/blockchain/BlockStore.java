@@ -0,0 +1,325 @@
+package org.votebloke.blockchain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.lang.NonNull;
+
+/**
+ * An append-only store of the Blocks of a Chain on disk.
+ *
+ * <p>Blocks encoded by BlockCodec are appended to segment files of a bounded size with a
+ * FileChannel. The offset index file holds a fixed-size entry for every Block: the number of its
+ * segment, its length and its offset in the segment. Blocks are read back through memory mapped
+ * segments and kept in a bounded cache of recently read Blocks, so only the Blocks in use occupy
+ * the heap. A Block can only be stored if its Entries are Elections, Votes and Tallies.
+ *
+ * <p>Every append is forced to the disk before it returns. Reopening a directory restores all
+ * Blocks appended to it; a Block, whose index entry was not written completely, is discarded.
+ * Blocks are addressed by their position - the order they were appended in. The only way to remove
+ * Blocks is to truncate the store to fewer Blocks.
+ *
+ * <p>A BlockStore is thread-safe.
+ */
+public class BlockStore implements AutoCloseable {
+  /** The default maximum size of a segment file in bytes. */
+  public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+  /** The default number of cached Blocks. */
+  public static final int DEFAULT_CACHE_SIZE = 256;
+
+  /** The size of an index entry: the segment number, the length and the offset of a Block. */
+  private static final int INDEX_ENTRY_SIZE = 16;
+
+  private static final String INDEX_FILE = "blocks.idx";
+
+  private final Path directory;
+  private final long segmentSize;
+  private final FileChannel indexChannel;
+
+  /** The segment Blocks are appended to. */
+  private FileChannel activeSegment;
+
+  private int activeSegmentNumber;
+
+  /** The mapped segments by their numbers; remapped when a segment grew past its mapping. */
+  private final HashMap<Integer, MappedByteBuffer> mappedSegments = new HashMap<>();
+
+  /** The number of Blocks in this store. */
+  private int size;
+
+  /** The recently read Blocks by their positions, in least-recently-used order. */
+  private final LinkedHashMap<Integer, Block> cache;
+
+  private boolean closed;
+
+  /**
+   * A constructor for BlockStore. Opens the store in the directory or creates a new one.
+   *
+   * @param directory the directory of the store files
+   * @param segmentSize the maximum size of a segment file in bytes; a larger Block gets a segment
+   *     of its own
+   * @param cacheSize the number of recently read Blocks kept on the heap
+   * @throws IOException if the files of the store cannot be opened
+   * @throws IllegalArgumentException if segmentSize is not positive or cacheSize is negative
+   */
+  public BlockStore(@NonNull Path directory, long segmentSize, int cacheSize)
+      throws IOException, IllegalArgumentException {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("segmentSize must be positive");
+    }
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("cacheSize must not be negative");
+    }
+    this.directory = directory;
+    this.segmentSize = Math.min(segmentSize, Integer.MAX_VALUE);
+    this.cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+            return size() > cacheSize;
+          }
+        };
+    Files.createDirectories(directory);
+
+    indexChannel =
+        FileChannel.open(
+            directory.resolve(INDEX_FILE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    size = (int) (indexChannel.size() / INDEX_ENTRY_SIZE);
+    indexChannel.truncate((long) size * INDEX_ENTRY_SIZE);
+
+    if (size == 0) {
+      openActiveSegment(0, 0);
+    } else {
+      ByteBuffer last = readIndexEntry(size - 1);
+      openActiveSegment(last.getInt(0), last.getLong(8) + last.getInt(4));
+    }
+  }
+
+  /**
+   * A constructor for BlockStore with the default segment and cache sizes.
+   *
+   * @param directory the directory of the store files
+   * @throws IOException if the files of the store cannot be opened
+   */
+  public BlockStore(@NonNull Path directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Appends a Block to this store.
+   *
+   * @param block the Block
+   * @return the position of the Block in this store
+   * @throws IllegalArgumentException if the Block holds an Entry, which BlockCodec cannot encode
+   * @throws UncheckedIOException if the Block cannot be written
+   */
+  public synchronized int append(@NonNull Block block)
+      throws IllegalArgumentException, UncheckedIOException {
+    ensureOpen();
+    byte[] bytes = BlockCodec.encode(block);
+    try {
+      long offset = activeSegment.size();
+      if (offset > 0 && offset + bytes.length > segmentSize) {
+        activeSegment.close();
+        openActiveSegment(activeSegmentNumber + 1, 0);
+        offset = 0;
+      }
+      writeFully(activeSegment, ByteBuffer.wrap(bytes), offset);
+      activeSegment.force(false);
+
+      ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+      entry.putInt(0, activeSegmentNumber).putInt(4, bytes.length).putLong(8, offset);
+      writeFully(indexChannel, entry, (long) size * INDEX_ENTRY_SIZE);
+      indexChannel.force(false);
+
+      cache.put(size, block);
+      return size++;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads a Block from this store. Blocks, which are not cached, are decoded from their mapped
+   * segment.
+   *
+   * @param position the position of the Block
+   * @return the Block
+   * @throws IndexOutOfBoundsException if there is no Block at the position
+   * @throws UncheckedIOException if the Block cannot be read
+   */
+  public synchronized Block read(int position)
+      throws IndexOutOfBoundsException, UncheckedIOException {
+    ensureOpen();
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("No Block at position " + position);
+    }
+    Block block = cache.get(position);
+    if (block != null) {
+      return block;
+    }
+    try {
+      ByteBuffer entry = readIndexEntry(position);
+      int segment = entry.getInt(0);
+      int length = entry.getInt(4);
+      int offset = (int) entry.getLong(8);
+
+      byte[] bytes = new byte[length];
+      mapSegment(segment, offset + length).get(offset, bytes);
+      block = BlockCodec.decode(bytes);
+    } catch (IllegalArgumentException e) {
+      throw new UncheckedIOException(
+          new IOException("The Block at position " + position + " cannot be decoded", e));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    cache.put(position, block);
+    return block;
+  }
+
+  /**
+   * Returns the number of Blocks in this store.
+   *
+   * @return the size of this store
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Removes the newest Blocks, so that newSize Blocks remain.
+   *
+   * @param newSize the number of Blocks to keep
+   * @throws IllegalArgumentException if newSize is negative or greater than the size of this store
+   * @throws UncheckedIOException if the files cannot be truncated
+   */
+  public synchronized void truncate(int newSize)
+      throws IllegalArgumentException, UncheckedIOException {
+    ensureOpen();
+    if (newSize < 0 || newSize > size) {
+      throw new IllegalArgumentException("newSize must be between 0 and " + size);
+    }
+    if (newSize == size) {
+      return;
+    }
+    try {
+      ByteBuffer first = readIndexEntry(newSize);
+      int segment = first.getInt(0);
+      long offset = first.getLong(8);
+
+      indexChannel.truncate((long) newSize * INDEX_ENTRY_SIZE);
+      indexChannel.force(false);
+      activeSegment.close();
+      for (int number = activeSegmentNumber; number > segment; number--) {
+        Files.deleteIfExists(segmentPath(number));
+      }
+      mappedSegments.keySet().removeIf(number -> number >= segment);
+      openActiveSegment(segment, offset);
+      activeSegment.force(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    cache.keySet().removeIf(position -> position >= newSize);
+    size = newSize;
+  }
+
+  /**
+   * Closes the files of this store.
+   *
+   * @throws IOException if the files cannot be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    activeSegment.close();
+    indexChannel.close();
+    mappedSegments.clear();
+    cache.clear();
+  }
+
+  /**
+   * Opens a segment for appending and discards any bytes after the end of its last Block.
+   *
+   * @param number the number of the segment
+   * @param end the end of the last Block in the segment
+   * @throws IOException if the segment cannot be opened
+   */
+  private void openActiveSegment(int number, long end) throws IOException {
+    activeSegment =
+        FileChannel.open(
+            segmentPath(number),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    if (activeSegment.size() > end) {
+      activeSegment.truncate(end);
+    }
+    activeSegmentNumber = number;
+  }
+
+  /**
+   * Returns the mapping of a segment, which covers at least the provided number of bytes.
+   *
+   * @param number the number of the segment
+   * @param minimumSize the number of bytes the mapping must cover
+   * @return the mapped segment
+   * @throws IOException if the segment cannot be mapped
+   */
+  private MappedByteBuffer mapSegment(int number, int minimumSize) throws IOException {
+    MappedByteBuffer mapped = mappedSegments.get(number);
+    if (mapped != null && mapped.capacity() >= minimumSize) {
+      return mapped;
+    }
+    try (FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (mapped.capacity() < minimumSize) {
+      throw new IOException("Segment " + number + " is truncated");
+    }
+    mappedSegments.put(number, mapped);
+    return mapped;
+  }
+
+  private ByteBuffer readIndexEntry(int position) throws IOException {
+    ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+    long offset = (long) position * INDEX_ENTRY_SIZE;
+    while (entry.hasRemaining()) {
+      if (indexChannel.read(entry, offset + entry.position()) < 0) {
+        throw new IOException("The index is truncated");
+      }
+    }
+    return entry;
+  }
+
+  private Path segmentPath(int number) {
+    return directory.resolve(String.format("segment-%06d.dat", number));
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      offset += channel.write(buffer, offset);
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("The BlockStore is closed");
+    }
+  }
+}
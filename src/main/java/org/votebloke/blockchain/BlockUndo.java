@@ -0,0 +1,154 @@
+package org.votebloke.blockchain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * The net effect of a Block on the unconsumed TransactionOutputs: the outputs it spent, which
+ * existed before the Block, and the outputs it created, which still exist after the Block.
+ *
+ * <p>Outputs created and spent within the same Block appear in neither list. Applying a BlockUndo
+ * to a UtxoStore spends the spent outputs and adds the created ones; reverting it does the
+ * opposite, in time proportional to the size of the Block.
+ */
+public class BlockUndo implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** The outputs spent by the Block, which existed before it. */
+  private final LinkedHashMap<Outpoint, TransactionOutput> spent = new LinkedHashMap<>();
+
+  /** The outputs created by the Block, which still exist after it. */
+  private final LinkedHashMap<Outpoint, TransactionOutput> created = new LinkedHashMap<>();
+
+  /**
+   * Computes the effect of Transactions on the unconsumed outputs, as Block.addTransaction records
+   * it. Every input of a Transaction must spend an output in the store or created by an earlier
+   * Transaction, which was not spent by an earlier Transaction, and must not repeat an earlier
+   * input of the same Transaction. Spent outputs are recorded as the inputs hold them, with their
+   * Entry objects, rather than read back from the store, which may not keep Entry objects.
+   *
+   * @param transactions the Transactions of a Block, in order
+   * @param store the unconsumed outputs before the Block; it is not changed
+   * @return the BlockUndo of the Transactions; null if a Transaction spends a missing output or
+   *     spends an output twice
+   */
+  static BlockUndo of(@NonNull List<Transaction> transactions, @NonNull UtxoStore store) {
+    BlockUndo undo = new BlockUndo();
+    for (Transaction transaction : transactions) {
+      if (transaction.inputs != null) {
+        HashSet<Outpoint> own = new HashSet<>();
+        for (TransactionInput input : transaction.inputs) {
+          Outpoint outpoint = input.transactionOut.getOutpoint();
+          if (!own.add(outpoint) || !undo.isUnconsumed(outpoint, store)) {
+            return null;
+          }
+        }
+        for (TransactionInput input : transaction.inputs) {
+          TransactionOutput created = undo.created.get(input.transactionOut.getOutpoint());
+          undo.recordSpend(created != null ? created : input.transactionOut);
+        }
+      }
+      for (TransactionOutput output : transaction.outputs) {
+        undo.recordCreate(output);
+      }
+    }
+    return undo;
+  }
+
+  /**
+   * Tests whether an output is unconsumed after the Transactions recorded so far.
+   *
+   * @param outpoint the outpoint of the output
+   * @param store the unconsumed outputs before the Block
+   * @return true if the output was created and not spent since, or is in the store and not spent
+   */
+  private boolean isUnconsumed(Outpoint outpoint, UtxoStore store) {
+    return created.containsKey(outpoint)
+        || (!spent.containsKey(outpoint) && store.contains(outpoint));
+  }
+
+  /**
+   * Records that the Block spent an output.
+   *
+   * @param output the spent output
+   */
+  void recordSpend(@NonNull TransactionOutput output) {
+    Outpoint outpoint = output.getOutpoint();
+    if (created.remove(outpoint) == null) {
+      spent.put(outpoint, output);
+    }
+  }
+
+  /**
+   * Records that the Block created an output.
+   *
+   * @param output the created output
+   */
+  void recordCreate(@NonNull TransactionOutput output) {
+    created.put(output.getOutpoint(), output);
+  }
+
+  /**
+   * Returns the outputs spent by the Block, which existed before it.
+   *
+   * @return the spent outputs, in the order they were spent in
+   */
+  public List<TransactionOutput> getSpent() {
+    return Collections.unmodifiableList(new ArrayList<>(spent.values()));
+  }
+
+  /**
+   * Returns the outputs created by the Block, which still exist after it.
+   *
+   * @return the created outputs, in the order they were created in
+   */
+  public List<TransactionOutput> getCreated() {
+    return Collections.unmodifiableList(new ArrayList<>(created.values()));
+  }
+
+  /**
+   * Tests whether the store contains every output spent by the Block.
+   *
+   * @param store the unconsumed outputs before the Block
+   * @return true if the Block can be applied to the store; false otherwise
+   */
+  public boolean canApplyTo(@NonNull UtxoStore store) {
+    for (Outpoint outpoint : spent.keySet()) {
+      if (!store.contains(outpoint)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies the Block to the store: spends the spent outputs and adds the created ones.
+   *
+   * @param store the unconsumed outputs before the Block
+   */
+  public void apply(@NonNull UtxoStore store) {
+    spent.keySet().forEach(store::spend);
+    created.values().forEach(store::add);
+  }
+
+  /**
+   * Reverts the Block from the store: spends the created outputs and adds back the spent ones.
+   *
+   * @param store the unconsumed outputs after the Block
+   */
+  public void revert(@NonNull UtxoStore store) {
+    List<Outpoint> createdOutpoints = new ArrayList<>(created.keySet());
+    for (int i = createdOutpoints.size() - 1; i >= 0; i--) {
+      store.spend(createdOutpoints.get(i));
+    }
+    List<TransactionOutput> spentOutputs = new ArrayList<>(spent.values());
+    for (int i = spentOutputs.size() - 1; i >= 0; i--) {
+      store.add(spentOutputs.get(i));
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package org.votebloke.blockchain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import org.springframework.lang.NonNull;
+
+/**
+ * A reader of the binary encoding written by CanonicalEncoder.
+ *
+ * <p>Every read method reads what the write method of the same name wrote. Lengths of -1 are read
+ * back as null. Malformed input - a negative length other than -1, a length beyond the end of the
+ * bytes, a hash of another length or an invalid key - is rejected with an IllegalArgumentException
+ * rather than read past.
+ */
+public final class CanonicalDecoder {
+  /** The encoded bytes. */
+  private final byte[] bytes;
+
+  /** The position of the next byte to read. */
+  private int position = 0;
+
+  /**
+   * A constructor for CanonicalDecoder.
+   *
+   * @param bytes the encoded bytes; they are not copied
+   */
+  public CanonicalDecoder(@NonNull byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Reads a single byte.
+   *
+   * @return the byte
+   * @throws IllegalArgumentException if there are no more bytes
+   */
+  public byte readByte() throws IllegalArgumentException {
+    require(1);
+    return bytes[position++];
+  }
+
+  /**
+   * Reads a 32-bit integer.
+   *
+   * @return the integer
+   * @throws IllegalArgumentException if fewer than 4 bytes remain
+   */
+  public int readInt() throws IllegalArgumentException {
+    require(4);
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      value = (value << 8) | (bytes[position++] & 0xff);
+    }
+    return value;
+  }
+
+  /**
+   * Reads a 64-bit integer.
+   *
+   * @return the integer
+   * @throws IllegalArgumentException if fewer than 8 bytes remain
+   */
+  public long readLong() throws IllegalArgumentException {
+    require(8);
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (bytes[position++] & 0xff);
+    }
+    return value;
+  }
+
+  /**
+   * Reads bytes prefixed by their length.
+   *
+   * @return the bytes; null if null was written
+   * @throws IllegalArgumentException if the length is invalid
+   */
+  public byte[] readBytes() throws IllegalArgumentException {
+    int length = readCount();
+    if (length < 0) {
+      return null;
+    }
+    byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+    position += length;
+    return value;
+  }
+
+  /**
+   * Reads a string written as UTF-8 bytes prefixed by their length.
+   *
+   * @return the string; null if null was written
+   * @throws IllegalArgumentException if the length is invalid
+   */
+  public String readString() throws IllegalArgumentException {
+    byte[] value = readBytes();
+    return value == null ? null : new String(value, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads an array of strings prefixed by its length.
+   *
+   * @return the strings; null if null was written
+   * @throws IllegalArgumentException if a length is invalid
+   */
+  public String[] readStrings() throws IllegalArgumentException {
+    int length = readCount();
+    if (length < 0) {
+      return null;
+    }
+    String[] values = new String[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = readString();
+    }
+    return values;
+  }
+
+  /**
+   * Reads a public key written as its encoding prefixed by its length. The key is interned in the
+   * default KeyRegistry.
+   *
+   * @return the public ECDSA key; null if null was written
+   * @throws IllegalArgumentException if the length is invalid or the bytes are not an ECDSA key
+   */
+  public PublicKey readKey() throws IllegalArgumentException {
+    byte[] encoded = readBytes();
+    if (encoded == null) {
+      return null;
+    }
+    String base64 = Base64.getEncoder().encodeToString(encoded);
+    try {
+      return KeyRegistry.getDefault().register(base64).getKey();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException("The encoded key is not a public ECDSA key", e);
+    }
+  }
+
+  /**
+   * Reads a hash written as its bytes prefixed by their length.
+   *
+   * @return the hash; null if null was written
+   * @throws IllegalArgumentException if the length is neither -1 nor the length of a hash
+   */
+  public Hash256 readHash() throws IllegalArgumentException {
+    int length = readInt();
+    if (length == -1) {
+      return null;
+    }
+    if (length != Hash256.LENGTH) {
+      throw new IllegalArgumentException("A hash must have " + Hash256.LENGTH + " bytes");
+    }
+    require(length);
+    Hash256 hash = Hash256.of(Arrays.copyOfRange(bytes, position, position + length));
+    position += length;
+    return hash;
+  }
+
+  /**
+   * Reads a time stamp written as the number of milliseconds since the epoch.
+   *
+   * @return the time stamp
+   * @throws IllegalArgumentException if fewer than 8 bytes remain
+   */
+  public Date readDate() throws IllegalArgumentException {
+    return new Date(readLong());
+  }
+
+  /**
+   * Reads the length of bytes or the number of elements of a sequence, as written by writeInt
+   * before them. Every element takes at least one byte, so a count beyond the remaining bytes is
+   * rejected before anything is allocated for the elements.
+   *
+   * @return the length; -1 if null was written
+   * @throws IllegalArgumentException if the length is negative other than -1 or exceeds the number
+   *     of remaining bytes
+   */
+  public int readCount() throws IllegalArgumentException {
+    int count = readInt();
+    if (count < -1 || count > remaining()) {
+      throw new IllegalArgumentException("Invalid length " + count);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of bytes not read yet.
+   *
+   * @return the number of remaining bytes
+   */
+  public int remaining() {
+    return bytes.length - position;
+  }
+
+  /**
+   * Checks that enough bytes remain.
+   *
+   * @param count the number of bytes about to be read
+   * @throws IllegalArgumentException if fewer bytes remain
+   */
+  private void require(int count) {
+    if (count > bytes.length - position) {
+      throw new IllegalArgumentException("The encoding ends before its last value");
+    }
+  }
+}
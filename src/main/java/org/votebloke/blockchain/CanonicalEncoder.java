@@ -0,0 +1,234 @@
+package org.votebloke.blockchain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A deterministic binary encoder of the hashed and signed data of the blockchain.
+ *
+ * <p>Every Entry, Transaction and Block header is encoded with a CanonicalEncoder before it is
+ * hashed or signed. The encoding does not depend on the time zone, the locale or the default
+ * charset, so the same contents produce the same ids on every node:
+ *
+ * <ul>
+ *   <li>integers and time stamps are written big-endian,
+ *   <li>strings are written as UTF-8 bytes prefixed by their length,
+ *   <li>keys are written as their X.509 encoding prefixed by its length,
+ *   <li>hashes are written as their 32 bytes prefixed by the length 32,
+ *   <li>null strings, keys, hashes and byte arrays are written as the length -1.
+ * </ul>
+ *
+ * <p>Each encoded structure starts with a tag, so that different structures never share an
+ * encoding.
+ */
+public final class CanonicalEncoder {
+  /** The tag of an encoded Elections. */
+  public static final byte ELECTIONS_TAG = 1;
+
+  /** The tag of an encoded Vote. */
+  public static final byte VOTE_TAG = 2;
+
+  /** The tag of an encoded Tally. */
+  public static final byte TALLY_TAG = 3;
+
+  /** The tag of an encoded Transaction. */
+  public static final byte TRANSACTION_TAG = 16;
+
+  /** The tag of an encoded Block header. */
+  public static final byte BLOCK_HEADER_TAG = 32;
+
+  /** The tag of a Block encoded with its Transactions for storage, see BlockCodec. */
+  public static final byte BLOCK_TAG = 33;
+
+  /** The buffer holding the encoded bytes. */
+  private byte[] buffer = new byte[256];
+
+  /** The number of encoded bytes in the buffer. */
+  private int size = 0;
+
+  /**
+   * Writes a single byte.
+   *
+   * @param value the byte to write; only the lowest 8 bits are written
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeByte(int value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+    return this;
+  }
+
+  /**
+   * Writes a 32-bit integer.
+   *
+   * @param value the integer to write
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeInt(int value) {
+    ensureCapacity(4);
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      buffer[size++] = (byte) (value >>> shift);
+    }
+    return this;
+  }
+
+  /**
+   * Writes a 64-bit integer.
+   *
+   * @param value the integer to write
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeLong(long value) {
+    ensureCapacity(8);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      buffer[size++] = (byte) (value >>> shift);
+    }
+    return this;
+  }
+
+  /**
+   * Writes bytes prefixed by their length.
+   *
+   * @param bytes the bytes to write; may be null
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeBytes(byte[] bytes) {
+    if (bytes == null) {
+      return writeInt(-1);
+    }
+    writeInt(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+    return this;
+  }
+
+  /**
+   * Writes a string as UTF-8 bytes prefixed by their length.
+   *
+   * @param value the string to write; may be null
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeString(String value) {
+    return writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes an array of strings prefixed by its length.
+   *
+   * @param values the strings to write; may be null
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeStrings(String[] values) {
+    if (values == null) {
+      return writeInt(-1);
+    }
+    writeInt(values.length);
+    for (String value : values) {
+      writeString(value);
+    }
+    return this;
+  }
+
+  /**
+   * Writes a key as its encoding prefixed by its length.
+   *
+   * @param key the key to write; may be null
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeKey(Key key) {
+    if (key instanceof PublicKey) {
+      return writeBytes(KeyRegistry.getDefault().register((PublicKey) key).encodedBytes());
+    }
+    return writeBytes(key == null ? null : key.getEncoded());
+  }
+
+  /**
+   * Writes a hash as its bytes prefixed by their length.
+   *
+   * @param hash the hash to write; may be null
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeHash(Hash256 hash) {
+    if (hash == null) {
+      return writeInt(-1);
+    }
+    writeInt(Hash256.LENGTH);
+    ensureCapacity(Hash256.LENGTH);
+    hash.writeTo(buffer, size);
+    size += Hash256.LENGTH;
+    return this;
+  }
+
+  /**
+   * Writes a time stamp as the number of milliseconds since the epoch.
+   *
+   * @param date the time stamp to write
+   * @return this CanonicalEncoder
+   */
+  public CanonicalEncoder writeDate(Date date) {
+    return writeLong(date.getTime());
+  }
+
+  /**
+   * Returns the encoded bytes.
+   *
+   * @return a copy of the bytes written to this CanonicalEncoder
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Returns the number of encoded bytes.
+   *
+   * @return the number of bytes written to this CanonicalEncoder
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Feeds the encoded bytes to a digest.
+   *
+   * @param digest the digest to update
+   */
+  public void updateDigest(MessageDigest digest) {
+    digest.update(buffer, 0, size);
+  }
+
+  /**
+   * Hashes the encoded bytes.
+   *
+   * @return the SHA-256 hash of the bytes written to this CanonicalEncoder
+   */
+  public Hash256 digest() {
+    MessageDigest md = StringUtils.sha256();
+    updateDigest(md);
+    return Hash256.of(md.digest());
+  }
+
+  /**
+   * Hashes the encoded bytes.
+   *
+   * @return the 64-digit hex SHA-256 hash of the bytes written to this CanonicalEncoder
+   */
+  public String hash() {
+    return digest().toString();
+  }
+
+  /**
+   * Makes room for more bytes in the buffer.
+   *
+   * @param extra the number of bytes about to be written
+   */
+  private void ensureCapacity(int extra) {
+    if (size + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, size + extra));
+    }
+  }
+}
@@ -1,69 +1,815 @@
 package org.votebloke.blockchain;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import org.springframework.lang.NonNull;
 
 /**
  * Represents the blockchain. Performs following operations:
  *
  * <ul>
- *   <li>Adding a Block to this blockchain.
+ *   <li>Adding a Block to this blockchain, or to a competing branch, and choosing the branch.
  *   <li>Validating this blockchain.
+ *   <li>Retargeting the mining difficulty of the next Block.
+ *   <li>Tracking the unconsumed TransactionOutputs at the newest Block and rewinding Blocks.
+ *   <li>Looking up Blocks by their hash or id, and Transactions by their id or the id of their
+ *       Entry.
  * </ul>
+ *
+ * <p>A Chain optionally keeps its Blocks in a BlockStore instead of the heap. Such a Chain reopens
+ * the Blocks stored before and reads their bodies lazily; the unconsumed outputs and the lookup
+ * indexes are rebuilt from the stored Blocks on their first use.
+ *
+ * <p>Every Block added to a Chain must extend a known Block. The Chain tracks a tree of the known
+ * Blocks, and its Blocks are the branch chosen by its ForkChoice. Blocks of the other branches are
+ * kept on the heap; they are validated against the unconsumed outputs when their branch is chosen.
+ *
+ * <p>A Chain is thread-safe: Blocks may be added on one thread while others look up Blocks and
+ * Transactions. Adding, removing and validating Blocks is exclusive; lookups run concurrently.
+ * TipChangeListeners are notified while the Chain is locked and must not wait for other threads
+ * using the Chain.
  */
 public class Chain {
+  /** The maximum number of bits the mining difficulty can change by in a single retarget. */
+  public static final int MAX_RETARGET_STEP = 2;
+
+  /** The maximum mining difficulty - the number of bits in a hash. */
+  public static final int MAX_MINING_DIFFICULTY = 256;
+
+  /**
+   * The maximum number of Blocks below the newest Block a competing branch may fork at. Blocks of
+   * branches forking deeper are rejected, and forgotten once the newest Block moves past them.
+   */
+  public static final int MAX_FORK_DEPTH = 100;
+
+  /** The maximum number of Blocks of competing branches kept on the heap. */
+  public static final int MAX_SIDE_BLOCKS = 1_000;
+
+  /** The Blocks of this Chain, if it has no BlockStore. */
   private final ArrayList<Block> blockchain = new ArrayList<>();
+
+  /** The store of the Blocks of this Chain; null if the Blocks are kept on the heap. */
+  private final BlockStore blockStore;
+
+  /** The newest Block, kept on the heap together with its UtxoSet. */
+  private Block latestBlock;
+
   private String latestBlockHash;
 
+  /** The strategy the seals of Blocks in this blockchain are verified with. */
+  private final BlockSealer sealer;
+
+  /**
+   * The desired time between consecutive Blocks in milliseconds. If 0, the mining difficulty is not
+   * retargeted nor enforced.
+   */
+  private final long targetBlockInterval;
+
+  /** The number of Blocks between consecutive retargets of the mining difficulty. */
+  private final int retargetInterval;
+
+  /** The unconsumed TransactionOutputs at the newest Block of this Chain. */
+  private final UtxoStore utxoStore;
+
+  /** Whether the unconsumed outputs and the lookup indexes reflect all Blocks of this Chain. */
+  private volatile boolean stateLoaded;
+
+  /**
+   * Whether the UtxoSet of the newest Block may not match the unconsumed outputs, because the
+   * newest Block was read from the BlockStore.
+   */
+  private volatile boolean latestUtxoSetStale;
+
+  /** The rule choosing between competing branches. */
+  private final ForkChoice forkChoice;
+
+  /** The nodes of all known Blocks by their hashes, of this Chain and of competing branches. */
+  private final HashMap<Hash256, BlockNode> nodes = new HashMap<>();
+
+  /** The node of the newest Block of this Chain. */
+  private BlockNode tipNode;
+
+  /** The Blocks of the competing branches by their hashes. */
+  private final HashMap<Hash256, Block> sideBlocks = new HashMap<>();
+
+  /** The listeners notified of changes of the newest Block. */
+  private final List<TipChangeListener> tipChangeListeners = new ArrayList<>();
+
+  /** The number of Blocks at the start of this Chain, which passed the last validation. */
+  private int validatedHeight = 0;
+
+  /** The hash of the newest validated Block; null if no Block was validated. */
+  private Hash256 validatedHash;
+
+  /** The positions of the Blocks by their hashes. */
+  private final HashMap<Hash256, Integer> heightsByHash = new HashMap<>();
+
+  /** The positions of the Blocks by their ids. */
+  private final HashMap<Hash256, Integer> heightsById = new HashMap<>();
+
+  /** The locations of the Transactions by their ids. */
+  private final HashMap<Hash256, TransactionLocation> transactionLocations = new HashMap<>();
+
+  /** The locations of the Transactions by the ids of their Entry objects. */
+  private final HashMap<Hash256, TransactionLocation> entryLocations = new HashMap<>();
+
+  /**
+   * The lock guarding the state of this Chain. Changes of the Blocks, the nodes, the unconsumed
+   * outputs, the indexes and the validated height hold the write lock; lookups hold the read lock.
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
   /**
-   * Represents a blockchain.
+   * Represents a blockchain. The mining difficulty of Blocks in this blockchain is not enforced.
    *
-   * @param genesisBlock the first Block in the blockchain
+   * @param genesisBlock the sealed first Block in the blockchain
    */
   public Chain(Block genesisBlock) {
-    blockchain.add(genesisBlock);
-    this.latestBlockHash = genesisBlock.getHash();
+    this(genesisBlock, new ProofOfWorkSealer(), 0, 0);
   }
 
   /**
-   * Validates this blockchain.
+   * Represents a blockchain sealed with the provided strategy. The mining difficulty of Blocks in
+   * this blockchain is not enforced.
+   *
+   * @param genesisBlock the sealed first Block in the blockchain
+   * @param sealer the strategy the seals of Blocks in this blockchain are verified with
+   */
+  public Chain(Block genesisBlock, @NonNull BlockSealer sealer) {
+    this(genesisBlock, sealer, 0, 0);
+  }
+
+  /**
+   * Represents a blockchain of mined Blocks, which retargets their mining difficulty.
+   *
+   * @param genesisBlock the sealed first Block in the blockchain
+   * @param targetBlockInterval the desired time between consecutive Blocks in milliseconds; 0
+   *     disables retargeting
+   * @param retargetInterval the number of Blocks between consecutive retargets
+   * @throws IllegalArgumentException if targetBlockInterval is negative or retargeting is enabled
+   *     and retargetInterval is smaller than 2
+   */
+  public Chain(Block genesisBlock, long targetBlockInterval, int retargetInterval)
+      throws IllegalArgumentException {
+    this(genesisBlock, new ProofOfWorkSealer(), targetBlockInterval, retargetInterval);
+  }
+
+  /**
+   * Represents a blockchain sealed with the provided strategy, which retargets the mining
+   * difficulty of its Blocks.
+   *
+   * <p>Every retargetInterval Blocks the mining difficulty is adjusted based on the time stamps of
+   * the last retargetInterval Blocks, so that Blocks arrive every targetBlockInterval milliseconds.
+   * The mining difficulty changes by at most MAX_RETARGET_STEP bits per retarget.
+   *
+   * @param genesisBlock the sealed first Block in the blockchain
+   * @param sealer the strategy the seals of Blocks in this blockchain are verified with
+   * @param targetBlockInterval the desired time between consecutive Blocks in milliseconds; 0
+   *     disables retargeting
+   * @param retargetInterval the number of Blocks between consecutive retargets
+   * @throws IllegalArgumentException if targetBlockInterval is negative or retargeting is enabled
+   *     and retargetInterval is smaller than 2
+   */
+  public Chain(
+      Block genesisBlock,
+      @NonNull BlockSealer sealer,
+      long targetBlockInterval,
+      int retargetInterval)
+      throws IllegalArgumentException {
+    this(genesisBlock, sealer, targetBlockInterval, retargetInterval, null);
+  }
+
+  /**
+   * Represents a blockchain sealed with the provided strategy, which retargets the mining
+   * difficulty of its Blocks and keeps its unconsumed TransactionOutputs in the provided store.
+   *
+   * @param genesisBlock the sealed first Block in the blockchain
+   * @param sealer the strategy the seals of Blocks in this blockchain are verified with
+   * @param targetBlockInterval the desired time between consecutive Blocks in milliseconds; 0
+   *     disables retargeting
+   * @param retargetInterval the number of Blocks between consecutive retargets
+   * @param utxoStore the empty store, which receives the unconsumed outputs of the genesis Block;
+   *     if null, a branch of the UtxoSet of the genesis Block is used
+   * @throws IllegalArgumentException if targetBlockInterval is negative, retargeting is enabled
+   *     and retargetInterval is smaller than 2, or utxoStore is not empty
+   */
+  public Chain(
+      Block genesisBlock,
+      @NonNull BlockSealer sealer,
+      long targetBlockInterval,
+      int retargetInterval,
+      UtxoStore utxoStore)
+      throws IllegalArgumentException {
+    this(null, genesisBlock, sealer, targetBlockInterval, retargetInterval, utxoStore);
+  }
+
+  /**
+   * Represents a blockchain kept in the provided BlockStore.
+   *
+   * <p>An empty store receives the genesis Block. A store holding Blocks is reopened: its first
+   * Block must be the genesis Block, and the Blocks are read from the store on demand. A utxoStore
+   * recording the newest stored Block as its best Block, such as a reopened MappedUtxoStore, is
+   * reused as it is. Otherwise the unconsumed outputs are rebuilt into the empty utxoStore from the
+   * BlockUndo of every stored Block when they are first needed. Outputs added to the genesis Block
+   * other than by its Transactions are not stored and are therefore not restored.
+   *
+   * @param blockStore the store of the Blocks; if null, the Blocks are kept on the heap
+   * @param genesisBlock the sealed first Block in the blockchain
+   * @param sealer the strategy the seals of Blocks in this blockchain are verified with
+   * @param targetBlockInterval the desired time between consecutive Blocks in milliseconds; 0
+   *     disables retargeting
+   * @param retargetInterval the number of Blocks between consecutive retargets
+   * @param utxoStore the empty store, which receives the unconsumed outputs, or the store holding
+   *     the outputs of the newest stored Block; if null, a branch of the UtxoSet of the genesis
+   *     Block is used
+   * @throws IllegalArgumentException if targetBlockInterval is negative, retargeting is enabled
+   *     and retargetInterval is smaller than 2, genesisBlock is not sealed, utxoStore holds
+   *     outputs of another Block, or blockStore holds a different genesis Block
+   */
+  public Chain(
+      BlockStore blockStore,
+      Block genesisBlock,
+      @NonNull BlockSealer sealer,
+      long targetBlockInterval,
+      int retargetInterval,
+      UtxoStore utxoStore)
+      throws IllegalArgumentException {
+    this(
+        blockStore,
+        genesisBlock,
+        sealer,
+        targetBlockInterval,
+        retargetInterval,
+        utxoStore,
+        ForkChoice.MOST_WORK);
+  }
+
+  /**
+   * Represents a blockchain kept in the provided BlockStore, which chooses between competing
+   * branches with the provided rule. See the other constructors for the remaining parameters.
+   *
+   * @param blockStore the store of the Blocks; if null, the Blocks are kept on the heap
+   * @param genesisBlock the sealed first Block in the blockchain
+   * @param sealer the strategy the seals of Blocks in this blockchain are verified with
+   * @param targetBlockInterval the desired time between consecutive Blocks in milliseconds; 0
+   *     disables retargeting
+   * @param retargetInterval the number of Blocks between consecutive retargets
+   * @param utxoStore the empty store, which receives the unconsumed outputs, or the store holding
+   *     the outputs of the newest stored Block; if null, a branch of the UtxoSet of the genesis
+   *     Block is used
+   * @param forkChoice the rule choosing between competing branches
+   * @throws IllegalArgumentException if targetBlockInterval is negative, retargeting is enabled
+   *     and retargetInterval is smaller than 2, genesisBlock is not sealed, utxoStore holds
+   *     outputs of another Block, or blockStore holds a different genesis Block
+   */
+  public Chain(
+      BlockStore blockStore,
+      Block genesisBlock,
+      @NonNull BlockSealer sealer,
+      long targetBlockInterval,
+      int retargetInterval,
+      UtxoStore utxoStore,
+      @NonNull ForkChoice forkChoice)
+      throws IllegalArgumentException {
+    if (targetBlockInterval < 0) {
+      throw new IllegalArgumentException("targetBlockInterval must not be negative");
+    }
+    if (targetBlockInterval > 0 && retargetInterval < 2) {
+      throw new IllegalArgumentException("retargetInterval must be greater than 1");
+    }
+    if (genesisBlock.getHashDigest() == null) {
+      throw new IllegalArgumentException("genesisBlock must be sealed");
+    }
+    this.sealer = sealer;
+    this.targetBlockInterval = targetBlockInterval;
+    this.retargetInterval = retargetInterval;
+    this.blockStore = blockStore;
+    this.forkChoice = forkChoice;
+
+    if (blockStore != null && blockStore.size() > 0) {
+      if (!blockStore.read(0).getIdDigest().equals(genesisBlock.getIdDigest())) {
+        throw new IllegalArgumentException("blockStore holds a different genesis Block");
+      }
+      this.latestBlock = blockStore.read(blockStore.size() - 1);
+      this.latestBlockHash = latestBlock.getHash();
+      if (utxoStore != null
+          && utxoStore.size() != 0
+          && (utxoStore.getBestBlockHash() == null
+              || !utxoStore.getBestBlockHash().equals(latestBlock.getHashDigest()))) {
+        throw new IllegalArgumentException(
+            "utxoStore must be empty or hold the outputs of the newest stored Block");
+      }
+      this.utxoStore = utxoStore == null ? new UtxoSet() : utxoStore;
+      this.latestUtxoSetStale = true;
+      return;
+    }
+
+    if (utxoStore != null && utxoStore.size() != 0) {
+      throw new IllegalArgumentException("utxoStore must be empty");
+    }
+    if (utxoStore == null) {
+      this.utxoStore = genesisBlock.getUtxoSet().branch();
+    } else {
+      this.utxoStore = utxoStore;
+      genesisBlock.getUtxoSet().forEach(utxoStore::add);
+    }
+    this.utxoStore.setBestBlockHash(genesisBlock.getHashDigest());
+    appendBlock(genesisBlock);
+    index(0);
+    this.stateLoaded = true;
+  }
+
+  /**
+   * Validates the Blocks added to this blockchain since the last successful validation.
+   *
+   * <p>Every Block must be sealed according to the BlockSealer of this Chain. If retargeting is
+   * enabled, every Block must also have the expected mining difficulty. Blocks below the validated
+   * height are not validated again, but the first new Block must link to the newest validated
+   * Block.
    *
    * @return true if this blockchain is valid, false otherwise
    */
   public boolean isChainValid() {
+    return isChainValid(false);
+  }
+
+  /**
+   * Validates this blockchain.
+   *
+   * <p>Every Block must be sealed according to the BlockSealer of this Chain. If retargeting is
+   * enabled, every Block must also have the expected mining difficulty. A successful validation
+   * raises the validated height to the size of this Chain.
+   *
+   * @param fullAudit if true, all Blocks are validated; otherwise only the Blocks added since the
+   *     last successful validation
+   * @return true if this blockchain is valid, false otherwise
+   */
+  public boolean isChainValid(boolean fullAudit) {
+    return getFirstInvalidHeight(fullAudit) < 0;
+  }
+
+  /**
+   * Validates the Blocks added to this blockchain since the last successful validation
+   * concurrently, see getFirstInvalidHeight.
+   *
+   * @param verifier the BatchVerifier validating the Blocks
+   * @return true if this blockchain is valid, false otherwise
+   */
+  public boolean isChainValid(@NonNull BatchVerifier verifier) {
+    return isChainValid(verifier, false);
+  }
+
+  /**
+   * Validates this blockchain concurrently, see getFirstInvalidHeight.
+   *
+   * @param verifier the BatchVerifier validating the Blocks
+   * @param fullAudit if true, all Blocks are validated; otherwise only the Blocks added since the
+   *     last successful validation
+   * @return true if this blockchain is valid, false otherwise
+   */
+  public boolean isChainValid(@NonNull BatchVerifier verifier, boolean fullAudit) {
+    return getFirstInvalidHeight(verifier, fullAudit) < 0;
+  }
+
+  /**
+   * Validates this blockchain and returns the position of its first invalid Block.
+   *
+   * <p>The validated height is raised to the position of the first invalid Block, or to the size
+   * of this Chain if all Blocks are valid. The Blocks are validated without locking this Chain; if
+   * the validated Blocks are replaced by a reorganisation in the meantime, the validation is
+   * repeated.
+   *
+   * @param fullAudit if true, all Blocks are validated; otherwise only the Blocks added since the
+   *     last successful validation
+   * @return the position of the first invalid Block; -1 if this blockchain is valid
+   */
+  public int getFirstInvalidHeight(boolean fullAudit) {
+    Integer failed;
+    do {
+      failed = tryFindFirstInvalidHeight(null, fullAudit);
+    } while (failed == null);
+    return failed;
+  }
+
+  /**
+   * Validates this blockchain concurrently and returns the position of its first invalid Block.
+   *
+   * <p>The links between Blocks and their mining difficulties are checked first, in a single cheap
+   * pass. The hashes, seals and Transactions of the Blocks below the first broken link are then
+   * validated concurrently, Block by Block. The result is the lowest invalid position regardless of
+   * the order the Blocks are validated in. The validated height is raised, and concurrent
+   * reorganisations are handled, as by the sequential getFirstInvalidHeight.
+   *
+   * @param verifier the BatchVerifier validating the Blocks
+   * @param fullAudit if true, all Blocks are validated; otherwise only the Blocks added since the
+   *     last successful validation
+   * @return the position of the first invalid Block; -1 if this blockchain is valid
+   */
+  public int getFirstInvalidHeight(@NonNull BatchVerifier verifier, boolean fullAudit) {
+    Integer failed;
+    do {
+      failed = tryFindFirstInvalidHeight(verifier, fullAudit);
+    } while (failed == null);
+    return failed;
+  }
+
+  /**
+   * Returns the number of Blocks at the start of this Chain, which passed the last successful
+   * validation and are not validated again unless a full audit is requested.
+   *
+   * @return the validated height of this Chain
+   */
+  public int getValidatedHeight() {
+    lock.readLock().lock();
     try {
-      if (!blockchain.get(0).isBlockValid()) {
+      return validatedHeight;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a Block to this Chain or to a competing branch.
+   *
+   * <p>The previous Block of the Block must be known, and the Block must have the mining difficulty
+   * expected after its previous Block. A Block extending the newest Block is appended if the
+   * outputs it spends are unconsumed and it repeats no Transaction of this Chain. A Block extending
+   * another Block starts or extends a competing branch; if the ForkChoice prefers that branch, this
+   * Chain is reorganised to it. A competing branch must fork at most MAX_FORK_DEPTH Blocks below
+   * the newest Block, and at most MAX_SIDE_BLOCKS Blocks of competing branches are kept; branches
+   * left deeper by a new newest Block are forgotten. The reorganisation, and the Block with it, is
+   * rejected if a Block
+   * of the branch spends outputs that are not unconsumed or repeats a Transaction of the branch;
+   * such a Block and its descendants are forgotten. The hash, seal and Transactions of the Block
+   * are validated before this Chain is locked. The effect of a Block on the unconsumed outputs is
+   * computed from its Transactions; the BlockUndo it carries is replaced.
+   *
+   * @param block the valid Block to add
+   * @return true if the Block was added to this Chain or to a competing branch; false otherwise
+   */
+  public boolean addBlock(Block block) {
+    ensureState();
+    if (!block.isBlockValid(sealer)) {
+      return false;
+    }
+    lock.writeLock().lock();
+    try {
+      Hash256 hash = block.getHashDigest();
+      BlockNode parent = nodes.get(block.getPreviousHashDigest());
+      if (hash == null || parent == null || nodes.containsKey(hash)) {
         return false;
       }
-      for (int i = 1; i < blockchain.size(); i++) {
-        Block block = blockchain.get(i);
-        Block previousBlock = blockchain.get(i - 1);
-        if (!block.isBlockValid()) {
+      if (isRetargeting() && block.getMiningDifficulty() != getExpectedMiningDifficulty(parent)) {
+        return false;
+      }
+
+      if (parent == tipNode) {
+        if (repeatsTransaction(block) || !computeUndo(block)) {
           return false;
         }
-        if (!previousBlock.getHash().equals(block.getPreviousHash())) {
-          return false;
+        connect(block);
+        latestUtxoSetStale = false;
+        forgetDeepSideBlocks();
+        notifyTipChange(List.of(), List.of(block));
+        return true;
+      }
+
+      if (sideBlocks.size() >= MAX_SIDE_BLOCKS
+          || (isConnected(parent) && parent.getHeight() < tipNode.getHeight() - MAX_FORK_DEPTH)) {
+        return false;
+      }
+      BlockNode node = new BlockNode(block, parent);
+      nodes.put(hash, node);
+      sideBlocks.put(hash, block);
+      return !forkChoice.prefers(node, tipNode) || reorganize(node);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the newest Blocks from this Chain and reverts their effect on the unconsumed outputs,
+   * newest first. Takes time proportional to the size of the removed Blocks. The removed Blocks
+   * and the competing branches extending them are forgotten.
+   *
+   * @param count the number of Blocks to remove
+   * @return the removed Blocks, newest first
+   * @throws IllegalArgumentException if count is negative or would remove the genesis Block
+   */
+  public List<Block> rewind(int count) throws IllegalArgumentException {
+    lock.writeLock().lock();
+    try {
+      if (count < 0 || count >= blockCount()) {
+        throw new IllegalArgumentException(
+            "count must be between 0 and " + (blockCount() - 1) + ", was " + count);
+      }
+      ensureState();
+      List<Block> removed = new ArrayList<>(count);
+      BlockNode oldest = null;
+      for (int i = 0; i < count; i++) {
+        oldest = tipNode;
+        Block block = disconnect();
+        nodes.remove(block.getHashDigest());
+        removed.add(block);
+      }
+      if (oldest != null) {
+        forgetDescendants(oldest, true);
+        notifyTipChange(removed, List.of());
+      }
+      return removed;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Registers a listener notified whenever the newest Block of this Chain changes.
+   *
+   * @param listener the listener
+   */
+  public void addTipChangeListener(@NonNull TipChangeListener listener) {
+    lock.writeLock().lock();
+    try {
+      tipChangeListeners.add(listener);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Unregisters a listener.
+   *
+   * @param listener the listener
+   */
+  public void removeTipChangeListener(@NonNull TipChangeListener listener) {
+    lock.writeLock().lock();
+    try {
+      tipChangeListeners.remove(listener);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the rule this Chain chooses between competing branches with.
+   *
+   * @return the ForkChoice of this Chain
+   */
+  public ForkChoice getForkChoice() {
+    return forkChoice;
+  }
+
+  /**
+   * Returns the cumulative work of the branch ending with the Block with the hash. A Block of
+   * mining difficulty d contributes 2^d.
+   *
+   * @param hash the hash of a Block of this Chain or of a competing branch
+   * @return the work of the Block and its ancestors; null if the Block is not known
+   */
+  public BigInteger getCumulativeWork(String hash) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      BlockNode node = nodes.get(Hash256.fromString(hash));
+      return node == null ? null : node.getWork();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Tests whether the Block with the hash is known, in this Chain or in a competing branch.
+   *
+   * @param hash the hash of the Block
+   * @return true if the Block is known; false otherwise
+   */
+  public boolean isKnownBlock(String hash) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      return nodes.containsKey(Hash256.fromString(hash));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Reorganises this Chain to the branch ending with the provided node. Disconnects the Blocks
+   * above the fork and connects the Blocks of the branch. If a Block of the branch cannot be
+   * applied, it and its descendants are forgotten and the previous Blocks are restored.
+   *
+   * @param node the newest node of the branch
+   * @return true if this Chain was reorganised; false if the branch was rejected
+   */
+  private boolean reorganize(BlockNode node) {
+    List<BlockNode> branch = new ArrayList<>();
+    BlockNode fork = node;
+    while (!isConnected(fork)) {
+      branch.add(fork);
+      fork = fork.getParent();
+    }
+    Collections.reverse(branch);
+
+    List<Block> disconnected = new ArrayList<>();
+    while (tipNode != fork) {
+      Block block = disconnect();
+      sideBlocks.put(block.getHashDigest(), block);
+      disconnected.add(block);
+    }
+
+    List<Block> connected = new ArrayList<>();
+    for (BlockNode branchNode : branch) {
+      Block block = sideBlocks.get(branchNode.getHash());
+      if (repeatsTransaction(block) || !computeUndo(block)) {
+        forgetDescendants(branchNode, true);
+        for (int i = connected.size() - 1; i >= 0; i--) {
+          sideBlocks.put(connected.get(i).getHashDigest(), disconnect());
+        }
+        for (int i = disconnected.size() - 1; i >= 0; i--) {
+          connect(disconnected.get(i));
         }
+        latestUtxoSetStale = blockStore != null;
+        return false;
       }
-      return true;
-    } catch (Exception e) {
-      return false;
+      connect(block);
+      connected.add(block);
     }
+    latestUtxoSetStale = blockStore != null;
+    forgetDeepSideBlocks();
+    notifyTipChange(disconnected, connected);
+    return true;
   }
 
   /**
-   * Adds a Block to this Chain.
+   * Tests whether a Block extending the newest Block repeats a Transaction of this Chain or holds
+   * a Transaction twice.
    *
-   * @param block the valid Block to add
-   * @return true if the Block was added successfully; false otherwise
+   * @param block the Block
+   * @return true if the id of a Transaction of the Block is already recorded; false otherwise
    */
-  public boolean addBlock(Block block) {
-    if (block.isBlockValid()) {
-      blockchain.add(block);
-      latestBlockHash = block.getHash();
-      return true;
-    } else {
+  private boolean repeatsTransaction(Block block) {
+    Set<Hash256> ids = new HashSet<>();
+    for (Transaction transaction : block.getTransactions()) {
+      Hash256 id = transaction.getIdDigest();
+      if (transactionLocations.containsKey(id) || !ids.add(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Replaces the BlockUndo of a Block extending the newest Block with the one computed from its
+   * Transactions and the unconsumed outputs, so that a Block cannot misstate its effect on them.
+   *
+   * @param block the Block
+   * @return true if the Transactions of the Block spend only unconsumed outputs; false otherwise
+   */
+  private boolean computeUndo(Block block) {
+    BlockUndo undo = BlockUndo.of(block.getTransactions(), utxoStore);
+    if (undo == null) {
       return false;
     }
+    block.setUndo(undo);
+    return true;
+  }
+
+  /**
+   * Appends a Block extending the newest Block and applies it to the unconsumed outputs.
+   *
+   * @param block the Block
+   */
+  private void connect(Block block) {
+    utxoStore.setBestBlockHash(null);
+    block.getUndo().apply(utxoStore);
+    utxoStore.setBestBlockHash(block.getHashDigest());
+    sideBlocks.remove(block.getHashDigest());
+    appendBlock(block);
+    index(blockCount() - 1);
+  }
+
+  /**
+   * Removes the newest Block and reverts it from the unconsumed outputs. Lowers the validated
+   * height, if it was above the remaining Blocks.
+   *
+   * @return the removed Block
+   */
+  private Block disconnect() {
+    unindex(blockCount() - 1);
+    Block block = removeLatestBlock();
+    utxoStore.setBestBlockHash(null);
+    block.getUndo().revert(utxoStore);
+    utxoStore.setBestBlockHash(latestBlock.getHashDigest());
+    if (blockStore != null) {
+      latestUtxoSetStale = true;
+    }
+    if (validatedHeight > blockCount()) {
+      markValidated(blockCount());
+    }
+    return block;
+  }
+
+  /**
+   * Forgets the Blocks of competing branches, which descend from the provided node.
+   *
+   * @param ancestor the node whose descendants are forgotten
+   * @param inclusive whether the node itself is forgotten too
+   */
+  private void forgetDescendants(BlockNode ancestor, boolean inclusive) {
+    Iterator<Hash256> hashes = sideBlocks.keySet().iterator();
+    while (hashes.hasNext()) {
+      BlockNode node = nodes.get(hashes.next());
+      if (node.getHeight() > ancestor.getHeight()
+          && node.getAncestor(ancestor.getHeight()) == ancestor) {
+        nodes.remove(node.getHash());
+        hashes.remove();
+      }
+    }
+    if (inclusive) {
+      nodes.remove(ancestor.getHash());
+      sideBlocks.remove(ancestor.getHash());
+    }
+  }
+
+  /**
+   * Forgets the Blocks of competing branches at most as high as MAX_FORK_DEPTH Blocks below the
+   * newest Block, together with their descendants. Such branches fork deeper than MAX_FORK_DEPTH
+   * and could no longer be accepted.
+   */
+  private void forgetDeepSideBlocks() {
+    int minHeight = tipNode.getHeight() - MAX_FORK_DEPTH;
+    List<BlockNode> deep = new ArrayList<>();
+    for (Hash256 hash : sideBlocks.keySet()) {
+      BlockNode node = nodes.get(hash);
+      if (node.getHeight() <= minHeight) {
+        deep.add(node);
+      }
+    }
+    for (BlockNode node : deep) {
+      if (sideBlocks.containsKey(node.getHash())) {
+        forgetDescendants(node, true);
+      }
+    }
+  }
+
+  /**
+   * Tests whether a node is a Block of this Chain rather than of a competing branch.
+   *
+   * @param node the node
+   * @return true if the Block is in this Chain
+   */
+  private boolean isConnected(BlockNode node) {
+    return Integer.valueOf(node.getHeight()).equals(heightsByHash.get(node.getHash()));
+  }
+
+  private void notifyTipChange(List<Block> disconnected, List<Block> connected) {
+    for (TipChangeListener listener : List.copyOf(tipChangeListeners)) {
+      listener.tipChanged(
+          Collections.unmodifiableList(disconnected), Collections.unmodifiableList(connected));
+    }
+  }
+
+  /**
+   * Returns the unconsumed TransactionOutputs at the newest Block of this Chain. The store is
+   * changed whenever Blocks are added or removed; it must not be read while another thread adds
+   * Blocks to this Chain.
+   *
+   * @return the UtxoStore of this Chain
+   */
+  public UtxoStore getUtxoStore() {
+    ensureState();
+    return utxoStore;
+  }
+
+  /**
+   * Returns the mining difficulty the next Block added to this Chain must have.
+   *
+   * <p>If retargeting is disabled, returns the mining difficulty of the newest Block.
+   *
+   * @return the number of leading zero bits required in the hash of the next Block
+   */
+  public int getNextMiningDifficulty() {
+    lock.readLock().lock();
+    try {
+      if (!isRetargeting()) {
+        return blockAt(blockCount() - 1).getMiningDifficulty();
+      }
+      return getExpectedMiningDifficulty(blockCount());
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -72,7 +818,12 @@ public class Chain {
    * @return the hash of the newest block in this chain
    */
   public String getLatestBlockHash() {
-    return latestBlockHash;
+    lock.readLock().lock();
+    try {
+      return latestBlockHash;
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -81,7 +832,21 @@ public class Chain {
    * @return the length of this Chain (including the genesis block)
    */
   public int size() {
-    return blockchain.size();
+    lock.readLock().lock();
+    try {
+      return blockCount();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the BlockStore of this Chain.
+   *
+   * @return the BlockStore; null if the Blocks are kept on the heap
+   */
+  public BlockStore getBlockStore() {
+    return blockStore;
   }
 
   /**
@@ -91,6 +856,576 @@ public class Chain {
    * @return the Block from this Chain
    */
   public Block getBlockAt(int position) {
-    return blockchain.get(position);
+    ensureState();
+    lock.readLock().lock();
+    try {
+      return blockWithUtxoSetAt(position);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of Blocks in this Chain.
+   *
+   * @return the number of Blocks on the heap or in the BlockStore
+   */
+  private int blockCount() {
+    return blockStore == null ? blockchain.size() : blockStore.size();
+  }
+
+  /**
+   * Returns the Block at the provided position. The newest Block is always kept on the heap, other
+   * Blocks may be read from the BlockStore.
+   *
+   * @param position the position of the Block
+   * @return the Block
+   */
+  private Block blockAt(int position) {
+    if (blockStore == null) {
+      return blockchain.get(position);
+    }
+    int size = blockStore.size();
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("No Block at position " + position);
+    }
+    return position == size - 1 ? latestBlock : blockStore.read(position);
+  }
+
+  /**
+   * Returns the Block at the provided position, see blockAt. If the newest Block was read from the
+   * BlockStore, it first receives the unconsumed outputs of this Chain as its UtxoSet. Called while
+   * holding the read lock, which keeps the unconsumed outputs unchanged; concurrent callers set
+   * equal UtxoSets.
+   *
+   * @param position the position of the Block
+   * @return the Block
+   */
+  private Block blockWithUtxoSetAt(int position) {
+    Block block = blockAt(position);
+    if (block == latestBlock && latestUtxoSetStale) {
+      block.setUtxoSet(
+          utxoStore instanceof UtxoSet
+              ? ((UtxoSet) utxoStore).branch()
+              : new UtxoSet(utxoStore.outputs()));
+      latestUtxoSetStale = false;
+    }
+    return block;
+  }
+
+  /**
+   * Appends a Block to the heap or the BlockStore and makes it the newest Block.
+   *
+   * @param block the Block
+   */
+  private void appendBlock(Block block) {
+    if (blockStore == null) {
+      blockchain.add(block);
+    } else {
+      blockStore.append(block);
+    }
+    latestBlock = block;
+    latestBlockHash = block.getHash();
+  }
+
+  /**
+   * Removes the newest Block from the heap or the BlockStore.
+   *
+   * @return the removed Block
+   */
+  private Block removeLatestBlock() {
+    Block removed = latestBlock;
+    if (blockStore == null) {
+      blockchain.remove(blockchain.size() - 1);
+      latestBlock = blockchain.get(blockchain.size() - 1);
+    } else {
+      blockStore.truncate(blockStore.size() - 1);
+      latestBlock = blockStore.read(blockStore.size() - 1);
+    }
+    latestBlockHash = latestBlock.getHash();
+    return removed;
+  }
+
+  /**
+   * Rebuilds the lookup indexes from the Blocks of a reopened BlockStore, if that was not done yet.
+   * If the unconsumed outputs are empty, they are rebuilt too: the outputs created by the genesis
+   * Block are added and the BlockUndo of every later Block is applied. A store holding the outputs
+   * of the newest Block is kept as it is. Takes the write lock, so it must not be called while
+   * holding only the read lock.
+   */
+  private void ensureState() {
+    if (stateLoaded) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (stateLoaded) {
+        return;
+      }
+      boolean rebuild = utxoStore.size() == 0;
+      if (rebuild) {
+        utxoStore.setBestBlockHash(null);
+        blockAt(0).getUndo().getCreated().forEach(utxoStore::add);
+      }
+      index(0);
+      for (int height = 1; height < blockCount(); height++) {
+        if (rebuild) {
+          blockAt(height).getUndo().apply(utxoStore);
+        }
+        index(height);
+      }
+      if (rebuild) {
+        utxoStore.setBestBlockHash(latestBlock.getHashDigest());
+      }
+      stateLoaded = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the position of the first Block to validate. Validation restarts from the genesis Block
+   * if the newest validated Block was replaced.
+   *
+   * @param fullAudit whether all Blocks are validated
+   * @return the position of the first Block to validate
+   */
+  private int getValidationStart(boolean fullAudit) {
+    if (fullAudit
+        || validatedHeight == 0
+        || validatedHeight > blockCount()
+        || !Objects.equals(
+            blockAt(validatedHeight - 1).getHashDigest(), validatedHash)) {
+      return 0;
+    }
+    return validatedHeight;
+  }
+
+  /**
+   * Validates this blockchain once, see getFirstInvalidHeight.
+   *
+   * <p>The links are checked, and the hashes of the linked Blocks and of the Block below them
+   * recorded, under the read lock. The hashes, seals and Transactions of the Blocks, which include
+   * the costly signature checks, are validated without holding a lock. The write lock is only
+   * taken to raise the validated height, after checking that the newest valid Block is still at
+   * its position; the hash links then guarantee that all Blocks below it are unchanged, while
+   * Blocks added above it do not matter.
+   *
+   * @param verifier the BatchVerifier validating the Blocks; null to validate them sequentially
+   * @param fullAudit whether all Blocks are validated
+   * @return the position of the first invalid Block; -1 if this blockchain is valid; null if the
+   *     validated Blocks were replaced during the validation
+   */
+  private Integer tryFindFirstInvalidHeight(BatchVerifier verifier, boolean fullAudit) {
+    int size;
+    int start;
+    List<Hash256> hashes = new ArrayList<>();
+    IntFunction<Block> blocks;
+    lock.readLock().lock();
+    try {
+      size = blockCount();
+      start = getValidationStart(fullAudit);
+      hashes.add(start == 0 ? null : blockAt(start - 1).getHashDigest());
+      for (int i = start; i < size && isLinkValidAt(i); i++) {
+        hashes.add(blockAt(i).getHashDigest());
+      }
+      blocks = snapshotBlocks(start, start + hashes.size() - 1, size);
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    int end = start + hashes.size() - 1;
+    AtomicBoolean replaced = new AtomicBoolean();
+    IntPredicate isBlockValid =
+        i -> {
+          Block block;
+          try {
+            block = blocks.apply(start + i);
+          } catch (RuntimeException e) {
+            return false;
+          }
+          if (!Objects.equals(block.getHashDigest(), hashes.get(i + 1))) {
+            replaced.set(true);
+            return false;
+          }
+          try {
+            return block.isBlockValid(sealer);
+          } catch (RuntimeException e) {
+            return false;
+          }
+        };
+    int failed = end;
+    if (verifier != null) {
+      int invalid = verifier.findFirstInvalid(end - start, isBlockValid);
+      failed = invalid < 0 ? end : start + invalid;
+    } else {
+      for (int i = 0; i < end - start; i++) {
+        if (!isBlockValid.test(i)) {
+          failed = start + i;
+          break;
+        }
+      }
+    }
+    if (replaced.get()) {
+      return null;
+    }
+
+    lock.writeLock().lock();
+    try {
+      if (failed > 0
+          && (failed > blockCount()
+              || !Objects.equals(
+                  blockAt(failed - 1).getHashDigest(), hashes.get(failed - start)))) {
+        return null;
+      }
+      markValidated(failed);
+      return failed < size ? failed : -1;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the Blocks at positions from start to end, which can be read without holding the lock.
+   * Called while holding the read lock. Blocks on the heap are copied; Blocks in the BlockStore are
+   * read on demand and may belong to another branch if this Chain was reorganised meanwhile.
+   *
+   * @param start the position of the first Block
+   * @param end the position after the last Block
+   * @param size the number of Blocks in this Chain
+   * @return the Block at each position from start to end
+   */
+  private IntFunction<Block> snapshotBlocks(int start, int end, int size) {
+    if (blockStore == null) {
+      List<Block> blocks = new ArrayList<>(blockchain.subList(start, end));
+      return position -> blocks.get(position - start);
+    }
+    Block tip = latestBlock;
+    return position -> position == size - 1 ? tip : blockStore.read(position);
+  }
+
+  /**
+   * Checks the link of a Block, see isLinkValid.
+   *
+   * @param position the position of the Block
+   * @return true if the link is valid; false if it is invalid or its validation throws
+   */
+  private boolean isLinkValidAt(int position) {
+    try {
+      return isLinkValid(position);
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Records that the first height Blocks of this Chain are valid.
+   *
+   * @param height the number of valid Blocks
+   */
+  private void markValidated(int height) {
+    validatedHeight = height;
+    validatedHash = height == 0 ? null : blockAt(height - 1).getHashDigest();
+  }
+
+  /**
+   * Returns the position of the Block with the hash.
+   *
+   * @param hash the hash of the Block
+   * @return the position of the Block in this Chain; -1 if there is no such Block
+   */
+  public int getHeightOfHash(String hash) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      return heightsByHash.getOrDefault(Hash256.fromString(hash), -1);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the Block with the hash.
+   *
+   * @param hash the hash of the Block
+   * @return the Block; null if there is no such Block in this Chain
+   */
+  public Block getBlockByHash(String hash) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      Integer height = heightsByHash.get(Hash256.fromString(hash));
+      return height == null ? null : blockWithUtxoSetAt(height);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the Block with the id.
+   *
+   * @param id the id of the Block
+   * @return the Block; null if there is no such Block in this Chain
+   */
+  public Block getBlockById(String id) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      Integer height = heightsById.get(Hash256.fromString(id));
+      return height == null ? null : blockWithUtxoSetAt(height);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the location of the Transaction with the id.
+   *
+   * @param transactionId the id of the Transaction
+   * @return the location of the Transaction; null if there is no such Transaction in this Chain
+   */
+  public TransactionLocation getTransactionLocation(String transactionId) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      return transactionLocations.get(Hash256.fromString(transactionId));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the Transaction with the id.
+   *
+   * @param transactionId the id of the Transaction
+   * @return the Transaction; null if there is no such Transaction in this Chain
+   */
+  public Transaction getTransaction(String transactionId) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      return getTransactionAt(transactionLocations.get(Hash256.fromString(transactionId)));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the location of the Transaction carrying the Entry with the id.
+   *
+   * @param entryId the id of the Entry, e.g. of a Vote
+   * @return the location of the Transaction; null if there is no such Entry in this Chain
+   */
+  public TransactionLocation getEntryLocation(String entryId) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      return entryLocations.get(Hash256.fromString(entryId));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the Transaction carrying the Entry with the id.
+   *
+   * @param entryId the id of the Entry, e.g. of a Vote
+   * @return the Transaction; null if there is no such Entry in this Chain
+   */
+  public Transaction getTransactionByEntryId(String entryId) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      return getTransactionAt(entryLocations.get(Hash256.fromString(entryId)));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the proof that this Chain records the Transaction with the id. The proof can be checked
+   * by a HeaderChain holding the headers of this Chain.
+   *
+   * @param transactionId the id of the Transaction
+   * @return the MerkleProof of the Transaction; null if there is no such Transaction in this Chain
+   */
+  public MerkleProof getInclusionProof(String transactionId) {
+    ensureState();
+    lock.readLock().lock();
+    try {
+      TransactionLocation location = transactionLocations.get(Hash256.fromString(transactionId));
+      return location == null
+          ? null
+          : blockAt(location.getHeight()).getInclusionProof(location.getPosition());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the headers of a range of Blocks of this Chain, for example to feed a HeaderChain.
+   *
+   * @param from the position of the first Block, inclusive
+   * @param to the position of the last Block, exclusive
+   * @return the headers of the Blocks in order
+   */
+  public List<BlockHeader> getHeaders(int from, int to) {
+    lock.readLock().lock();
+    try {
+      List<BlockHeader> headers = new ArrayList<>(Math.max(0, to - from));
+      for (int position = from; position < to; position++) {
+        headers.add(blockAt(position).getHeader());
+      }
+      return headers;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Transaction getTransactionAt(TransactionLocation location) {
+    return location == null
+        ? null
+        : blockAt(location.getHeight()).getTransactions().get(location.getPosition());
+  }
+
+  /**
+   * Adds the Block at the provided position and its Transactions to the lookup indexes and makes
+   * its node the newest node of this Chain.
+   *
+   * @param height the position of the Block, the newest one
+   */
+  private void index(int height) {
+    Block block = blockAt(height);
+    BlockNode node = block.getHashDigest() == null ? null : nodes.get(block.getHashDigest());
+    if (node == null) {
+      node = new BlockNode(block, height == 0 ? null : tipNode);
+      if (block.getHashDigest() != null) {
+        nodes.put(block.getHashDigest(), node);
+      }
+    }
+    tipNode = node;
+    if (block.getHashDigest() != null) {
+      heightsByHash.put(block.getHashDigest(), height);
+    }
+    heightsById.put(block.getIdDigest(), height);
+    List<Transaction> transactions = block.getTransactions();
+    for (int position = 0; position < transactions.size(); position++) {
+      Transaction transaction = transactions.get(position);
+      TransactionLocation location = new TransactionLocation(height, position);
+      transactionLocations.put(transaction.getIdDigest(), location);
+      if (transaction.data != null && transaction.data.getIdDigest() != null) {
+        entryLocations.put(transaction.data.getIdDigest(), location);
+      }
+    }
+  }
+
+  /**
+   * Removes the Block at the provided position and its Transactions from the lookup indexes and
+   * makes the node of the previous Block the newest node of this Chain.
+   *
+   * @param height the position of the Block, the newest one
+   */
+  private void unindex(int height) {
+    tipNode = tipNode.getParent();
+    Block block = blockAt(height);
+    if (block.getHashDigest() != null) {
+      heightsByHash.remove(block.getHashDigest(), height);
+    }
+    heightsById.remove(block.getIdDigest(), height);
+    List<Transaction> transactions = block.getTransactions();
+    for (int position = 0; position < transactions.size(); position++) {
+      Transaction transaction = transactions.get(position);
+      TransactionLocation location = new TransactionLocation(height, position);
+      transactionLocations.remove(transaction.getIdDigest(), location);
+      if (transaction.data != null && transaction.data.getIdDigest() != null) {
+        entryLocations.remove(transaction.data.getIdDigest(), location);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the Block at the provided position links to the previous Block and has the
+   * expected mining difficulty.
+   *
+   * @param position the position of the Block
+   * @return true if the Block is the genesis Block or is correctly linked; false otherwise
+   */
+  private boolean isLinkValid(int position) {
+    if (position == 0) {
+      return true;
+    }
+    Block block = blockAt(position);
+    Block previousBlock = blockAt(position - 1);
+    if (!Objects.equals(previousBlock.getHashDigest(), block.getPreviousHashDigest())) {
+      return false;
+    }
+    return !isRetargeting() || block.getMiningDifficulty() == getExpectedMiningDifficulty(position);
+  }
+
+  /**
+   * Tests whether this Chain retargets the mining difficulty of its Blocks.
+   *
+   * @return true if retargeting is enabled; false otherwise
+   */
+  private boolean isRetargeting() {
+    return targetBlockInterval > 0;
+  }
+
+  /**
+   * Calculates the mining difficulty expected of the Block at the provided position.
+   *
+   * <p>Between retargets the difficulty of the previous Block is kept. At a retarget the time
+   * between the first and the last of the preceding retargetInterval Blocks is compared with the
+   * targeted time and the difficulty is changed by the rounded binary logarithm of their ratio,
+   * limited to MAX_RETARGET_STEP bits.
+   *
+   * @param position the position of the Block, must be greater than 0
+   * @return the number of leading zero bits expected in the hash of the Block
+   */
+  private int getExpectedMiningDifficulty(int position) {
+    int previousDifficulty = blockAt(position - 1).getMiningDifficulty();
+    if (position % retargetInterval != 0) {
+      return previousDifficulty;
+    }
+    return retarget(
+        previousDifficulty,
+        blockAt(position - 1).getTimeStamp().getTime()
+            - blockAt(position - retargetInterval).getTimeStamp().getTime());
+  }
+
+  /**
+   * Calculates the mining difficulty expected of a Block extending the provided node, which may be
+   * the newest Block of a competing branch. See getExpectedMiningDifficulty(int).
+   *
+   * @param parent the node of the previous Block
+   * @return the number of leading zero bits expected in the hash of the Block
+   */
+  private int getExpectedMiningDifficulty(BlockNode parent) {
+    int position = parent.getHeight() + 1;
+    if (position % retargetInterval != 0) {
+      return parent.getMiningDifficulty();
+    }
+    return retarget(
+        parent.getMiningDifficulty(),
+        parent.getTimeStamp() - parent.getAncestor(position - retargetInterval).getTimeStamp());
+  }
+
+  /**
+   * Changes the mining difficulty at a retarget.
+   *
+   * @param previousDifficulty the mining difficulty of the previous Block
+   * @param actualTimespan the time between the first and the last of the preceding
+   *     retargetInterval Blocks in milliseconds
+   * @return the retargeted mining difficulty
+   */
+  private int retarget(int previousDifficulty, long actualTimespan) {
+    long targetTimespan = targetBlockInterval * (retargetInterval - 1);
+    long step =
+        Math.round(
+            StrictMath.log((double) targetTimespan / Math.max(actualTimespan, 1))
+                / StrictMath.log(2));
+    step = Math.max(-MAX_RETARGET_STEP, Math.min(MAX_RETARGET_STEP, step));
+
+    return (int) Math.max(0, Math.min(MAX_MINING_DIFFICULTY, previousDifficulty + step));
   }
 }
@@ -3,18 +3,21 @@ package org.votebloke.blockchain;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /** Represents a call for Elections. */
 public class Elections extends Entry {
+  private static final long serialVersionUID = 1L;
+
   /**
    * The public ECDSA key of the account which calls this Elections. The author of the elections.
    */
   private final PublicKey electionCaller;
-  /** The 64-digit hex string identifying this Elections. */
-  private String id;
+  /** The hash identifying this Elections. */
+  private Hash256 id;
   /** The question asked in this Elections. */
   private String electionsQuestion;
   /**
@@ -46,6 +49,28 @@ public class Elections extends Entry {
     this(electionCaller, "", new String[] {});
   }
 
+  /**
+   * A constructor for Elections, which restores a stored Elections, see BlockCodec.
+   *
+   * @param electionCaller the public ECDSA key of the Account starting this Elections
+   * @param electionsQuestion the question posed in this Elections
+   * @param answers the array of possible answers to the question asked in this Elections
+   * @param timeStamp the time of creation of this Elections
+   * @param id the id of this Elections; null if it was not processed
+   */
+  Elections(
+      PublicKey electionCaller,
+      String electionsQuestion,
+      String[] answers,
+      Date timeStamp,
+      Hash256 id) {
+    super(timeStamp);
+    this.electionCaller = electionCaller;
+    setQuestion(electionsQuestion);
+    setAnswers(answers);
+    this.id = id;
+  }
+
   // Public
   /**
    * Sets the id for this Elections. Performs basic checks on the question and answers in this
@@ -70,12 +95,7 @@ public class Elections extends Entry {
       throw new RuntimeException("The array of answers must be of length > 0");
     }
 
-    id =
-        StringUtils.hashString(
-            StringUtils.keyToString(electionCaller)
-                + getTimeStamp()
-                + electionsQuestion
-                + Arrays.toString(answers));
+    id = calculateId();
 
     return new ArrayList<>();
   }
@@ -104,24 +124,28 @@ public class Elections extends Entry {
   @Override
   public boolean validateEntry() {
     try {
-      return getId()
-          .equals(
-              StringUtils.hashString(
-                  StringUtils.keyToString(electionCaller)
-                      + getTimeStamp()
-                      + electionsQuestion
-                      + Arrays.toString(answers)));
+      return getIdDigest().equals(calculateId());
     } catch (Exception e) {
       return false;
     }
   }
 
+  @Override
+  public void encode(CanonicalEncoder encoder) {
+    encoder
+        .writeByte(CanonicalEncoder.ELECTIONS_TAG)
+        .writeKey(electionCaller)
+        .writeDate(getTimeStamp())
+        .writeString(electionsQuestion)
+        .writeStrings(answers);
+  }
+
   public final PublicKey getElectionsCaller() {
     return electionCaller;
   }
 
   @Override
-  public final String getId() {
+  public final Hash256 getIdDigest() {
     return id;
   }
 
@@ -1,12 +1,16 @@
 package org.votebloke.blockchain;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import org.springframework.lang.NonNull;
 
 /** The abstraction of data stored in a single Transaction. */
-public abstract class Entry {
+public abstract class Entry implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   /** The time of creation of this Entry. */
   private final Date timeStamp;
 
@@ -14,17 +18,62 @@ public abstract class Entry {
     this.timeStamp = new Date(System.currentTimeMillis());
   }
 
+  /**
+   * A constructor for Entry, which restores a stored Entry, see BlockCodec.
+   *
+   * @param timeStamp the time of creation of this Entry
+   */
+  Entry(@NonNull Date timeStamp) {
+    this.timeStamp = timeStamp;
+  }
+
   public abstract ArrayList<TransactionOutput> processEntry(List<TransactionInput> inputEntries)
       throws IllegalArgumentException;
 
   public abstract boolean validateEntry();
 
   /**
-   * Returns the id of this Entry.
+   * Writes the canonical encoding of this Entry. The encoding covers all data the id of this Entry
+   * is calculated from. Subclasses calculating their id with calculateId override this method.
+   *
+   * @param encoder the encoder to write to
+   * @throws UnsupportedOperationException if this Entry has no canonical encoding
+   */
+  public void encode(CanonicalEncoder encoder) throws UnsupportedOperationException {
+    throw new UnsupportedOperationException(getClass().getName() + " has no canonical encoding");
+  }
+
+  /**
+   * Calculates the id of this Entry from its canonical encoding.
    *
-   * @return the id of this Entry
+   * @return the hash of the canonical encoding of this Entry
    */
-  public abstract String getId();
+  protected final Hash256 calculateId() {
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    encode(encoder);
+    return encoder.digest();
+  }
+
+  /**
+   * Returns the id of this Entry. Subclasses override getId, getIdDigest or both; by default each
+   * is derived from the other.
+   *
+   * @return the 64-digit hex id of this Entry; null if this Entry was not processed yet
+   */
+  public String getId() {
+    Hash256 id = getIdDigest();
+    return id == null ? null : id.toString();
+  }
+
+  /**
+   * Returns the id of this Entry. By default the id returned by getId is parsed if it is a 64-digit
+   * hex string and hashed otherwise, as Hash256.fromString does.
+   *
+   * @return the id of this Entry; null if this Entry was not processed yet
+   */
+  public Hash256 getIdDigest() {
+    return Hash256.fromString(getId());
+  }
 
   /**
    * Returns the time stamp of creation of this Entry.
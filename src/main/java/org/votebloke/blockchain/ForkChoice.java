@@ -0,0 +1,28 @@
+package org.votebloke.blockchain;
+
+/** The rule a Chain picks its newest Block by, when Blocks compete for the same parent. */
+public enum ForkChoice {
+  /**
+   * The branch with the most cumulative work wins. A Block of mining difficulty d adds 2^d to the
+   * work of its branch.
+   */
+  MOST_WORK,
+
+  /** The branch with the most Blocks wins. */
+  LONGEST;
+
+  /**
+   * Tests whether a candidate branch is preferred over the current one. Ties keep the current
+   * branch, so the branch seen first wins.
+   *
+   * @param candidate the newest Block of the candidate branch
+   * @param current the newest Block of the current branch
+   * @return true if the Chain should switch to the candidate branch
+   */
+  boolean prefers(BlockNode candidate, BlockNode current) {
+    if (this == LONGEST) {
+      return candidate.getHeight() > current.getHeight();
+    }
+    return candidate.getWork().compareTo(current.getWork()) > 0;
+  }
+}
@@ -0,0 +1,218 @@
+package org.votebloke.blockchain;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.springframework.lang.NonNull;
+
+/**
+ * An immutable 32-byte hash, such as an id of a Block, a Transaction or an Entry.
+ *
+ * <p>The bytes are held in four longs, so comparing and hashing a Hash256 does not touch any
+ * array. The 64-digit hex representation is produced lazily and cached.
+ */
+public final class Hash256 implements Comparable<Hash256>, Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** The length of a Hash256 in bytes. */
+  public static final int LENGTH = 32;
+
+  /** The Hash256 consisting of zero bytes only. */
+  public static final Hash256 ZERO = new Hash256(0, 0, 0, 0);
+
+  private final long word0;
+  private final long word1;
+  private final long word2;
+  private final long word3;
+
+  /** The cached hex representation of this Hash256; null until first requested. */
+  private transient volatile String hex;
+
+  private Hash256(long word0, long word1, long word2, long word3) {
+    this.word0 = word0;
+    this.word1 = word1;
+    this.word2 = word2;
+    this.word3 = word3;
+  }
+
+  /**
+   * Creates a Hash256 from 32 bytes.
+   *
+   * @param bytes the bytes of the hash
+   * @return the Hash256 holding the bytes
+   * @throws IllegalArgumentException if the array is not 32 bytes long
+   */
+  public static Hash256 of(@NonNull byte[] bytes) throws IllegalArgumentException {
+    if (bytes.length != LENGTH) {
+      throw new IllegalArgumentException("A Hash256 must be 32 bytes long");
+    }
+    return new Hash256(
+        readLong(bytes, 0), readLong(bytes, 8), readLong(bytes, 16), readLong(bytes, 24));
+  }
+
+  /**
+   * Parses a 64-digit hex representation of a Hash256.
+   *
+   * @param hex the hex representation
+   * @return the parsed Hash256
+   * @throws IllegalArgumentException if the string is not a 64-digit hex representation
+   */
+  public static Hash256 fromHex(@NonNull String hex) throws IllegalArgumentException {
+    if (hex.length() != 2 * LENGTH) {
+      throw new IllegalArgumentException("A Hash256 must have 64 hex digits");
+    }
+    Hash256 hash = of(StringUtils.hexToBytes(hex));
+    hash.hex = hex.toLowerCase();
+    return hash;
+  }
+
+  /**
+   * Tests whether a string is a 64-digit hex representation of a Hash256.
+   *
+   * @param value the string to test
+   * @return true if the string can be parsed with fromHex; false otherwise
+   */
+  public static boolean isHex(String value) {
+    if (value == null || value.length() != 2 * LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (Character.digit(value.charAt(i), 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Converts a string to a Hash256. A 64-digit hex representation is parsed, any other string, for
+   * example the previous hash "0" of a genesis Block, is hashed with SHA-256.
+   *
+   * @param value the string to convert
+   * @return the Hash256 represented by the string; null if the string is null
+   */
+  public static Hash256 fromString(String value) {
+    if (value == null) {
+      return null;
+    }
+    if (isHex(value)) {
+      return fromHex(value);
+    }
+    return digest(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Hashes bytes with SHA-256.
+   *
+   * @param data the bytes to hash
+   * @return the SHA-256 hash of the bytes
+   */
+  public static Hash256 digest(@NonNull byte[] data) {
+    MessageDigest md = StringUtils.sha256();
+    return of(md.digest(data));
+  }
+
+  /**
+   * Returns the bytes of this Hash256.
+   *
+   * @return a new array with the 32 bytes of this Hash256
+   */
+  public byte[] toByteArray() {
+    byte[] bytes = new byte[LENGTH];
+    writeTo(bytes, 0);
+    return bytes;
+  }
+
+  /**
+   * Copies the bytes of this Hash256 into an array.
+   *
+   * @param destination the array to copy to
+   * @param offset the position in the array of the first copied byte
+   */
+  public void writeTo(@NonNull byte[] destination, int offset) {
+    writeLong(destination, offset, word0);
+    writeLong(destination, offset + 8, word1);
+    writeLong(destination, offset + 16, word2);
+    writeLong(destination, offset + 24, word3);
+  }
+
+  /**
+   * Returns the number of leading zero bits of this Hash256.
+   *
+   * @return the number of leading zero bits, between 0 and 256
+   */
+  public int leadingZeroBits() {
+    if (word0 != 0) {
+      return Long.numberOfLeadingZeros(word0);
+    }
+    if (word1 != 0) {
+      return 64 + Long.numberOfLeadingZeros(word1);
+    }
+    if (word2 != 0) {
+      return 128 + Long.numberOfLeadingZeros(word2);
+    }
+    return 192 + Long.numberOfLeadingZeros(word3);
+  }
+
+  /**
+   * Returns the 64-digit hex representation of this Hash256.
+   *
+   * @return the lowercase hex representation of this Hash256
+   */
+  @Override
+  public String toString() {
+    String result = hex;
+    if (result == null) {
+      result = StringUtils.bytesToHex(toByteArray());
+      hex = result;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof Hash256)) {
+      return false;
+    }
+    Hash256 that = (Hash256) other;
+    return word0 == that.word0 && word1 == that.word1 && word2 == that.word2 && word3 == that.word3;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (word0 ^ (word0 >>> 32));
+  }
+
+  @Override
+  public int compareTo(@NonNull Hash256 other) {
+    int result = Long.compareUnsigned(word0, other.word0);
+    if (result == 0) {
+      result = Long.compareUnsigned(word1, other.word1);
+    }
+    if (result == 0) {
+      result = Long.compareUnsigned(word2, other.word2);
+    }
+    if (result == 0) {
+      result = Long.compareUnsigned(word3, other.word3);
+    }
+    return result;
+  }
+
+  private static long readLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      value = (value << 8) | (bytes[i] & 0xff);
+    }
+    return value;
+  }
+
+  private static void writeLong(byte[] bytes, int offset, long value) {
+    for (int i = offset + 7; i >= offset; i--) {
+      bytes[i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package org.votebloke.blockchain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * A light verifier holding only the BlockHeaders of a blockchain.
+ *
+ * <p>A HeaderChain starts from a trusted genesis header and accepts a header only if its hash is
+ * valid and it links to the newest header. MerkleProofs are then checked against the accepted
+ * headers, so a client verifies that its Transaction is recorded with O(log n) data per Block and
+ * without any Transactions of the blockchain. Every header after the genesis header must also be
+ * sealed according to the BlockSealer of the blockchain, e.g. signed by one of its authorities.
+ *
+ * <p>A HeaderChain is not thread-safe.
+ */
+public class HeaderChain {
+  private final ArrayList<BlockHeader> headers = new ArrayList<>();
+
+  /** The strategy the seals of the headers are verified with. */
+  private final BlockSealer sealer;
+
+  /** The heights of the headers by their hashes. */
+  private final HashMap<Hash256, Integer> heightsByHash = new HashMap<>();
+
+  /**
+   * A constructor for HeaderChain of mined Blocks.
+   *
+   * @param genesisHeader the trusted header of the genesis Block
+   * @throws IllegalArgumentException if the hash of the genesis header is not valid
+   */
+  public HeaderChain(@NonNull BlockHeader genesisHeader) throws IllegalArgumentException {
+    this(genesisHeader, new ProofOfWorkSealer());
+  }
+
+  /**
+   * A constructor for HeaderChain of Blocks sealed with the provided strategy.
+   *
+   * @param genesisHeader the trusted header of the genesis Block
+   * @param sealer the strategy the seals of the headers are verified with
+   * @throws IllegalArgumentException if the hash of the genesis header is not valid
+   */
+  public HeaderChain(@NonNull BlockHeader genesisHeader, @NonNull BlockSealer sealer)
+      throws IllegalArgumentException {
+    this.sealer = sealer;
+    if (!genesisHeader.isHashValid()) {
+      throw new IllegalArgumentException("The hash of the genesis header is not valid");
+    }
+    append(genesisHeader);
+  }
+
+  /**
+   * Creates a HeaderChain from the headers of a blockchain of mined Blocks, the first of which is
+   * trusted.
+   *
+   * @param headers the headers, starting with the genesis header
+   * @return the HeaderChain
+   * @throws IllegalArgumentException if headers is empty or a header is not valid or not linked
+   */
+  public static HeaderChain of(@NonNull List<BlockHeader> headers)
+      throws IllegalArgumentException {
+    return of(headers, new ProofOfWorkSealer());
+  }
+
+  /**
+   * Creates a HeaderChain from the headers of a blockchain sealed with the provided strategy, the
+   * first of which is trusted.
+   *
+   * @param headers the headers, starting with the genesis header
+   * @param sealer the strategy the seals of the headers are verified with
+   * @return the HeaderChain
+   * @throws IllegalArgumentException if headers is empty or a header is not valid or not linked
+   */
+  public static HeaderChain of(@NonNull List<BlockHeader> headers, @NonNull BlockSealer sealer)
+      throws IllegalArgumentException {
+    if (headers.isEmpty()) {
+      throw new IllegalArgumentException("headers must not be empty");
+    }
+    HeaderChain chain = new HeaderChain(headers.get(0), sealer);
+    for (int i = 1; i < headers.size(); i++) {
+      if (!chain.add(headers.get(i))) {
+        throw new IllegalArgumentException("The header at height " + i + " is not valid");
+      }
+    }
+    return chain;
+  }
+
+  /**
+   * Adds the header of the next Block.
+   *
+   * @param header the header
+   * @return true if the header is valid, sealed and links to the newest header; false otherwise
+   */
+  public boolean add(@NonNull BlockHeader header) {
+    BlockHeader latest = headers.get(headers.size() - 1);
+    if (!header.getPreviousHash().equals(latest.getHash())
+        || !header.isHashValid()
+        || !sealer.verifySeal(header)) {
+      return false;
+    }
+    append(header);
+    return true;
+  }
+
+  /**
+   * Returns the number of headers.
+   *
+   * @return the size of this HeaderChain
+   */
+  public int size() {
+    return headers.size();
+  }
+
+  /**
+   * Returns the header at the provided height.
+   *
+   * @param height the height of the header
+   * @return the header
+   */
+  public BlockHeader getHeader(int height) {
+    return headers.get(height);
+  }
+
+  /**
+   * Returns the height of the header with the hash.
+   *
+   * @param hash the hash of the header
+   * @return the height of the header; -1 if there is no such header
+   */
+  public int getHeightOfHash(@NonNull Hash256 hash) {
+    return heightsByHash.getOrDefault(hash, -1);
+  }
+
+  /**
+   * Verifies that a Transaction is recorded in this blockchain: the proof must be valid and its
+   * header must be one of the accepted headers.
+   *
+   * @param proof the proof of the Transaction
+   * @return true if the Transaction is recorded; false otherwise
+   */
+  public boolean verify(@NonNull MerkleProof proof) {
+    return getConfirmations(proof) > 0;
+  }
+
+  /**
+   * Returns the number of Blocks recording a proven Transaction or built on top of it.
+   *
+   * @param proof the proof of the Transaction
+   * @return the number of confirmations, at least 1; 0 if the proof is not valid or its header is
+   *     not one of the accepted headers
+   */
+  public int getConfirmations(@NonNull MerkleProof proof) {
+    BlockHeader header = proof.getHeader();
+    int height = header.getHash() == null ? -1 : getHeightOfHash(header.getHash());
+    if (height < 0 || !headers.get(height).equals(header) || !proof.verify()) {
+      return 0;
+    }
+    return headers.size() - height;
+  }
+
+  private void append(BlockHeader header) {
+    heightsByHash.put(header.getHash(), headers.size());
+    headers.add(header);
+  }
+}
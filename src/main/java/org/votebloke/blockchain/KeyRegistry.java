@@ -0,0 +1,149 @@
+package org.votebloke.blockchain;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns public ECDSA keys.
+ *
+ * <p>Every distinct key - keys are equal if their X.509 encodings are equal - is registered once
+ * and gets a compact numeric id. Registering a key caches its encoding and base64 representation,
+ * so they are not recomputed on every hash, signature check or lookup. Keys, which differ only by
+ * their Java instance, map to the same RegisteredKey, so comparing keys by their ids is correct.
+ *
+ * <p>A KeyRegistry holds its RegisteredKeys weakly. TransactionOutputs, Transactions and stores
+ * keep the RegisteredKeys of their keys, so ids stay stable while they are in use; a key nothing
+ * refers to, such as the key of a rejected Transaction, is forgotten and gets a new id if it is
+ * registered again. The registry therefore does not grow with the keys it has ever seen.
+ *
+ * <p>A KeyRegistry is thread-safe.
+ */
+public final class KeyRegistry {
+  /** The KeyRegistry used by the blockchain. */
+  private static final KeyRegistry DEFAULT = new KeyRegistry();
+
+  /** A weak reference to a RegisteredKey, which remembers how it is indexed. */
+  private static final class KeyReference extends WeakReference<RegisteredKey> {
+    private final PublicKey key;
+    private final String base64;
+    private final int id;
+
+    KeyReference(RegisteredKey registeredKey, ReferenceQueue<RegisteredKey> queue) {
+      super(registeredKey, queue);
+      this.key = registeredKey.getKey();
+      this.base64 = registeredKey.getBase64();
+      this.id = registeredKey.getId();
+    }
+  }
+
+  /** The registered keys by key. */
+  private final ConcurrentHashMap<PublicKey, KeyReference> byKey = new ConcurrentHashMap<>();
+
+  /** The registered keys by their base64 representation. */
+  private final ConcurrentHashMap<String, KeyReference> byBase64 = new ConcurrentHashMap<>();
+
+  /** The registered keys by their ids. */
+  private final ConcurrentHashMap<Integer, KeyReference> byId = new ConcurrentHashMap<>();
+
+  /** The references of the RegisteredKeys, which were garbage collected. */
+  private final ReferenceQueue<RegisteredKey> collected = new ReferenceQueue<>();
+
+  /** The id of the next registered key. */
+  private final AtomicInteger nextId = new AtomicInteger(0);
+
+  /**
+   * Returns the KeyRegistry used by the blockchain.
+   *
+   * @return the default KeyRegistry
+   */
+  public static KeyRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Registers a key, unless an equal key is already registered.
+   *
+   * @param key the public ECDSA key to register
+   * @return the RegisteredKey of the key; null if the key is null
+   */
+  public RegisteredKey register(PublicKey key) {
+    if (key == null) {
+      return null;
+    }
+    RegisteredKey registeredKey = resolve(byKey.get(key));
+    if (registeredKey != null) {
+      return registeredKey;
+    }
+    synchronized (this) {
+      expungeCollectedKeys();
+      registeredKey = resolve(byKey.get(key));
+      if (registeredKey == null) {
+        registeredKey = new RegisteredKey(nextId.getAndIncrement(), key);
+        KeyReference reference = new KeyReference(registeredKey, collected);
+        byKey.put(key, reference);
+        byBase64.put(registeredKey.getBase64(), reference);
+        byId.put(registeredKey.getId(), reference);
+      }
+      return registeredKey;
+    }
+  }
+
+  /**
+   * Registers a key given by its base64 representation.
+   *
+   * @param base64 the base64 encoded public ECDSA key, as returned by StringUtils.keyToString
+   * @return the RegisteredKey of the key
+   * @throws NoSuchAlgorithmException if there is no provider of the ECDSA algorithm
+   * @throws InvalidKeySpecException if the encoded public key does not match the ECDSA key factory
+   */
+  public RegisteredKey register(String base64)
+      throws NoSuchAlgorithmException, InvalidKeySpecException {
+    RegisteredKey registeredKey = resolve(byBase64.get(base64));
+    if (registeredKey != null) {
+      return registeredKey;
+    }
+    return register(StringUtils.decodePublicKey(base64));
+  }
+
+  /**
+   * Returns the key with the provided id.
+   *
+   * @param id the id of the key
+   * @return the RegisteredKey with the id; null if no key has the id or it was forgotten
+   */
+  public RegisteredKey get(int id) {
+    return resolve(byId.get(id));
+  }
+
+  /**
+   * Returns the number of registered keys, which were not forgotten yet.
+   *
+   * @return the number of registered keys
+   */
+  public synchronized int size() {
+    expungeCollectedKeys();
+    return byId.size();
+  }
+
+  private static RegisteredKey resolve(KeyReference reference) {
+    return reference == null ? null : reference.get();
+  }
+
+  /** Removes the index entries of the RegisteredKeys, which were garbage collected. */
+  private void expungeCollectedKeys() {
+    for (Reference<? extends RegisteredKey> polled = collected.poll();
+        polled != null;
+        polled = collected.poll()) {
+      KeyReference reference = (KeyReference) polled;
+      byKey.remove(reference.key, reference);
+      byBase64.remove(reference.base64, reference);
+      byId.remove(reference.id, reference);
+    }
+  }
+}
@@ -0,0 +1,589 @@
+package org.votebloke.blockchain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * A UtxoStore, which keeps fixed-size records in memory mapped files instead of on the heap.
+ *
+ * <p>The store is an open addressing hash table with linear probing in the file utxo.dat of its
+ * directory. Every record holds the outpoint of an output, the id of its author, the type of its
+ * Entry and the id of the Entry as a reference to the payload. Authors are stored once, in the
+ * file keys.dat, and referenced by their position in it. Entries themselves are not stored; a
+ * PayloadResolver turns the type and the id of an Entry back into the Entry when an output is
+ * read. An output whose Entry is not resolved is read without it, so such outputs must not be
+ * added back to a store, or their Entry reference is lost.
+ *
+ * <p>The table doubles its capacity when it is three quarters full. Reopening a directory reuses
+ * the records stored in it and the hash of the best Block recorded in the header of the table.
+ * Changes reach the files when the operating system writes the mapped pages back; force or close
+ * writes them synchronously.
+ *
+ * <p>A MappedUtxoStore is thread-safe.
+ */
+public class MappedUtxoStore implements UtxoStore, AutoCloseable {
+  /** Resolves the Entry objects referenced by the records of a MappedUtxoStore. */
+  @FunctionalInterface
+  public interface PayloadResolver {
+    /**
+     * Returns the Entry with the id.
+     *
+     * @param entryType the type of the Entry - one of the Entry tags of CanonicalEncoder, or 0 if
+     *     the type is unknown
+     * @param entryId the id of the Entry
+     * @return the Entry; null if it is not known
+     */
+    Entry resolve(byte entryType, Hash256 entryId);
+  }
+
+  /** The default number of records in a new store. */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  /** The size of a single record in bytes. */
+  static final int RECORD_SIZE = 80;
+
+  private static final int HEADER_SIZE = 64;
+  private static final int MAGIC = 0x5554584f;
+  private static final int FORMAT_VERSION = 1;
+
+  /** Records are mapped in regions of 2^REGION_SHIFT records, as a mapping is limited to 2 GB. */
+  private static final int REGION_SHIFT = 23;
+
+  private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private static final byte EMPTY = 0;
+  private static final byte OCCUPIED = 1;
+  private static final byte REMOVED = 2;
+
+  private static final int STATE_OFFSET = 0;
+  private static final int HAS_ENTRY_OFFSET = 1;
+  private static final int ENTRY_TYPE_OFFSET = 2;
+  private static final int INDEX_OFFSET = 4;
+  private static final int TRANSACTION_ID_OFFSET = 8;
+  private static final int AUTHOR_OFFSET = 40;
+  private static final int ENTRY_ID_OFFSET = 48;
+
+  private static final int CAPACITY_OFFSET = 12;
+  private static final int SIZE_OFFSET = 16;
+  private static final int USED_OFFSET = 20;
+  private static final int BEST_BLOCK_OFFSET = 24;
+
+  private static final String TABLE_FILE = "utxo.dat";
+  private static final String KEYS_FILE = "keys.dat";
+
+  private final Path directory;
+  private final PayloadResolver payloadResolver;
+
+  private FileChannel tableChannel;
+  private MappedByteBuffer header;
+  private MappedByteBuffer[] regions;
+
+  /** The number of records in the table; a power of two. */
+  private int capacity;
+
+  /** The number of occupied records. */
+  private int size;
+
+  /** The number of occupied and removed records. */
+  private int used;
+
+  /** The hash of the newest Block whose outputs this store holds; null if it is not recorded. */
+  private Hash256 bestBlockHash;
+
+  private final FileChannel keysChannel;
+
+  /** The authors by their positions in the keys file. */
+  private final ArrayList<RegisteredKey> keys = new ArrayList<>();
+
+  /** The positions of the authors in the keys file by their ids in the default KeyRegistry. */
+  private final HashMap<Integer, Integer> keyPositions = new HashMap<>();
+
+  private boolean closed;
+
+  /**
+   * A constructor for MappedUtxoStore. Opens the store in the directory or creates a new one.
+   *
+   * @param directory the directory of the store files
+   * @param initialCapacity the number of records in a new store; ignored if the store exists
+   * @param payloadResolver resolves the Entry objects of the outputs
+   * @throws IOException if the files of the store cannot be opened or are not store files
+   * @throws IllegalArgumentException if initialCapacity is not positive or payloadResolver is null
+   */
+  public MappedUtxoStore(
+      @NonNull Path directory, int initialCapacity, @NonNull PayloadResolver payloadResolver)
+      throws IOException, IllegalArgumentException {
+    if (initialCapacity <= 0) {
+      throw new IllegalArgumentException("initialCapacity must be positive");
+    }
+    if (payloadResolver == null) {
+      throw new IllegalArgumentException("payloadResolver must not be null");
+    }
+    this.directory = directory;
+    this.payloadResolver = payloadResolver;
+    Files.createDirectories(directory);
+
+    Path table = directory.resolve(TABLE_FILE);
+    if (Files.exists(table)) {
+      openTable(table);
+    } else {
+      createTable(table, tableCapacityFor(initialCapacity));
+    }
+
+    keysChannel =
+        FileChannel.open(
+            directory.resolve(KEYS_FILE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    loadKeys();
+  }
+
+  /**
+   * A constructor for MappedUtxoStore with the default capacity.
+   *
+   * @param directory the directory of the store files
+   * @param payloadResolver resolves the Entry objects of the outputs
+   * @throws IOException if the files of the store cannot be opened or are not store files
+   * @throws IllegalArgumentException if payloadResolver is null
+   */
+  public MappedUtxoStore(@NonNull Path directory, @NonNull PayloadResolver payloadResolver)
+      throws IOException, IllegalArgumentException {
+    this(directory, DEFAULT_CAPACITY, payloadResolver);
+  }
+
+  @Override
+  public synchronized boolean contains(@NonNull Outpoint outpoint) {
+    ensureOpen();
+    return outpoint.getTransactionId() != null && find(outpoint) >= 0;
+  }
+
+  @Override
+  public synchronized TransactionOutput get(@NonNull Outpoint outpoint) {
+    ensureOpen();
+    if (outpoint.getTransactionId() == null) {
+      return null;
+    }
+    long slot = find(outpoint);
+    return slot < 0 ? null : read(slot);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the output was not created by a Transaction
+   * @throws UncheckedIOException if the store cannot grow or the author cannot be stored
+   */
+  @Override
+  public synchronized void add(@NonNull TransactionOutput output)
+      throws IllegalArgumentException, UncheckedIOException {
+    ensureOpen();
+    Outpoint outpoint = output.getOutpoint();
+    if (outpoint.getTransactionId() == null) {
+      throw new IllegalArgumentException("Only outputs of Transactions can be stored");
+    }
+    try {
+      int author = keyPosition(output.authorKey);
+      if ((long) (used + 1) * 4 > (long) capacity * 3) {
+        rehash(size + 1 > capacity / 2 ? capacity * 2 : capacity);
+      }
+      long slot = find(outpoint);
+      if (slot < 0) {
+        slot = -slot - 1;
+        if (recordState(slot) == EMPTY) {
+          used++;
+        }
+        size++;
+      }
+      write(slot, outpoint, author, output.data);
+      writeCounters();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized TransactionOutput spend(@NonNull Outpoint outpoint) {
+    ensureOpen();
+    if (outpoint.getTransactionId() == null) {
+      return null;
+    }
+    long slot = find(outpoint);
+    if (slot < 0) {
+      return null;
+    }
+    TransactionOutput spent = read(slot);
+    region(slot).put(offset(slot) + STATE_OFFSET, REMOVED);
+    size--;
+    writeCounters();
+    return spent;
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Scans all records of the table.
+   */
+  @Override
+  public synchronized List<TransactionOutput> outputs() {
+    ensureOpen();
+    List<TransactionOutput> outputs = new ArrayList<>(size);
+    for (long slot = 0; slot < capacity; slot++) {
+      if (recordState(slot) == OCCUPIED) {
+        outputs.add(read(slot));
+      }
+    }
+    return outputs;
+  }
+
+  @Override
+  public synchronized Hash256 getBestBlockHash() {
+    return bestBlockHash;
+  }
+
+  @Override
+  public synchronized void setBestBlockHash(Hash256 hash) {
+    ensureOpen();
+    bestBlockHash = hash;
+    writeBestBlockHash();
+  }
+
+  /**
+   * Returns the number of records in the table.
+   *
+   * @return the capacity of this store
+   */
+  public synchronized int getCapacity() {
+    return capacity;
+  }
+
+  /** Writes the mapped records to the files of this store. */
+  public synchronized void force() {
+    ensureOpen();
+    header.force();
+    for (MappedByteBuffer region : regions) {
+      region.force();
+    }
+  }
+
+  /**
+   * Writes the mapped records to the files of this store and closes them.
+   *
+   * @throws IOException if the files cannot be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    force();
+    closed = true;
+    tableChannel.close();
+    keysChannel.close();
+  }
+
+  /**
+   * Finds the record of an outpoint.
+   *
+   * @param outpoint the outpoint with a transaction id
+   * @return the slot of the record; -(insertion slot + 1) if there is no record
+   */
+  private long find(Outpoint outpoint) {
+    byte[] transactionId = outpoint.getTransactionId().toByteArray();
+    long mask = capacity - 1;
+    long slot = hash(outpoint) & mask;
+    long firstRemoved = -1;
+    while (true) {
+      byte state = recordState(slot);
+      if (state == EMPTY) {
+        return -(firstRemoved >= 0 ? firstRemoved : slot) - 1;
+      }
+      if (state == REMOVED) {
+        if (firstRemoved < 0) {
+          firstRemoved = slot;
+        }
+      } else if (matches(slot, transactionId, outpoint.getIndex())) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean matches(long slot, byte[] transactionId, int index) {
+    ByteBuffer region = region(slot);
+    int offset = offset(slot);
+    if (region.getInt(offset + INDEX_OFFSET) != index) {
+      return false;
+    }
+    ByteBuffer expected = ByteBuffer.wrap(transactionId);
+    for (int i = 0; i < Hash256.LENGTH; i += Long.BYTES) {
+      if (region.getLong(offset + TRANSACTION_ID_OFFSET + i) != expected.getLong(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void write(long slot, Outpoint outpoint, int author, Entry entry) {
+    ByteBuffer region = region(slot);
+    int offset = offset(slot);
+    Hash256 entryId = entry == null ? null : entry.getIdDigest();
+    region.put(offset + HAS_ENTRY_OFFSET, (byte) (entryId == null ? 0 : 1));
+    region.put(offset + ENTRY_TYPE_OFFSET, entryType(entry));
+    region.putInt(offset + INDEX_OFFSET, outpoint.getIndex());
+    region.put(offset + TRANSACTION_ID_OFFSET, outpoint.getTransactionId().toByteArray());
+    region.putInt(offset + AUTHOR_OFFSET, author);
+    region.put(
+        offset + ENTRY_ID_OFFSET,
+        entryId == null ? new byte[Hash256.LENGTH] : entryId.toByteArray());
+    region.put(offset + STATE_OFFSET, OCCUPIED);
+  }
+
+  private TransactionOutput read(long slot) {
+    ByteBuffer region = region(slot);
+    int offset = offset(slot);
+    byte[] transactionId = new byte[Hash256.LENGTH];
+    region.get(offset + TRANSACTION_ID_OFFSET, transactionId);
+    int author = region.getInt(offset + AUTHOR_OFFSET);
+    PublicKey authorKey = author < 0 ? null : keys.get(author).getKey();
+
+    Entry entry = null;
+    if (region.get(offset + HAS_ENTRY_OFFSET) != 0) {
+      byte[] entryId = new byte[Hash256.LENGTH];
+      region.get(offset + ENTRY_ID_OFFSET, entryId);
+      entry =
+          payloadResolver.resolve(region.get(offset + ENTRY_TYPE_OFFSET), Hash256.of(entryId));
+    }
+    return new TransactionOutput(
+        authorKey, entry, Hash256.of(transactionId), region.getInt(offset + INDEX_OFFSET));
+  }
+
+  private byte recordState(long slot) {
+    return region(slot).get(offset(slot) + STATE_OFFSET);
+  }
+
+  private MappedByteBuffer region(long slot) {
+    return regions[(int) (slot >>> REGION_SHIFT)];
+  }
+
+  private static int offset(long slot) {
+    return (int) (slot & REGION_MASK) * RECORD_SIZE;
+  }
+
+  private static long hash(Outpoint outpoint) {
+    int hash = outpoint.hashCode() * 0x9e3779b9;
+    return (hash ^ (hash >>> 16)) & 0xffffffffL;
+  }
+
+  private static byte entryType(Entry entry) {
+    if (entry instanceof Elections) {
+      return CanonicalEncoder.ELECTIONS_TAG;
+    } else if (entry instanceof Vote) {
+      return CanonicalEncoder.VOTE_TAG;
+    } else if (entry instanceof Tally) {
+      return CanonicalEncoder.TALLY_TAG;
+    }
+    return 0;
+  }
+
+  private static int tableCapacityFor(int records) {
+    int tableCapacity = 16;
+    while ((long) tableCapacity * 3 < (long) records * 4) {
+      if (tableCapacity == MAX_CAPACITY) {
+        throw new IllegalArgumentException("The capacity of a MappedUtxoStore is limited");
+      }
+      tableCapacity <<= 1;
+    }
+    return tableCapacity;
+  }
+
+  /**
+   * Moves the records to a new table of the capacity. The new table is written to a temporary file,
+   * which replaces the table file.
+   *
+   * @param newCapacity the capacity of the new table
+   * @throws IOException if the new table cannot be written
+   */
+  private void rehash(int newCapacity) throws IOException {
+    if (newCapacity > MAX_CAPACITY) {
+      throw new IOException("The capacity of a MappedUtxoStore is limited to " + MAX_CAPACITY);
+    }
+    FileChannel oldChannel = tableChannel;
+    MappedByteBuffer[] oldRegions = regions;
+    int oldCapacity = capacity;
+
+    Path table = directory.resolve(TABLE_FILE);
+    Path temporary = directory.resolve(TABLE_FILE + ".tmp");
+    Files.deleteIfExists(temporary);
+    createTable(temporary, newCapacity);
+
+    byte[] record = new byte[RECORD_SIZE];
+    byte[] transactionId = new byte[Hash256.LENGTH];
+    for (long slot = 0; slot < oldCapacity; slot++) {
+      ByteBuffer region = oldRegions[(int) (slot >>> REGION_SHIFT)];
+      int offset = offset(slot);
+      if (region.get(offset + STATE_OFFSET) != OCCUPIED) {
+        continue;
+      }
+      region.get(offset, record);
+      region.get(offset + TRANSACTION_ID_OFFSET, transactionId);
+      Outpoint outpoint =
+          new Outpoint(Hash256.of(transactionId), region.getInt(offset + INDEX_OFFSET));
+      long newSlot = -find(outpoint) - 1;
+      region(newSlot).put(offset(newSlot), record);
+      size++;
+      used++;
+    }
+    writeCounters();
+    force();
+
+    Files.move(
+        temporary, table, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    oldChannel.close();
+  }
+
+  private void createTable(Path path, int tableCapacity) throws IOException {
+    tableChannel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    mapTable(tableCapacity);
+    header.putInt(0, MAGIC);
+    header.putInt(4, FORMAT_VERSION);
+    header.putInt(8, RECORD_SIZE);
+    header.putInt(CAPACITY_OFFSET, tableCapacity);
+    size = 0;
+    used = 0;
+    writeCounters();
+    writeBestBlockHash();
+  }
+
+  private void openTable(Path path) throws IOException {
+    tableChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if (tableChannel.size() < HEADER_SIZE) {
+      tableChannel.close();
+      throw new IOException(path + " is not a UTXO store");
+    }
+    ByteBuffer fileHeader = tableChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+    int tableCapacity = fileHeader.getInt(CAPACITY_OFFSET);
+    if (fileHeader.getInt(0) != MAGIC
+        || fileHeader.getInt(4) != FORMAT_VERSION
+        || fileHeader.getInt(8) != RECORD_SIZE
+        || Integer.bitCount(tableCapacity) != 1
+        || tableChannel.size() < HEADER_SIZE + (long) tableCapacity * RECORD_SIZE) {
+      tableChannel.close();
+      throw new IOException(path + " is not a UTXO store");
+    }
+    mapTable(tableCapacity);
+    size = header.getInt(SIZE_OFFSET);
+    used = header.getInt(USED_OFFSET);
+    byte[] hash = new byte[Hash256.LENGTH];
+    header.get(BEST_BLOCK_OFFSET, hash);
+    bestBlockHash = Hash256.of(hash);
+    if (bestBlockHash.equals(Hash256.ZERO)) {
+      bestBlockHash = null;
+    }
+  }
+
+  private void mapTable(int tableCapacity) throws IOException {
+    header = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    int regionCount = ((tableCapacity - 1) >>> REGION_SHIFT) + 1;
+    regions = new MappedByteBuffer[regionCount];
+    for (int i = 0; i < regionCount; i++) {
+      long first = (long) i << REGION_SHIFT;
+      long records = Math.min(1L << REGION_SHIFT, tableCapacity - first);
+      regions[i] =
+          tableChannel.map(
+              FileChannel.MapMode.READ_WRITE,
+              HEADER_SIZE + first * RECORD_SIZE,
+              records * RECORD_SIZE);
+    }
+    capacity = tableCapacity;
+  }
+
+  private void writeCounters() {
+    header.putInt(SIZE_OFFSET, size);
+    header.putInt(USED_OFFSET, used);
+  }
+
+  /** Writes the hash of the newest Block to the header; zeros stand for no hash. */
+  private void writeBestBlockHash() {
+    header.put(
+        BEST_BLOCK_OFFSET,
+        (bestBlockHash == null ? Hash256.ZERO : bestBlockHash).toByteArray());
+  }
+
+  /** Reads the authors from the keys file: a sequence of lengths followed by encoded keys. */
+  private void loadKeys() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) keysChannel.size());
+    keysChannel.read(buffer, 0);
+    buffer.flip();
+    while (buffer.remaining() >= Integer.BYTES) {
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        throw new IOException(directory.resolve(KEYS_FILE) + " is truncated");
+      }
+      byte[] encoded = new byte[length];
+      buffer.get(encoded);
+      RegisteredKey key;
+      try {
+        key = KeyRegistry.getDefault().register(Base64.getEncoder().encodeToString(encoded));
+      } catch (GeneralSecurityException e) {
+        throw new IOException(directory.resolve(KEYS_FILE) + " contains an invalid key", e);
+      }
+      keyPositions.put(key.getId(), keys.size());
+      keys.add(key);
+    }
+  }
+
+  /**
+   * Returns the position of an author in the keys file. Appends new authors to the file.
+   *
+   * @param key the author
+   * @return the position of the author; -1 if key is null
+   * @throws IOException if the author cannot be appended
+   */
+  private int keyPosition(RegisteredKey key) throws IOException {
+    if (key == null) {
+      return -1;
+    }
+    Integer position = keyPositions.get(key.getId());
+    if (position != null) {
+      return position;
+    }
+    byte[] encoded = key.getEncoded();
+    ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + encoded.length);
+    record.putInt(encoded.length).put(encoded).flip();
+    long end = keysChannel.size();
+    while (record.hasRemaining()) {
+      end += keysChannel.write(record, end);
+    }
+    keyPositions.put(key.getId(), keys.size());
+    keys.add(key);
+    return keys.size() - 1;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("The MappedUtxoStore is closed");
+    }
+  }
+}
@@ -0,0 +1,345 @@
+package org.votebloke.blockchain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import org.springframework.lang.NonNull;
+
+/**
+ * A bounded pool of pending Transactions, keyed by their ids.
+ *
+ * <p>A pending Transaction is either unsigned, waiting for the signature of its signer, or signed
+ * and ready to be added to a Block. Transactions are indexed by their signer, so the Transactions
+ * of a signer are found in time proportional to their number. A Transaction already in the pool is
+ * not added again. Once the pool holds maxSize Transactions, adding another evicts the oldest one.
+ * Ready Transactions are handed out for block assembly in batches, oldest first; Transactions
+ * handed back with restore never evict pending ones.
+ *
+ * <p>Signatures are verified outside the lock of the pool, so concurrent submissions only contend
+ * for the bookkeeping. A Mempool is thread-safe.
+ */
+public class Mempool {
+  /** The default maximum number of pending Transactions. */
+  public static final int DEFAULT_MAX_SIZE = 100_000;
+
+  /** The maximum number of pending Transactions. */
+  private final int maxSize;
+
+  /** The pending Transactions by their ids, oldest first. */
+  private final LinkedHashMap<Hash256, Transaction> transactions = new LinkedHashMap<>();
+
+  /** The ids of the signed Transactions, oldest first. */
+  private final LinkedHashSet<Hash256> ready = new LinkedHashSet<>();
+
+  /** The ids of the pending Transactions by the string representations of their signers. */
+  private final HashMap<String, LinkedHashSet<Hash256>> bySigner = new HashMap<>();
+
+  /** The ids of the unsigned Transactions, which are being signed. */
+  private final HashSet<Hash256> signing = new HashSet<>();
+
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * A constructor for Mempool.
+   *
+   * @param maxSize the maximum number of pending Transactions
+   * @throws IllegalArgumentException if maxSize is smaller than 1
+   */
+  public Mempool(int maxSize) throws IllegalArgumentException {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be greater than 0");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /** A constructor for Mempool holding at most DEFAULT_MAX_SIZE Transactions. */
+  public Mempool() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Adds a pending Transaction. A signed Transaction is validated first and is ready once added.
+   *
+   * @param transaction the Transaction
+   * @return true if the Transaction was added; false if it is already pending, has no id or is
+   *     signed but not valid
+   */
+  public boolean add(@NonNull Transaction transaction) {
+    Hash256 id = transaction.getIdDigest();
+    if (id == null) {
+      return false;
+    }
+    boolean signed = transaction.getSignature() != null;
+    if (signed && !transaction.validate()) {
+      return false;
+    }
+    synchronized (this) {
+      if (transactions.containsKey(id)) {
+        return false;
+      }
+      if (transactions.size() >= maxSize) {
+        remove(transactions.keySet().iterator().next());
+        evictions.increment();
+      }
+      transactions.put(id, transaction);
+      bySigner.computeIfAbsent(transaction.getSigner(), signer -> new LinkedHashSet<>()).add(id);
+      if (signed) {
+        ready.add(id);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Signs a pending unsigned Transaction. The signature is verified before the Transaction becomes
+   * ready.
+   *
+   * @param transactionId the id of the Transaction
+   * @param signature the signature of the signer of the Transaction
+   * @return the signed Transaction; null if there is no such unsigned Transaction or the signature
+   *     is not valid
+   */
+  public Transaction sign(@NonNull Hash256 transactionId, byte[] signature) {
+    Transaction[] signed = new Transaction[1];
+    boolean taken =
+        signAndTake(
+            transactionId,
+            signature,
+            transaction -> {
+              signed[0] = transaction;
+              return true;
+            },
+            false);
+    return taken ? signed[0] : null;
+  }
+
+  /**
+   * Signs a pending unsigned Transaction and hands it to a consumer, for example a Block adding
+   * it. The Transaction leaves the pool if the consumer accepts it. If the signature is not valid
+   * or the consumer rejects the Transaction, it stays pending unsigned, as if it had not been
+   * signed. The Transaction is not ready while the consumer runs, so it is never drained twice.
+   *
+   * @param transactionId the id of the Transaction
+   * @param signature the signature of the signer of the Transaction
+   * @param consumer takes the signed Transaction; returns false if it rejects the Transaction
+   * @return true if the consumer accepted the Transaction; false otherwise
+   */
+  public boolean signAndTake(
+      @NonNull Hash256 transactionId,
+      byte[] signature,
+      @NonNull Predicate<Transaction> consumer) {
+    return signAndTake(transactionId, signature, consumer, true);
+  }
+
+  /**
+   * Signs a pending unsigned Transaction and hands it to a consumer.
+   *
+   * @param transactionId the id of the Transaction
+   * @param signature the signature of the signer of the Transaction
+   * @param consumer takes the signed Transaction; returns false if it rejects the Transaction
+   * @param take whether an accepted Transaction leaves the pool, or becomes ready
+   * @return true if the consumer accepted the Transaction; false otherwise
+   */
+  private boolean signAndTake(
+      Hash256 transactionId, byte[] signature, Predicate<Transaction> consumer, boolean take) {
+    Transaction transaction;
+    synchronized (this) {
+      transaction = transactions.get(transactionId);
+      if (transaction == null
+          || ready.contains(transactionId)
+          || transaction.getSignature() != null
+          || !signing.add(transactionId)) {
+        return false;
+      }
+    }
+    boolean accepted = false;
+    try {
+      accepted = transaction.setSignature(signature) && consumer.test(transaction);
+    } finally {
+      synchronized (this) {
+        signing.remove(transactionId);
+        boolean pending = transactions.get(transactionId) == transaction;
+        if (!accepted) {
+          transaction.clearSignature();
+        } else if (take) {
+          if (pending) {
+            remove(transactionId);
+          }
+        } else if (pending) {
+          ready.add(transactionId);
+        }
+      }
+    }
+    return accepted;
+  }
+
+  /**
+   * Returns a pending Transaction.
+   *
+   * @param transactionId the id of the Transaction
+   * @return the Transaction; null if there is no such pending Transaction
+   */
+  public synchronized Transaction get(@NonNull Hash256 transactionId) {
+    return transactions.get(transactionId);
+  }
+
+  /**
+   * Tests whether a Transaction is pending.
+   *
+   * @param transactionId the id of the Transaction
+   * @return true if the Transaction is in this pool; false otherwise
+   */
+  public synchronized boolean contains(@NonNull Hash256 transactionId) {
+    return transactions.containsKey(transactionId);
+  }
+
+  /**
+   * Removes a pending Transaction, for example once it was added to a Block.
+   *
+   * @param transactionId the id of the Transaction
+   * @return the removed Transaction; null if there is no such pending Transaction
+   */
+  public synchronized Transaction remove(@NonNull Hash256 transactionId) {
+    Transaction transaction = transactions.remove(transactionId);
+    if (transaction == null) {
+      return null;
+    }
+    ready.remove(transactionId);
+    LinkedHashSet<Hash256> signed = bySigner.get(transaction.getSigner());
+    signed.remove(transactionId);
+    if (signed.isEmpty()) {
+      bySigner.remove(transaction.getSigner());
+    }
+    return transaction;
+  }
+
+  /**
+   * Removes pending Transactions, for example those recorded in a new Block.
+   *
+   * @param recorded the Transactions to remove
+   */
+  public synchronized void removeAll(@NonNull Collection<Transaction> recorded) {
+    for (Transaction transaction : recorded) {
+      if (transaction.getIdDigest() != null) {
+        remove(transaction.getIdDigest());
+      }
+    }
+  }
+
+  /**
+   * Returns the pending Transactions of a signer, oldest first.
+   *
+   * @param keyId the string representation of the public key of the signer; if null, all pending
+   *     Transactions are returned
+   * @return the Transactions
+   */
+  public synchronized List<Transaction> getBySigner(String keyId) {
+    if (keyId == null) {
+      return new ArrayList<>(transactions.values());
+    }
+    List<Transaction> result = new ArrayList<>();
+    for (Hash256 id : bySigner.getOrDefault(keyId, new LinkedHashSet<>())) {
+      result.add(transactions.get(id));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the pending unsigned Transactions of a signer, oldest first.
+   *
+   * @param keyId the string representation of the public key of the signer; if null, the unsigned
+   *     Transactions of all signers are returned
+   * @return the unsigned Transactions
+   */
+  public synchronized List<Transaction> getUnsigned(String keyId) {
+    List<Transaction> result = getBySigner(keyId);
+    result.removeIf(transaction -> ready.contains(transaction.getIdDigest()));
+    return result;
+  }
+
+  /**
+   * Removes and returns the oldest ready Transactions.
+   *
+   * @param maxCount the maximum number of returned Transactions
+   * @return the ready Transactions, oldest first
+   */
+  public synchronized List<Transaction> drain(int maxCount) {
+    List<Transaction> batch = new ArrayList<>(Math.min(Math.max(maxCount, 0), ready.size()));
+    Iterator<Hash256> ids = ready.iterator();
+    while (batch.size() < maxCount && ids.hasNext()) {
+      Hash256 id = ids.next();
+      ids.remove();
+      batch.add(remove(id));
+    }
+    return batch;
+  }
+
+  /**
+   * Returns Transactions handed out by drain to the pool, for example those of a Block that was
+   * not added to a Chain. Signed Transactions are ready again without being validated again.
+   * Returning Transactions never evicts pending ones: once the pool is full, the remaining
+   * returned Transactions are dropped and counted as evictions.
+   *
+   * @param returned the Transactions to return
+   * @return the number of Transactions returned to the pool; the others were pending already or
+   *     dropped
+   */
+  public synchronized int restore(@NonNull Collection<Transaction> returned) {
+    int restored = 0;
+    for (Transaction transaction : returned) {
+      Hash256 id = transaction.getIdDigest();
+      if (id == null || transactions.containsKey(id)) {
+        continue;
+      }
+      if (transactions.size() >= maxSize) {
+        evictions.increment();
+        continue;
+      }
+      transactions.put(id, transaction);
+      bySigner.computeIfAbsent(transaction.getSigner(), signer -> new LinkedHashSet<>()).add(id);
+      if (transaction.getSignature() != null) {
+        ready.add(id);
+      }
+      restored++;
+    }
+    return restored;
+  }
+
+  /**
+   * Returns the number of pending Transactions.
+   *
+   * @return the size of this pool
+   */
+  public synchronized int size() {
+    return transactions.size();
+  }
+
+  /**
+   * Returns the number of ready Transactions.
+   *
+   * @return the number of signed pending Transactions
+   */
+  public synchronized int getReadyCount() {
+    return ready.size();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of Transactions evicted because this pool was full.
+   *
+   * @return the number of evictions
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+}
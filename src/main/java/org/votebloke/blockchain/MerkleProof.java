@@ -0,0 +1,77 @@
+package org.votebloke.blockchain;
+
+import java.io.Serializable;
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * A proof that a Block includes a Transaction: the id and position of the Transaction, the number
+ * of Transactions in the Block, the audit path of the Transaction in the Merkle tree of the Block
+ * and the header of the Block.
+ *
+ * <p>A proof takes O(log n) hashes for a Block of n Transactions, so a voter can check that a Vote
+ * is recorded without downloading the Block. Checked alone, a proof only shows that the header
+ * commits to the Transaction; HeaderChain also checks that the header belongs to the blockchain.
+ */
+public final class MerkleProof implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final Hash256 transactionId;
+  private final int index;
+  private final int transactionCount;
+  private final List<Hash256> auditPath;
+  private final BlockHeader header;
+
+  /**
+   * A constructor for MerkleProof.
+   *
+   * @param transactionId the id of the proven Transaction
+   * @param index the position of the Transaction in its Block
+   * @param transactionCount the number of Transactions in the Block
+   * @param auditPath the sibling hashes of the Transaction, nearest to the leaf first
+   * @param header the header of the Block
+   */
+  public MerkleProof(
+      @NonNull Hash256 transactionId,
+      int index,
+      int transactionCount,
+      @NonNull List<Hash256> auditPath,
+      @NonNull BlockHeader header) {
+    this.transactionId = transactionId;
+    this.index = index;
+    this.transactionCount = transactionCount;
+    this.auditPath = List.copyOf(auditPath);
+    this.header = header;
+  }
+
+  public Hash256 getTransactionId() {
+    return transactionId;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public int getTransactionCount() {
+    return transactionCount;
+  }
+
+  public List<Hash256> getAuditPath() {
+    return auditPath;
+  }
+
+  public BlockHeader getHeader() {
+    return header;
+  }
+
+  /**
+   * Checks that the audit path leads from the Transaction to the Merkle root of the header and
+   * that the hash of the header is valid.
+   *
+   * @return true if the header commits to the Transaction; false otherwise
+   */
+  public boolean verify() {
+    Hash256 root = MerkleTree.rootFromAuditPath(transactionId, index, transactionCount, auditPath);
+    return header.getMerkleRoot().equals(root) && header.isHashValid();
+  }
+}
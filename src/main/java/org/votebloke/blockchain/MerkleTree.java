@@ -0,0 +1,266 @@
+package org.votebloke.blockchain;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * A Merkle tree over the ids of the Transactions of a Block, built incrementally.
+ *
+ * <p>The tree follows RFC 6962: a leaf is hashed as SHA-256(0x00 || id), an inner node as
+ * SHA-256(0x01 || left || right), and a tree of n leaves is split after the largest power of two
+ * smaller than n. The root of an empty tree is the SHA-256 hash of no bytes. The domain prefixes
+ * keep a leaf from being passed off as an inner node.
+ *
+ * <p>Every level keeps the hashes of the complete subtrees of its size, so appending a leaf hashes
+ * at most one node per level and the root is folded from at most one node per level. Truncating
+ * the tree drops the nodes covering removed leaves, so a changed suffix of Transactions is rehashed
+ * without touching the prefix.
+ *
+ * <p>A MerkleTree is not thread-safe.
+ */
+public final class MerkleTree {
+  /** The root of an empty tree. */
+  public static final Hash256 EMPTY_ROOT = Hash256.of(StringUtils.sha256().digest());
+
+  private static final byte LEAF_PREFIX = 0;
+  private static final byte NODE_PREFIX = 1;
+
+  /** The ids the leaves were created from. */
+  private final ArrayList<Hash256> leaves = new ArrayList<>();
+
+  /** The hashes of the complete subtrees of 2^level leaves, by level. */
+  private final ArrayList<ArrayList<Hash256>> levels = new ArrayList<>();
+
+  /** The cached root; null if the tree changed since it was last computed. */
+  private Hash256 root = EMPTY_ROOT;
+
+  /** Creates an empty MerkleTree. */
+  public MerkleTree() {}
+
+  /**
+   * Creates a MerkleTree over the provided ids.
+   *
+   * @param ids the ids of the leaves in order
+   */
+  public MerkleTree(@NonNull List<Hash256> ids) {
+    ids.forEach(this::append);
+  }
+
+  /**
+   * Appends a leaf.
+   *
+   * @param id the id hashed into the leaf, such as the id of a Transaction
+   */
+  public void append(@NonNull Hash256 id) {
+    leaves.add(id);
+    Hash256 node = hashLeaf(id);
+    for (int level = 0; ; level++) {
+      if (level == levels.size()) {
+        levels.add(new ArrayList<>());
+      }
+      ArrayList<Hash256> nodes = levels.get(level);
+      nodes.add(node);
+      if (nodes.size() % 2 != 0) {
+        break;
+      }
+      node = hashNode(nodes.get(nodes.size() - 2), node);
+    }
+    root = null;
+  }
+
+  /**
+   * Removes the newest leaves, so that newSize leaves remain.
+   *
+   * @param newSize the number of leaves to keep
+   * @throws IllegalArgumentException if newSize is negative or greater than the size of this tree
+   */
+  public void truncate(int newSize) throws IllegalArgumentException {
+    if (newSize < 0 || newSize > leaves.size()) {
+      throw new IllegalArgumentException("newSize must be between 0 and " + leaves.size());
+    }
+    if (newSize == leaves.size()) {
+      return;
+    }
+    leaves.subList(newSize, leaves.size()).clear();
+    for (int level = 0; level < levels.size(); level++) {
+      ArrayList<Hash256> nodes = levels.get(level);
+      nodes.subList(newSize >>> level, nodes.size()).clear();
+    }
+    while (!levels.isEmpty() && levels.get(levels.size() - 1).isEmpty()) {
+      levels.remove(levels.size() - 1);
+    }
+    root = null;
+  }
+
+  /**
+   * Returns the number of leaves.
+   *
+   * @return the size of this tree
+   */
+  public int size() {
+    return leaves.size();
+  }
+
+  /**
+   * Returns the id a leaf was created from.
+   *
+   * @param index the position of the leaf
+   * @return the id of the leaf
+   */
+  public Hash256 getLeaf(int index) {
+    return leaves.get(index);
+  }
+
+  /**
+   * Returns the root of this tree. The complete subtrees at the right edge of the tree are folded
+   * from the smallest, which takes one hash per level.
+   *
+   * @return the Merkle root
+   */
+  public Hash256 getRoot() {
+    if (root == null) {
+      Hash256 folded = null;
+      for (int level = 0; level < levels.size(); level++) {
+        ArrayList<Hash256> nodes = levels.get(level);
+        if (nodes.size() % 2 != 0) {
+          Hash256 subtree = nodes.get(nodes.size() - 1);
+          folded = folded == null ? subtree : hashNode(subtree, folded);
+        }
+      }
+      root = folded == null ? EMPTY_ROOT : folded;
+    }
+    return root;
+  }
+
+  /**
+   * Returns the audit path of a leaf: the roots of the sibling subtrees on the way from the leaf to
+   * the root, nearest to the leaf first, as defined by RFC 6962.
+   *
+   * @param index the position of the leaf
+   * @return the sibling hashes proving the inclusion of the leaf
+   * @throws IndexOutOfBoundsException if there is no leaf at the position
+   */
+  public List<Hash256> getAuditPath(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= leaves.size()) {
+      throw new IndexOutOfBoundsException("No leaf at position " + index);
+    }
+    List<Hash256> path = new ArrayList<>();
+    addAuditPath(path, index, 0, leaves.size());
+    return path;
+  }
+
+  /**
+   * Adds the audit path of a leaf within a subtree, nearest to the leaf first.
+   *
+   * @param path the path to add to
+   * @param index the position of the leaf within the subtree
+   * @param start the position of the first leaf of the subtree
+   * @param size the number of leaves of the subtree
+   */
+  private void addAuditPath(List<Hash256> path, int index, int start, int size) {
+    if (size == 1) {
+      return;
+    }
+    int split = Integer.highestOneBit(size - 1);
+    if (index < split) {
+      addAuditPath(path, index, start, split);
+      path.add(subtreeRoot(start + split, size - split));
+    } else {
+      addAuditPath(path, index - split, start + split, size - split);
+      path.add(subtreeRoot(start, split));
+    }
+  }
+
+  /**
+   * Returns the root of a subtree. Complete subtrees are read from their level; others are split
+   * as the whole tree is.
+   *
+   * @param start the position of the first leaf of the subtree
+   * @param size the number of leaves of the subtree
+   * @return the root of the subtree
+   */
+  private Hash256 subtreeRoot(int start, int size) {
+    if (Integer.bitCount(size) == 1 && start % size == 0) {
+      int level = Integer.numberOfTrailingZeros(size);
+      return levels.get(level).get(start >>> level);
+    }
+    int split = Integer.highestOneBit(size - 1);
+    return hashNode(subtreeRoot(start, split), subtreeRoot(start + split, size - split));
+  }
+
+  /**
+   * Computes the root of a tree from a leaf and its audit path, following RFC 9162.
+   *
+   * @param id the id of the leaf
+   * @param index the position of the leaf
+   * @param size the number of leaves of the tree
+   * @param auditPath the sibling hashes, nearest to the leaf first
+   * @return the root proven by the path; null if the path does not fit the position and size
+   */
+  public static Hash256 rootFromAuditPath(
+      @NonNull Hash256 id, int index, int size, @NonNull List<Hash256> auditPath) {
+    if (index < 0 || index >= size) {
+      return null;
+    }
+    int position = index;
+    int last = size - 1;
+    Hash256 node = hashLeaf(id);
+    for (Hash256 sibling : auditPath) {
+      if (last == 0) {
+        return null;
+      }
+      if ((position & 1) == 1 || position == last) {
+        node = hashNode(sibling, node);
+        while ((position & 1) == 0 && position != 0) {
+          position >>>= 1;
+          last >>>= 1;
+        }
+      } else {
+        node = hashNode(node, sibling);
+      }
+      position >>>= 1;
+      last >>>= 1;
+    }
+    return last == 0 ? node : null;
+  }
+
+  /**
+   * Computes the root of a tree over the provided ids.
+   *
+   * @param ids the ids of the leaves in order
+   * @return the Merkle root
+   */
+  public static Hash256 rootOf(@NonNull List<Hash256> ids) {
+    return new MerkleTree(ids).getRoot();
+  }
+
+  /**
+   * Hashes a leaf.
+   *
+   * @param id the id of the leaf
+   * @return SHA-256(0x00 || id)
+   */
+  static Hash256 hashLeaf(Hash256 id) {
+    MessageDigest md = StringUtils.sha256();
+    md.update(LEAF_PREFIX);
+    md.update(id.toByteArray());
+    return Hash256.of(md.digest());
+  }
+
+  /**
+   * Hashes an inner node.
+   *
+   * @param left the hash of the left child
+   * @param right the hash of the right child
+   * @return SHA-256(0x01 || left || right)
+   */
+  static Hash256 hashNode(Hash256 left, Hash256 right) {
+    byte[] data = new byte[1 + 2 * Hash256.LENGTH];
+    data[0] = NODE_PREFIX;
+    left.writeTo(data, 1);
+    right.writeTo(data, 1 + Hash256.LENGTH);
+    return Hash256.digest(data);
+  }
+}
@@ -0,0 +1,127 @@
+package org.votebloke.blockchain;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.springframework.lang.NonNull;
+
+/**
+ * Computes the candidate hashes of a Block while mining.
+ *
+ * <p>The hashed data of a Block consists of a hash base, which does not change between mining
+ * attempts, followed by the nonce written as 4 big-endian bytes. The hash base is digested only
+ * once - every attempt clones the state of the digest and feeds it only the bytes of the nonce. The
+ * mining difficulty is checked on the raw digest bytes; a Hash256 is created only for the winning
+ * hash.
+ *
+ * <p>A MiningEngine is not thread-safe. Each worker should use its own MiningEngine.
+ */
+final class MiningEngine {
+  /** The length of a SHA-256 digest in bytes. */
+  private static final int DIGEST_LENGTH = 32;
+
+  /** The digest, which has already absorbed the hash base. */
+  private final MessageDigest midstate;
+
+  /** The number of leading zero bits required in a mined hash. */
+  private final int miningDifficulty;
+
+  /** The buffer holding the bytes of the currently tried nonce. */
+  private final byte[] nonceBytes = new byte[4];
+
+  /** The buffer holding the digest of the currently tried nonce. */
+  private final byte[] digest = new byte[DIGEST_LENGTH];
+
+  /**
+   * A constructor for MiningEngine.
+   *
+   * @param hashBase the hashed data preceding the nonce
+   * @param miningDifficulty the number of leading zero bits required in a mined hash
+   */
+  MiningEngine(@NonNull byte[] hashBase, int miningDifficulty) {
+    try {
+      this.midstate = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    this.midstate.update(hashBase);
+    this.miningDifficulty = miningDifficulty;
+  }
+
+  /**
+   * Tests whether the hash for the provided nonce matches the mining difficulty.
+   *
+   * @param nonce the nonce to try
+   * @return true if the hash for the nonce has enough leading zeros; false otherwise
+   */
+  boolean tryNonce(int nonce) {
+    digestNonce(nonce);
+    return meetsDifficulty(digest, miningDifficulty);
+  }
+
+  /**
+   * Returns the hash for the provided nonce.
+   *
+   * @param nonce the nonce to hash
+   * @return the hash for the nonce
+   */
+  Hash256 hashOf(int nonce) {
+    digestNonce(nonce);
+    return Hash256.of(digest);
+  }
+
+  /**
+   * Tests whether a digest starts with the required number of zero bits.
+   *
+   * @param digest the digest to test
+   * @param miningDifficulty the number of leading zero bits
+   * @return true if the digest has at least miningDifficulty leading zero bits
+   */
+  static boolean meetsDifficulty(byte[] digest, int miningDifficulty) {
+    if (miningDifficulty > 8 * digest.length) {
+      return false;
+    }
+    int fullBytes = miningDifficulty / 8;
+    for (int i = 0; i < fullBytes; i++) {
+      if (digest[i] != 0) {
+        return false;
+      }
+    }
+    int remainingBits = miningDifficulty % 8;
+    return remainingBits == 0 || (digest[fullBytes] & (0xff << (8 - remainingBits)) & 0xff) == 0;
+  }
+
+  /**
+   * Digests the provided nonce into the digest buffer.
+   *
+   * @param nonce the nonce to digest
+   */
+  private void digestNonce(int nonce) {
+    nonceBytes[0] = (byte) (nonce >>> 24);
+    nonceBytes[1] = (byte) (nonce >>> 16);
+    nonceBytes[2] = (byte) (nonce >>> 8);
+    nonceBytes[3] = (byte) nonce;
+
+    MessageDigest md = cloneDigest(midstate);
+    md.update(nonceBytes);
+    try {
+      md.digest(digest, 0, DIGEST_LENGTH);
+    } catch (DigestException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Clones the state of a digest.
+   *
+   * @param digest the digest to clone
+   * @return the clone of the digest
+   */
+  private static MessageDigest cloneDigest(MessageDigest digest) {
+    try {
+      return (MessageDigest) digest.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
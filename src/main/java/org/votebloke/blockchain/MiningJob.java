@@ -0,0 +1,108 @@
+package org.votebloke.blockchain;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An asynchronous mining of the hash of a Block.
+ *
+ * <p>A MiningJob completes with the mined Block once one of its workers finds a hash matching the
+ * mining difficulty. Cancelling a MiningJob, completing it or letting it time out with {@link
+ * #orTimeout} stops all of its workers. While the Block is being mined, the number of tried nonces
+ * and the hash rate can be read from other threads.
+ */
+public class MiningJob extends CompletableFuture<Block> {
+  /** The Block mined by this MiningJob. */
+  private final Block block;
+
+  /** The number of nonces tried by the workers of this MiningJob. */
+  private final LongAdder noncesTried = new LongAdder();
+
+  /** The number of workers, which have not yet exhausted their part of the nonce space. */
+  private final AtomicInteger activeWorkers;
+
+  /** The number of times the workers restarted after the Transactions of the Block changed. */
+  private final LongAdder restarts = new LongAdder();
+
+  /** The time of the start of this MiningJob in nanoseconds. */
+  private final long startTime = System.nanoTime();
+
+  /** The time of the completion of this MiningJob in nanoseconds; 0 until completed. */
+  private volatile long finishTime = 0;
+
+  /**
+   * A constructor for MiningJob.
+   *
+   * @param block the Block to mine
+   * @param workers the number of workers mining the Block
+   */
+  MiningJob(Block block, int workers) {
+    this.block = block;
+    this.activeWorkers = new AtomicInteger(workers);
+    whenComplete((minedBlock, exception) -> finishTime = System.nanoTime());
+  }
+
+  /**
+   * Returns the Block mined by this MiningJob.
+   *
+   * @return the mined Block
+   */
+  public Block getBlock() {
+    return block;
+  }
+
+  /**
+   * Returns the number of nonces tried so far.
+   *
+   * @return the number of nonces tried by all workers of this MiningJob
+   */
+  public long getNoncesTried() {
+    return noncesTried.sum();
+  }
+
+  /**
+   * Returns the number of times mining restarted because the Transactions of the Block changed.
+   *
+   * @return the number of restarts of all workers of this MiningJob
+   */
+  public long getRestarts() {
+    return restarts.sum();
+  }
+
+  /**
+   * Returns the average hash rate of this MiningJob from its start until now or until its
+   * completion.
+   *
+   * @return the number of hashes per second
+   */
+  public double getHashRate() {
+    long end = isDone() && finishTime != 0 ? finishTime : System.nanoTime();
+    long elapsed = Math.max(end - startTime, 1);
+    return getNoncesTried() * 1e9 / elapsed;
+  }
+
+  /**
+   * Records nonces tried by a worker.
+   *
+   * @param count the number of tried nonces
+   */
+  void addNoncesTried(long count) {
+    noncesTried.add(count);
+  }
+
+  /** Records a restart of a worker. */
+  void addRestart() {
+    restarts.increment();
+  }
+
+  /**
+   * Records a worker exhausting its part of the nonce space. Fails this MiningJob once all workers
+   * are exhausted.
+   */
+  void workerExhausted() {
+    if (activeWorkers.decrementAndGet() == 0) {
+      completeExceptionally(new IllegalStateException("The nonce space of the Block is exhausted"));
+    }
+  }
+}
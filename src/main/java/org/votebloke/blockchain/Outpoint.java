@@ -0,0 +1,64 @@
+package org.votebloke.blockchain;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A reference to a single TransactionOutput: the id of the Transaction object, which created the
+ * output, and the index of the output among the outputs created by that Transaction.
+ */
+public final class Outpoint implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** The id of the Transaction object, which created the referenced output. */
+  private final Hash256 transactionId;
+
+  /** The index of the referenced output. */
+  private final int index;
+
+  /**
+   * A constructor for Outpoint.
+   *
+   * @param transactionId the id of the Transaction, which created the output; null for outputs
+   *     which were not created by a Transaction
+   * @param index the index of the output
+   * @throws IllegalArgumentException if index is negative
+   */
+  public Outpoint(Hash256 transactionId, int index) throws IllegalArgumentException {
+    if (index < 0) {
+      throw new IllegalArgumentException("index must not be negative");
+    }
+    this.transactionId = transactionId;
+    this.index = index;
+  }
+
+  public Hash256 getTransactionId() {
+    return transactionId;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Outpoint)) {
+      return false;
+    }
+    Outpoint other = (Outpoint) o;
+    return index == other.index && Objects.equals(transactionId, other.transactionId);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Objects.hashCode(transactionId) + index;
+  }
+
+  @Override
+  public String toString() {
+    return transactionId + ":" + index;
+  }
+}
@@ -0,0 +1,365 @@
+package org.votebloke.blockchain;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import org.springframework.lang.NonNull;
+
+/**
+ * An immutable hash map, which shares structure between its versions.
+ *
+ * <p>The map is a hash array mapped trie: every level consumes 5 bits of the hash of a key and
+ * stores its children in an array compressed by a bitmap. Adding or removing a key copies only the
+ * path from the root to the key - O(log n) nodes - and leaves the previous version of the map
+ * intact. Keys must not be null.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+final class PersistentHashMap<K, V> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+  /** The root of the trie; null if this map is empty. */
+  private final Node<K, V> root;
+
+  /** The number of keys in this map. */
+  private final int size;
+
+  private PersistentHashMap(Node<K, V> root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty map.
+   *
+   * @return a map without keys
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Returns the value of a key.
+   *
+   * @param key the key
+   * @return the value of the key; null if this map does not contain it
+   */
+  V get(@NonNull Object key) {
+    if (root == null) {
+      return null;
+    }
+    Leaf<K, V> leaf = root.find(0, spread(key.hashCode()), key);
+    return leaf == null ? null : leaf.value;
+  }
+
+  /**
+   * Tests whether this map contains a key.
+   *
+   * @param key the key
+   * @return true if this map contains the key; false otherwise
+   */
+  boolean containsKey(@NonNull Object key) {
+    return root != null && root.find(0, spread(key.hashCode()), key) != null;
+  }
+
+  /**
+   * Returns a version of this map, which maps the key to the value.
+   *
+   * @param key the key
+   * @param value the value
+   * @return the new version of this map; this map if the key is already mapped to the value
+   */
+  PersistentHashMap<K, V> plus(@NonNull K key, V value) {
+    Leaf<K, V> leaf = new Leaf<>(spread(key.hashCode()), key, value);
+    boolean[] added = new boolean[1];
+    Node<K, V> newRoot =
+        (root == null ? new BitmapNode<K, V>(0, new Object[0]) : root).plus(0, leaf, added);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Returns a version of this map without the key.
+   *
+   * @param key the key
+   * @return the new version of this map; this map if it does not contain the key
+   */
+  PersistentHashMap<K, V> minus(@NonNull Object key) {
+    if (root == null) {
+      return this;
+    }
+    Node<K, V> newRoot = root.minus(0, spread(key.hashCode()), key);
+    if (newRoot == root) {
+      return this;
+    }
+    return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Performs the action for every key and value in this map, in no particular order.
+   *
+   * @param action the action
+   */
+  void forEach(@NonNull BiConsumer<? super K, ? super V> action) {
+    if (root != null) {
+      root.forEach(action);
+    }
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int bitOf(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  /**
+   * Creates an array of leaves. Arrays of a generic type cannot be created directly.
+   *
+   * @param length the length of the array
+   * @return the empty array
+   */
+  @SuppressWarnings("unchecked")
+  private static <K, V> Leaf<K, V>[] newLeaves(int length) {
+    return (Leaf<K, V>[]) new Leaf<?, ?>[length];
+  }
+
+  /** A key and its value. */
+  private static final class Leaf<K, V> {
+    final int hash;
+    final K key;
+    final V value;
+
+    Leaf(int hash, K key, V value) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+    }
+
+    boolean matches(int hash, Object key) {
+      return this.hash == hash && this.key.equals(key);
+    }
+  }
+
+  /** A node of the trie. Nodes are never modified after they are published. */
+  private abstract static class Node<K, V> {
+    abstract Leaf<K, V> find(int shift, int hash, Object key);
+
+    abstract Node<K, V> plus(int shift, Leaf<K, V> leaf, boolean[] added);
+
+    /** Returns this node if the key is absent and null if the node becomes empty. */
+    abstract Node<K, V> minus(int shift, int hash, Object key);
+
+    abstract void forEach(BiConsumer<? super K, ? super V> action);
+  }
+
+  /** A node whose children - Leaf objects or Nodes - are indexed by 5 bits of their hashes. */
+  private static final class BitmapNode<K, V> extends Node<K, V> {
+    final int bitmap;
+    final Object[] children;
+
+    BitmapNode(int bitmap, Object[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    }
+
+    private int indexOf(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Leaf<K, V> find(int shift, int hash, Object key) {
+      int bit = bitOf(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      Object child = children[indexOf(bit)];
+      if (child instanceof Node) {
+        return ((Node<K, V>) child).find(shift + BITS, hash, key);
+      }
+      Leaf<K, V> leaf = (Leaf<K, V>) child;
+      return leaf.matches(hash, key) ? leaf : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Node<K, V> plus(int shift, Leaf<K, V> leaf, boolean[] added) {
+      int bit = bitOf(leaf.hash, shift);
+      int index = indexOf(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] newChildren = new Object[children.length + 1];
+        System.arraycopy(children, 0, newChildren, 0, index);
+        newChildren[index] = leaf;
+        System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+        added[0] = true;
+        return new BitmapNode<>(bitmap | bit, newChildren);
+      }
+
+      Object child = children[index];
+      Object newChild;
+      if (child instanceof Node) {
+        newChild = ((Node<K, V>) child).plus(shift + BITS, leaf, added);
+      } else {
+        Leaf<K, V> existing = (Leaf<K, V>) child;
+        if (existing.matches(leaf.hash, leaf.key)) {
+          newChild = existing.value == leaf.value ? existing : leaf;
+        } else {
+          newChild = merge(shift + BITS, existing, leaf);
+          added[0] = true;
+        }
+      }
+      if (newChild == child) {
+        return this;
+      }
+      Object[] newChildren = children.clone();
+      newChildren[index] = newChild;
+      return new BitmapNode<>(bitmap, newChildren);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Node<K, V> minus(int shift, int hash, Object key) {
+      int bit = bitOf(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = indexOf(bit);
+      Object child = children[index];
+      if (child instanceof Node) {
+        Node<K, V> newChild = ((Node<K, V>) child).minus(shift + BITS, hash, key);
+        if (newChild == child) {
+          return this;
+        }
+        if (newChild != null) {
+          Object[] newChildren = children.clone();
+          newChildren[index] = newChild;
+          return new BitmapNode<>(bitmap, newChildren);
+        }
+      } else if (!((Leaf<K, V>) child).matches(hash, key)) {
+        return this;
+      }
+
+      if (children.length == 1) {
+        return null;
+      }
+      Object[] newChildren = new Object[children.length - 1];
+      System.arraycopy(children, 0, newChildren, 0, index);
+      System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+      return new BitmapNode<>(bitmap & ~bit, newChildren);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+      for (Object child : children) {
+        if (child instanceof Node) {
+          ((Node<K, V>) child).forEach(action);
+        } else {
+          Leaf<K, V> leaf = (Leaf<K, V>) child;
+          action.accept(leaf.key, leaf.value);
+        }
+      }
+    }
+
+    private static <K, V> Node<K, V> merge(int shift, Leaf<K, V> first, Leaf<K, V> second) {
+      if (first.hash == second.hash) {
+        Leaf<K, V>[] leaves = newLeaves(2);
+        leaves[0] = first;
+        leaves[1] = second;
+        return new CollisionNode<>(first.hash, leaves);
+      }
+      boolean[] ignored = new boolean[1];
+      return new BitmapNode<K, V>(0, new Object[0])
+          .plus(shift, first, ignored)
+          .plus(shift, second, ignored);
+    }
+  }
+
+  /** A node holding the leaves of distinct keys with equal hashes. */
+  private static final class CollisionNode<K, V> extends Node<K, V> {
+    final int hash;
+    final Leaf<K, V>[] leaves;
+
+    CollisionNode(int hash, Leaf<K, V>[] leaves) {
+      this.hash = hash;
+      this.leaves = leaves;
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < leaves.length; i++) {
+        if (leaves[i].key.equals(key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Leaf<K, V> find(int shift, int hash, Object key) {
+      if (this.hash != hash) {
+        return null;
+      }
+      int index = indexOf(key);
+      return index < 0 ? null : leaves[index];
+    }
+
+    @Override
+    Node<K, V> plus(int shift, Leaf<K, V> leaf, boolean[] added) {
+      if (leaf.hash != hash) {
+        return new BitmapNode<K, V>(bitOf(hash, shift), new Object[] {this})
+            .plus(shift, leaf, added);
+      }
+      int index = indexOf(leaf.key);
+      if (index >= 0) {
+        if (leaves[index].value == leaf.value) {
+          return this;
+        }
+        Leaf<K, V>[] newLeaves = leaves.clone();
+        newLeaves[index] = leaf;
+        return new CollisionNode<>(hash, newLeaves);
+      }
+      Leaf<K, V>[] newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+      newLeaves[leaves.length] = leaf;
+      added[0] = true;
+      return new CollisionNode<>(hash, newLeaves);
+    }
+
+    @Override
+    Node<K, V> minus(int shift, int hash, Object key) {
+      int index = this.hash == hash ? indexOf(key) : -1;
+      if (index < 0) {
+        return this;
+      }
+      if (leaves.length == 1) {
+        return null;
+      }
+      Leaf<K, V>[] newLeaves = newLeaves(leaves.length - 1);
+      System.arraycopy(leaves, 0, newLeaves, 0, index);
+      System.arraycopy(leaves, index + 1, newLeaves, index, leaves.length - index - 1);
+      return new CollisionNode<>(hash, newLeaves);
+    }
+
+    @Override
+    void forEach(BiConsumer<? super K, ? super V> action) {
+      for (Leaf<K, V> leaf : leaves) {
+        action.accept(leaf.key, leaf.value);
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.votebloke.blockchain;
+
+import java.security.PublicKey;
+import java.util.Collection;
+import java.util.Set;
+import org.springframework.lang.NonNull;
+
+/**
+ * Seals Blocks with a signature of an authority.
+ *
+ * <p>Instead of mining, the hash of the Block is calculated once with the nonce 0 and signed with
+ * the private ECDSA key of an authorized Account. The hash commits to the header and the
+ * Transactions of the Block. A seal is valid if it was signed by one of the authorities and the
+ * signature matches the hash of the Block. Blocks sealed by authority must have the mining
+ * difficulty 0.
+ */
+public class ProofOfAuthoritySealer implements BlockSealer {
+  /** The public ECDSA keys of Accounts allowed to seal Blocks. */
+  private final Set<PublicKey> authorities;
+
+  /** The Account sealing Blocks; null if this ProofOfAuthoritySealer only verifies seals. */
+  private final Account authority;
+
+  /**
+   * A constructor for ProofOfAuthoritySealer.
+   *
+   * @param authority the Account sealing Blocks, it must hold a private key; if null, this
+   *     ProofOfAuthoritySealer only verifies seals
+   * @param authorities the public ECDSA keys of Accounts allowed to seal Blocks
+   */
+  public ProofOfAuthoritySealer(Account authority, @NonNull Collection<PublicKey> authorities) {
+    this.authority = authority;
+    this.authorities = Set.copyOf(authorities);
+  }
+
+  /**
+   * A constructor for ProofOfAuthoritySealer, which only verifies seals.
+   *
+   * @param authorities the public ECDSA keys of Accounts allowed to seal Blocks
+   */
+  public ProofOfAuthoritySealer(@NonNull Collection<PublicKey> authorities) {
+    this(null, authorities);
+  }
+
+  /**
+   * Seals the Block with the signature of the authority of this ProofOfAuthoritySealer.
+   *
+   * @param block the Block to seal
+   * @throws IllegalStateException if this ProofOfAuthoritySealer has no authority able to sign or
+   *     the authority is not one of the authorities
+   * @throws IllegalArgumentException if the mining difficulty of the Block is not 0
+   */
+  @Override
+  public void seal(@NonNull Block block) throws IllegalStateException, IllegalArgumentException {
+    if (authority == null || authority.getPrivateKey() == null) {
+      throw new IllegalStateException("Sealing a Block requires an authority with a private key");
+    }
+    if (!authorities.contains(authority.getPublicKey())) {
+      throw new IllegalStateException("The Account is not one of the authorities");
+    }
+    if (block.getMiningDifficulty() != 0) {
+      throw new IllegalArgumentException("Blocks sealed by authority must have difficulty 0");
+    }
+
+    Hash256 hash = block.calculateHash();
+    block.setSeal(
+        hash,
+        authority.getPublicKey(),
+        StringUtils.signWithEcdsa(authority.getPrivateKey(), hash.toByteArray()));
+  }
+
+  @Override
+  public boolean verifySeal(@NonNull Block block) {
+    return verifySeal(block.getHashDigest(), block.getSealSigner(), block.getSealSignature());
+  }
+
+  @Override
+  public boolean verifySeal(@NonNull BlockHeader header) {
+    return verifySeal(header.getHash(), header.getSealSigner(), header.getSealSignature());
+  }
+
+  private boolean verifySeal(Hash256 hash, PublicKey signer, byte[] signature) {
+    if (hash == null || signer == null || signature == null || !authorities.contains(signer)) {
+      return false;
+    }
+    try {
+      return StringUtils.verifyEcdsa(signer, hash.toByteArray(), signature);
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+}
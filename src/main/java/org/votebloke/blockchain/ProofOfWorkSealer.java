@@ -0,0 +1,69 @@
+package org.votebloke.blockchain;
+
+import java.util.concurrent.ExecutorService;
+import org.springframework.lang.NonNull;
+
+/**
+ * Seals Blocks by mining their hash. The hash of a sealed Block must have at least as many leading
+ * zero bits as the mining difficulty of the Block.
+ */
+public class ProofOfWorkSealer implements BlockSealer {
+  /** The executor running the mining workers; if null, a dedicated pool is used. */
+  private final ExecutorService executor;
+
+  /** The number of mining workers. */
+  private final int parallelism;
+
+  /**
+   * A constructor for ProofOfWorkSealer.
+   *
+   * @param executor the executor running the mining workers; if null, a dedicated pool is used
+   * @param parallelism the number of mining workers
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public ProofOfWorkSealer(ExecutorService executor, int parallelism)
+      throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be greater than 0");
+    }
+    this.executor = executor;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * A constructor for ProofOfWorkSealer.
+   *
+   * @param parallelism the number of mining workers
+   * @throws IllegalArgumentException if parallelism is smaller than 1
+   */
+  public ProofOfWorkSealer(int parallelism) throws IllegalArgumentException {
+    this(null, parallelism);
+  }
+
+  /** A constructor for ProofOfWorkSealer. Mines on the calling thread. */
+  public ProofOfWorkSealer() {
+    this(null, 1);
+  }
+
+  @Override
+  public void seal(@NonNull Block block) {
+    if (executor != null) {
+      block.mineHash(executor, parallelism);
+    } else if (parallelism > 1) {
+      block.mineHash(parallelism);
+    } else {
+      block.mineHash();
+    }
+  }
+
+  @Override
+  public boolean verifySeal(@NonNull Block block) {
+    return block.hashMeetsDifficulty();
+  }
+
+  @Override
+  public boolean verifySeal(@NonNull BlockHeader header) {
+    return header.getHash() != null
+        && header.getHash().leadingZeroBits() >= header.getMiningDifficulty();
+  }
+}
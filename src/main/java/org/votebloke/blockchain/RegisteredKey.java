@@ -0,0 +1,90 @@
+package org.votebloke.blockchain;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A public ECDSA key interned by a KeyRegistry.
+ *
+ * <p>Holds the canonical PublicKey instance together with its cached X.509 encoding, its base64
+ * representation and a compact numeric id. Two RegisteredKey objects of the same KeyRegistry are
+ * equal only if they are the same object.
+ */
+public final class RegisteredKey {
+  /** The compact numeric id of this key, unique within its KeyRegistry. */
+  private final int id;
+
+  /** The canonical instance of this key. */
+  private final PublicKey key;
+
+  /** The X.509 encoding of this key. */
+  private final byte[] encoded;
+
+  /** The base64 representation of the X.509 encoding of this key. */
+  private final String base64;
+
+  /**
+   * A constructor for RegisteredKey.
+   *
+   * @param id the compact numeric id of the key
+   * @param key the canonical instance of the key
+   */
+  RegisteredKey(int id, PublicKey key) {
+    this.id = id;
+    this.key = key;
+    this.encoded = key.getEncoded();
+    this.base64 = Base64.getEncoder().encodeToString(encoded);
+  }
+
+  /**
+   * Returns the compact numeric id of this key.
+   *
+   * @return the id of this key, unique within its KeyRegistry
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Returns the canonical instance of this key.
+   *
+   * @return the public ECDSA key
+   */
+  public PublicKey getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the X.509 encoding of this key.
+   *
+   * @return a copy of the encoding of this key
+   */
+  public byte[] getEncoded() {
+    return Arrays.copyOf(encoded, encoded.length);
+  }
+
+  /**
+   * Returns the base64 representation of this key, as returned by StringUtils.keyToString.
+   *
+   * @return the base64 encoded key
+   */
+  public String getBase64() {
+    return base64;
+  }
+
+  /**
+   * Returns the X.509 encoding of this key without copying it. The returned array must not be
+   * modified.
+   *
+   * @return the encoding of this key
+   */
+  byte[] encodedBytes() {
+    return encoded;
+  }
+
+  @Override
+  public String toString() {
+    return "RegisteredKey " + id + ": " + base64;
+  }
+}
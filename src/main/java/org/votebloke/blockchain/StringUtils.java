@@ -15,6 +15,52 @@ import java.util.concurrent.ThreadLocalRandom;
 
 /** A set of utility functions for the votebloke.blockchain library. */
 public class StringUtils {
+  /** The SHA-256 digest of the current thread. */
+  private static final ThreadLocal<MessageDigest> SHA256 =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+              throw new RuntimeException(e);
+            }
+          });
+
+  /** The SHA256withECDSA signature engine of the current thread. */
+  private static final ThreadLocal<Signature> ECDSA =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return Signature.getInstance("SHA256withECDSA");
+            } catch (NoSuchAlgorithmException e) {
+              throw new RuntimeException(e);
+            }
+          });
+
+  /**
+   * Returns the SHA-256 digest of the current thread, reset to its initial state.
+   *
+   * <p>The digest must be used to completion before another method of StringUtils is called on the
+   * same thread.
+   *
+   * @return the SHA-256 digest of the current thread
+   */
+  static MessageDigest sha256() {
+    MessageDigest md = SHA256.get();
+    md.reset();
+    return md;
+  }
+
+  /**
+   * Returns the SHA256withECDSA signature engine of the current thread. The engine must be
+   * initialized before use.
+   *
+   * @return the signature engine of the current thread
+   */
+  static Signature ecdsa() {
+    return ECDSA.get();
+  }
+
   /**
    * Converts a string to a hex representation of its hashed bytes. First converts the text to bytes
    * then to hex.
@@ -24,30 +70,65 @@ public class StringUtils {
    */
   public static String hashString(String text) {
     try {
-      final MessageDigest md = MessageDigest.getInstance("SHA-256");
-      byte[] hashedHeader = md.digest(text.getBytes(StandardCharsets.UTF_8));
-      StringBuilder hexHash = new StringBuilder();
-      for (byte b : hashedHeader) {
-        String hexDigits = Integer.toHexString(0xff & b);
-        if (hexDigits.length() == 1) {
-          hexHash.append("0");
-        }
-        hexHash.append(hexDigits);
-      }
-      return hexHash.toString();
+      final MessageDigest md = sha256();
+      return bytesToHex(md.digest(text.getBytes(StandardCharsets.UTF_8)));
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
   /**
-   * Encodes a key to base64.
+   * Converts bytes to their hex representation.
+   *
+   * @param bytes the bytes to convert
+   * @return the lowercase hex representation of the bytes, two digits per byte
+   */
+  public static String bytesToHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(2 * bytes.length);
+    for (byte b : bytes) {
+      String hexDigits = Integer.toHexString(0xff & b);
+      if (hexDigits.length() == 1) {
+        hex.append("0");
+      }
+      hex.append(hexDigits);
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Converts a hex representation back to bytes.
+   *
+   * @param hex the hex representation, two digits per byte
+   * @return the bytes represented by the hex string
+   * @throws IllegalArgumentException if the string is not a valid hex representation
+   */
+  public static byte[] hexToBytes(String hex) throws IllegalArgumentException {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("hex must have an even number of digits");
+    }
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = Character.digit(hex.charAt(2 * i), 16);
+      int low = Character.digit(hex.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        throw new IllegalArgumentException("hex contains a non-hex digit");
+      }
+      bytes[i] = (byte) ((high << 4) | low);
+    }
+    return bytes;
+  }
+
+  /**
+   * Encodes a key to base64. Public keys are interned by the default KeyRegistry, which caches
+   * their encodings.
    *
    * @param key the public key to encode
    * @return the 64 base string encoded key
    */
   public static String keyToString(Key key) {
-    if (key != null) {
+    if (key instanceof PublicKey) {
+      return KeyRegistry.getDefault().register((PublicKey) key).getBase64();
+    } else if (key != null) {
       return Base64.getEncoder().encodeToString(key.getEncoded());
     } else {
       return "";
@@ -55,7 +136,8 @@ public class StringUtils {
   }
 
   /**
-   * Converts a string encoded public key to a PublicKey object.
+   * Converts a string encoded public key to a PublicKey object. Returns the canonical instance of
+   * the key interned by the default KeyRegistry.
    *
    * @param string the provided base 64 encoded public key
    * @return the ECDSA public key
@@ -64,6 +146,19 @@ public class StringUtils {
    */
   public static PublicKey stringToPublicKey(String string)
       throws NoSuchAlgorithmException, InvalidKeySpecException {
+    return KeyRegistry.getDefault().register(string).getKey();
+  }
+
+  /**
+   * Decodes a string encoded public key without consulting the KeyRegistry.
+   *
+   * @param string the provided base 64 encoded public key
+   * @return the ECDSA public key
+   * @throws NoSuchAlgorithmException if there is no provider of the ECDSA algorithm
+   * @throws InvalidKeySpecException if the encoded public key does not match the ECDSA key factory
+   */
+  static PublicKey decodePublicKey(String string)
+      throws NoSuchAlgorithmException, InvalidKeySpecException {
     X509EncodedKeySpec publicKeySpec =
         new X509EncodedKeySpec(Base64.getDecoder().decode(string.getBytes(StandardCharsets.UTF_8)));
     KeyFactory keyFactory = KeyFactory.getInstance("EC");
@@ -74,16 +169,27 @@ public class StringUtils {
    * Encrypts data with a private ECDSA key.
    *
    * @param privateKey the ECDSA key used to encrypt data
-   * @param data the data to be encrypted
+   * @param data the data to be encrypted, signed as UTF-8 bytes
    * @return the encrypted data
    */
   public static byte[] signWithEcdsa(PrivateKey privateKey, String data) {
+    return signWithEcdsa(privateKey, data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Encrypts data with a private ECDSA key.
+   *
+   * @param privateKey the ECDSA key used to encrypt data
+   * @param data the bytes to be encrypted
+   * @return the encrypted data
+   */
+  public static byte[] signWithEcdsa(PrivateKey privateKey, byte[] data) {
     byte[] encryptedData;
 
     try {
-      Signature dsa = Signature.getInstance("SHA256withECDSA");
+      Signature dsa = ecdsa();
       dsa.initSign(privateKey);
-      dsa.update(data.getBytes());
+      dsa.update(data);
       encryptedData = dsa.sign();
     } catch (Exception e) {
       throw new RuntimeException(e);
@@ -96,15 +202,27 @@ public class StringUtils {
    * Verifies that a signature matches a public ECDSA key.
    *
    * @param key the provided public ECDSA key to verify
-   * @param data the data which was encrypted with a private key
+   * @param data the data which was encrypted with a private key, verified as UTF-8 bytes
    * @param signature the encrypted data
    * @return true if the public key matches the private key used to encrypt data; false otherwise
    */
   public static boolean verifyEcdsa(PublicKey key, String data, byte[] signature) {
+    return verifyEcdsa(key, data.getBytes(StandardCharsets.UTF_8), signature);
+  }
+
+  /**
+   * Verifies that a signature matches a public ECDSA key.
+   *
+   * @param key the provided public ECDSA key to verify
+   * @param data the bytes which were encrypted with a private key
+   * @param signature the encrypted data
+   * @return true if the public key matches the private key used to encrypt data; false otherwise
+   */
+  public static boolean verifyEcdsa(PublicKey key, byte[] data, byte[] signature) {
     try {
-      Signature ecdsaVerify = Signature.getInstance("SHA256withECDSA");
+      Signature ecdsaVerify = ecdsa();
       ecdsaVerify.initVerify(key);
-      ecdsaVerify.update(data.getBytes());
+      ecdsaVerify.update(data);
       return ecdsaVerify.verify(signature);
     } catch (Exception e) {
       throw new RuntimeException(e);
@@ -124,7 +242,7 @@ public class StringUtils {
 
     Signature signature;
     try {
-      signature = Signature.getInstance("SHA256withECDSA");
+      signature = ecdsa();
       signature.initSign(privateKey);
       signature.update(challenge);
       byte[] encryptedChallenge = signature.sign();
@@ -2,13 +2,16 @@ package org.votebloke.blockchain;
 
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 
 /** A representation of a tally of votes in particular elections. */
 public class Tally extends Entry {
+  private static final long serialVersionUID = 1L;
+
   /** The unique identifier of this Tally. */
-  private String id;
+  private Hash256 id;
 
   /** The elections that are tallied in this Tally. */
   private Elections elections;
@@ -23,7 +26,7 @@ public class Tally extends Entry {
    * The object tallying the votes. This object performs the actual tallying of the votes in this
    * Tally.
    */
-  private VotesTeller votesTeller;
+  private transient VotesTeller votesTeller;
 
   /** The metadata of this Tally. */
   private HashMap<String, String[]> metadata;
@@ -68,6 +71,31 @@ public class Tally extends Entry {
     this(teller, null, null);
   }
 
+  /**
+   * A constructor for Tally, which restores a stored Tally, see BlockCodec.
+   *
+   * @param teller the public ECDSA key of Account that tallies the votes in the elections
+   * @param elections the Elections object representing the elections that get tallied in this Tally
+   * @param votes the list of Vote objects to tally
+   * @param metadata the tallied votes; null if this Tally was not processed
+   * @param timeStamp the time of creation of this Tally
+   * @param id the id of this Tally; null if it was not processed
+   */
+  Tally(
+      PublicKey teller,
+      Elections elections,
+      ArrayList<Vote> votes,
+      HashMap<String, String[]> metadata,
+      Date timeStamp,
+      Hash256 id) {
+    super(timeStamp);
+    this.teller = teller;
+    this.elections = elections;
+    this.votes = votes;
+    this.metadata = metadata;
+    this.id = id;
+  }
+
   /**
    * Processes this Tally. Performs basic validation checks and sets up the id of this Tally.
    *
@@ -123,7 +151,7 @@ public class Tally extends Entry {
     }
 
     for (Vote vote : votes) {
-      if (!vote.getElectionsId().equals(elections.getId())) {
+      if (!vote.getElectionsIdDigest().equals(elections.getIdDigest())) {
         throw new RuntimeException(
             "Vote: "
                 + vote.getId()
@@ -156,13 +184,20 @@ public class Tally extends Entry {
    */
   @Override
   public final boolean validateEntry() {
-    return getId()
-        .equals(
-            StringUtils.hashString(
-                StringUtils.keyToString(teller)
-                    + elections.getId()
-                    + votes.toString()
-                    + getTimeStamp()));
+    return getIdDigest().equals(calculateId());
+  }
+
+  @Override
+  public void encode(CanonicalEncoder encoder) {
+    encoder
+        .writeByte(CanonicalEncoder.TALLY_TAG)
+        .writeKey(teller)
+        .writeHash(elections.getIdDigest())
+        .writeInt(votes.size());
+    for (Vote vote : votes) {
+      encoder.writeHash(vote.getIdDigest());
+    }
+    encoder.writeDate(getTimeStamp());
   }
 
   /**
@@ -214,12 +249,39 @@ public class Tally extends Entry {
   }
 
   /**
-   * The unique identifier of this Tally is a 64-digit hash of its contents.
+   * Returns the public ECDSA key of the teller.
+   *
+   * @return the public key of Account that tallies the votes
+   */
+  final PublicKey getTeller() {
+    return teller;
+  }
+
+  /**
+   * Returns the Elections tallied in this Tally.
+   *
+   * @return the Elections; null if they were not set
+   */
+  final Elections getElections() {
+    return elections;
+  }
+
+  /**
+   * Returns the Votes tallied in this Tally.
+   *
+   * @return the Vote objects; null if they were not set
+   */
+  final ArrayList<Vote> getVotes() {
+    return votes;
+  }
+
+  /**
+   * The unique identifier of this Tally is a hash of its contents.
    *
    * @return the unique identifier of this Tally
    */
   @Override
-  public final String getId() {
+  public final Hash256 getIdDigest() {
     return id;
   }
 
@@ -240,11 +302,6 @@ public class Tally extends Entry {
 
   /** Recalculates the unique identifier of this Tally. */
   private void updateId() {
-    this.id =
-        StringUtils.hashString(
-            StringUtils.keyToString(teller)
-                + elections.getId()
-                + votes.toString()
-                + getTimeStamp());
+    this.id = calculateId();
   }
 }
@@ -0,0 +1,23 @@
+package org.votebloke.blockchain;
+
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * Receives the changes of the newest Block of a Chain.
+ *
+ * <p>Appending a Block connects it; rewinding disconnects Blocks; a reorganisation to a competing
+ * branch disconnects the Blocks above the fork and connects the Blocks of the branch. The
+ * unconsumed outputs of the Chain already reflect the change when the listener is called, so the
+ * listener may, for example, return the Transactions of disconnected Blocks to a pending pool.
+ */
+@FunctionalInterface
+public interface TipChangeListener {
+  /**
+   * Called after the newest Block of a Chain changed.
+   *
+   * @param disconnected the Blocks removed from the Chain, newest first
+   * @param connected the Blocks added to the Chain, oldest first
+   */
+  void tipChanged(@NonNull List<Block> disconnected, @NonNull List<Block> connected);
+}
@@ -1,5 +1,8 @@
 package org.votebloke.blockchain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
@@ -12,7 +15,9 @@ import org.springframework.lang.NonNull;
  * A representation of a single transaction in the blockchain - starting elections, casting a vote,
  * tallying elections.
  */
-public class Transaction {
+public class Transaction implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   /** The Transactions used by this Transaction to process its Entry. */
   public List<TransactionInput> inputs;
 
@@ -22,11 +27,14 @@ public class Transaction {
   /** The public ECDSA key of the agent signing this Transaction. */
   public PublicKey signee;
 
+  /** The interned signee, which keeps its id in the default KeyRegistry stable. */
+  private transient RegisteredKey signeeKey;
+
   /**
-   * The 64-digit hex unique identifier of this Transaction. Calculated from this Transaction's:
-   * signee, data and timeStamp.
+   * The unique identifier of this Transaction. Calculated from this Transaction's: signee, data and
+   * timeStamp.
    */
-  private String id;
+  private Hash256 id;
 
   private byte[] signature;
 
@@ -45,13 +53,49 @@ public class Transaction {
    */
   public Transaction(
       @NonNull PublicKey signee, @NonNull Entry data, List<TransactionInput> inputs) {
-    this.signee = signee;
+    this.signeeKey = KeyRegistry.getDefault().register(signee);
+    this.signee = signeeKey.getKey();
     this.data = data;
     this.inputs = inputs;
     timeStamp = new Date(System.currentTimeMillis());
     processTransaction();
   }
 
+  /**
+   * A constructor for Transaction, which restores a stored Transaction, see BlockCodec.
+   *
+   * @param signee the public ECDSA key of the agent signing this Transaction
+   * @param data the data inside this Transaction
+   * @param inputs the list of Transaction consisting the input for this Transaction
+   * @param outputs the outputs from this Transaction; null if it was not processed
+   * @param timeStamp the time stamp of creation of this Transaction
+   * @param id the id of this Transaction; null if it was not processed
+   * @param signature the signature of this Transaction; null if it is not signed
+   */
+  Transaction(
+      @NonNull PublicKey signee,
+      @NonNull Entry data,
+      List<TransactionInput> inputs,
+      List<TransactionOutput> outputs,
+      @NonNull Date timeStamp,
+      Hash256 id,
+      byte[] signature) {
+    this.signeeKey = KeyRegistry.getDefault().register(signee);
+    this.signee = signeeKey.getKey();
+    this.data = data;
+    this.inputs = inputs;
+    this.outputs = outputs;
+    this.timeStamp = timeStamp;
+    this.id = id;
+    this.signature = signature;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    signeeKey = KeyRegistry.getDefault().register(signee);
+    signee = signeeKey.getKey();
+  }
+
   /**
    * Processes this Transaction. Sets up the Entry object of this Transaction and calculates the
    * hash of this Transaction. Creates the TransactionOutput object associated with this
@@ -72,7 +116,7 @@ public class Transaction {
       return unchangedOutputs;
     }
     calculateHash();
-    outputs.add(new TransactionOutput(signee, data, getId()));
+    outputs.add(new TransactionOutput(signee, data, getIdDigest()));
 
     this.outputs = outputs;
     return outputs;
@@ -81,20 +125,45 @@ public class Transaction {
   /**
    * Calculates and internally assigns it to the id of this Transaction.
    *
-   * <p>The hashed objects include: the public key of the author of this Transaction, the time stamp
-   * of creation of this Transaction, the string representation of the data in this Transaction.
+   * <p>The id is the hash of the canonical encoding of this Transaction.
    */
   private void calculateHash() {
-    id =
-        StringUtils.hashString(
-            StringUtils.keyToString(signee) + data.toString() + timeStamp.toString());
+    id = hashEncoding();
+  }
+
+  /**
+   * Writes the canonical encoding of this Transaction.
+   *
+   * <p>The encoding includes: the public key of the signee, the time stamp of creation of this
+   * Transaction, the type and the id of the data in this Transaction. The id of the data commits to
+   * its contents.
+   *
+   * @param encoder the encoder to write to
+   */
+  public void encode(CanonicalEncoder encoder) {
+    encoder
+        .writeByte(CanonicalEncoder.TRANSACTION_TAG)
+        .writeKey(signee)
+        .writeDate(timeStamp)
+        .writeString(data.getEntryType())
+        .writeHash(data.getIdDigest());
+  }
+
+  /**
+   * Hashes the canonical encoding of this Transaction.
+   *
+   * @return the hash of the canonical encoding of this Transaction
+   */
+  private Hash256 hashEncoding() {
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    encode(encoder);
+    return encoder.digest();
   }
 
   /**
    * Signs the data with an ECDSA private key.
    *
-   * <p>Signed data includes: the public key of the signee, the time stamp and the string
-   * representation of the data in this Transaction.
+   * <p>Signed data is the hash of the canonical encoding of this Transaction, see getSignData.
    *
    * @param privateKey the private ECDSA key used to encrypt the data
    */
@@ -107,21 +176,27 @@ public class Transaction {
    * Returns the string, which is encrypted with a private key to create a signature for this
    * Transaction.
    *
+   * <p>This is the 64-digit hex hash of the canonical encoding of this Transaction, recalculated
+   * from its current contents. It consists of ASCII characters only, so it is signed identically
+   * regardless of the charset of the signing agent.
+   *
    * @return the character string characterizing this Transaction
    */
   public String getSignData() {
-    return StringUtils.keyToString(signee) + timeStamp.toString() + this.data.toString();
+    return hashEncoding().toString();
   }
 
   /**
    * Verifies if this Transaction's signee matches the signature.
    *
-   * <p>The public ECDSA key is verified against the encrypted data.
+   * <p>The public ECDSA key is verified against the encrypted data. Signatures, which were already
+   * verified for the same sign data and signee, are answered from the default
+   * VerifiedSignatureCache.
    *
    * @return true if the signature matches the signee; false otherwise
    */
   public boolean verifySignature() {
-    return StringUtils.verifyEcdsa(signee, getSignData(), getSignature());
+    return VerifiedSignatureCache.getDefault().verify(signee, getSignData(), getSignature());
   }
 
   /**
@@ -143,10 +218,7 @@ public class Transaction {
       return false;
     }
 
-    String currentHash = this.id;
-    calculateHash();
-    if (!Objects.equals(currentHash, this.id)) {
-      this.id = currentHash;
+    if (!Objects.equals(this.id, hashEncoding())) {
       return false;
     }
 
@@ -167,6 +239,15 @@ public class Transaction {
    * @return the 64-digit hex unique identifier of this Transaction
    */
   public String getId() {
+    return id == null ? null : id.toString();
+  }
+
+  /**
+   * Getter of this Transaction's id.
+   *
+   * @return the unique identifier of this Transaction
+   */
+  public Hash256 getIdDigest() {
     return id;
   }
 
@@ -174,6 +255,15 @@ public class Transaction {
     return this.timeStamp.toString();
   }
 
+  /**
+   * Returns the time stamp of creation of this Transaction.
+   *
+   * @return the time stamp of creation of this Transaction
+   */
+  Date getTimeStampDate() {
+    return timeStamp;
+  }
+
   /**
    * Returns the entry type of the Entry object in this Transaction.
    *
@@ -191,6 +281,15 @@ public class Transaction {
     return StringUtils.keyToString(this.signee);
   }
 
+  /**
+   * Returns the id of the signee of this Transaction in the default KeyRegistry.
+   *
+   * @return the id of the public ECDSA key of the agent signing this Transaction
+   */
+  public int getSignerKeyId() {
+    return KeyRegistry.getDefault().register(this.signee).getId();
+  }
+
   /** This Transaction encrypted with the private key of the agent signing this Transaction. */
   public byte[] getSignature() {
     return signature;
@@ -218,4 +317,9 @@ public class Transaction {
       return false;
     }
   }
+
+  /** Removes the signature of this Transaction, for example when a signed Transaction is undone. */
+  void clearSignature() {
+    this.signature = null;
+  }
 }
@@ -1,7 +1,11 @@
 package org.votebloke.blockchain;
 
+import java.io.Serializable;
+
 /** A representation of the inputs for Transaction. */
-public class TransactionInput {
+public class TransactionInput implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   /** The TransactionOutput object behind this TransactionInput. */
   TransactionOutput transactionOut;
 
@@ -0,0 +1,51 @@
+package org.votebloke.blockchain;
+
+/** The position of a Transaction in a Chain: the height of its Block and its index in the Block. */
+public final class TransactionLocation {
+  /** The position of the Block in the Chain. */
+  private final int height;
+
+  /** The position of the Transaction in the Block. */
+  private final int position;
+
+  /**
+   * A constructor for TransactionLocation.
+   *
+   * @param height the position of the Block in the Chain
+   * @param position the position of the Transaction in the Block
+   */
+  public TransactionLocation(int height, int position) {
+    this.height = height;
+    this.position = position;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TransactionLocation)) {
+      return false;
+    }
+    TransactionLocation other = (TransactionLocation) o;
+    return height == other.height && position == other.position;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * height + position;
+  }
+
+  @Override
+  public String toString() {
+    return height + ":" + position;
+  }
+}
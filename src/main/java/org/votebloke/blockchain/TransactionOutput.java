@@ -1,43 +1,130 @@
 package org.votebloke.blockchain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.security.PublicKey;
+import java.util.Objects;
+
+/**
+ * A representation of the outputs of a Transaction object.
+ *
+ * <p>TransactionOutputs are equal if they have equal Outpoints - the id of the Transaction, which
+ * created them, and their index.
+ */
+public class TransactionOutput implements Serializable {
+  private static final long serialVersionUID = 1L;
 
-/** A representation of the outputs of a Transaction object. */
-public class TransactionOutput {
   /** The public key this TransactionOutput was addressed from. */
   PublicKey author;
+  /** The interned public key this TransactionOutput was addressed from. */
+  transient RegisteredKey authorKey;
   /** Data associated with this TransactionOutput. */
   Entry data;
   /** The id of the Transaction object, which created this TransactionOutput. */
-  String parentTransactionId;
+  Hash256 parentTransactionId;
+  /** The index of this TransactionOutput among the outputs created by its Transaction. */
+  final int index;
 
-  TransactionOutput(PublicKey author, Entry data, String parentTransactionId) {
-    this.author = author;
+  TransactionOutput(PublicKey author, Entry data, Hash256 parentTransactionId, int index) {
+    if (index < 0) {
+      throw new IllegalArgumentException("index must not be negative");
+    }
+    this.authorKey = KeyRegistry.getDefault().register(author);
+    this.author = authorKey == null ? null : authorKey.getKey();
     this.data = data;
     this.parentTransactionId = parentTransactionId;
+    this.index = index;
+  }
+
+  TransactionOutput(PublicKey author, Entry data, Hash256 parentTransactionId) {
+    this(author, data, parentTransactionId, 0);
+  }
+
+  TransactionOutput(PublicKey author, Entry data, String parentTransactionId) {
+    this(author, data, Hash256.fromString(parentTransactionId));
   }
 
   TransactionOutput(PublicKey author, Entry data) {
-    this(author, data, null);
+    this(author, data, (Hash256) null);
   }
 
   public TransactionOutput(Transaction transaction) {
-    this(transaction.signee, transaction.data, transaction.getId());
+    this(transaction.signee, transaction.data, transaction.getIdDigest());
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    authorKey = KeyRegistry.getDefault().register(author);
+    author = authorKey == null ? null : authorKey.getKey();
   }
 
+  /**
+   * Tests whether this TransactionOutput was addressed from the key. Keys are compared by their
+   * ids in the default KeyRegistry.
+   *
+   * @param key the public ECDSA key
+   * @return true if the key is the author of this TransactionOutput; false otherwise
+   */
   boolean isAddressedFrom(PublicKey key) {
-    return key == author;
+    if (key == null || authorKey == null) {
+      return key == null && authorKey == null;
+    }
+    return KeyRegistry.getDefault().register(key).getId() == authorKey.getId();
+  }
+
+  /**
+   * Returns the id of the author of this TransactionOutput in the default KeyRegistry.
+   *
+   * @return the id of the author; -1 if this TransactionOutput has no author
+   */
+  public int getAuthorKeyId() {
+    return authorKey == null ? -1 : authorKey.getId();
   }
 
   public void setParentTransactionId(String parentTransactionId) {
-    this.parentTransactionId = parentTransactionId;
+    this.parentTransactionId = Hash256.fromString(parentTransactionId);
   }
 
   public String getParentTransactionId() {
+    return parentTransactionId == null ? null : parentTransactionId.toString();
+  }
+
+  public Hash256 getParentTransactionIdDigest() {
     return this.parentTransactionId;
   }
 
   public Entry getData() {
     return this.data;
   }
+
+  public int getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Returns the reference to this TransactionOutput.
+   *
+   * @return the id of the parent Transaction and the index of this TransactionOutput
+   */
+  public Outpoint getOutpoint() {
+    return new Outpoint(parentTransactionId, index);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TransactionOutput)) {
+      return false;
+    }
+    TransactionOutput other = (TransactionOutput) o;
+    return index == other.index && Objects.equals(parentTransactionId, other.parentTransactionId);
+  }
+
+  @Override
+  public int hashCode() {
+    return getOutpoint().hashCode();
+  }
 }
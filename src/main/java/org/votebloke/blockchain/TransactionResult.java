@@ -0,0 +1,31 @@
+package org.votebloke.blockchain;
+
+/** The outcome of adding a single Transaction of a batch to a Block. */
+public enum TransactionResult {
+  /** The Transaction was recorded in the Block. */
+  ACCEPTED,
+
+  /** The Transaction is unsigned and was added to the Mempool to wait for its signature. */
+  PENDING,
+
+  /** The Transaction failed to validate, for example because its signature is not valid. */
+  INVALID,
+
+  /** The Transaction spends an output, which is neither unconsumed nor created in the batch. */
+  MISSING_INPUT,
+
+  /** The Transaction spends an output already spent by itself or an earlier Transaction. */
+  DOUBLE_SPEND,
+
+  /** The Transaction repeats an earlier Transaction of the batch or is already pending. */
+  DUPLICATE;
+
+  /**
+   * Tests whether the Transaction was taken: recorded in the Block or added to the Mempool.
+   *
+   * @return true if the Transaction was accepted or is pending; false if it was rejected
+   */
+  public boolean isAccepted() {
+    return this == ACCEPTED || this == PENDING;
+  }
+}
@@ -0,0 +1,363 @@
+package org.votebloke.blockchain;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * The set of unconsumed TransactionOutput objects, keyed by their Outpoint.
+ *
+ * <p>Outputs are stored in persistent hash maps, which share structure between versions. Membership
+ * tests take constant time; adding and spending an output copy O(log n) nodes. branch returns an
+ * independent copy of the set in constant time, so every Block can keep a snapshot of the state it
+ * was built on. Outputs are listed in the order they were added in.
+ *
+ * <p>The set maintains secondary indexes of its outputs by author, by the class of their Entry and,
+ * for Votes, by the id of the Elections they were cast in. Queries on those indexes take time
+ * proportional to the size of their result.
+ *
+ * <p>A UtxoSet is not thread-safe, but its branches may be used from different threads.
+ */
+public class UtxoSet implements UtxoStore, Iterable<TransactionOutput> {
+  /** The unconsumed outputs by their outpoints. */
+  private PersistentHashMap<Outpoint, Slot> outputs;
+
+  /** The outpoints of the outputs by the KeyRegistry id of their author. */
+  private PersistentHashMap<Integer, PersistentHashMap<Outpoint, Long>> byAuthor;
+
+  /** The outpoints of the outputs by the class of their Entry. */
+  private PersistentHashMap<Class<?>, PersistentHashMap<Outpoint, Long>> byEntryClass;
+
+  /** The outpoints of the outputs by the KeyRegistry id of their author and their Entry class. */
+  private PersistentHashMap<Integer, PersistentHashMap<Class<?>, PersistentHashMap<Outpoint, Long>>>
+      byAuthorAndClass;
+
+  /** The outpoints of the outputs with Votes by the id of the Elections they were cast in. */
+  private PersistentHashMap<Hash256, PersistentHashMap<Outpoint, Long>> votesByElections;
+
+  /** The sequence number of the next added output. */
+  private long nextSequence;
+
+  /** A constructor for an empty UtxoSet. */
+  public UtxoSet() {
+    outputs = PersistentHashMap.empty();
+    byAuthor = PersistentHashMap.empty();
+    byEntryClass = PersistentHashMap.empty();
+    byAuthorAndClass = PersistentHashMap.empty();
+    votesByElections = PersistentHashMap.empty();
+  }
+
+  /**
+   * A constructor for UtxoSet.
+   *
+   * @param outputs the initial unconsumed outputs
+   */
+  public UtxoSet(@NonNull Collection<TransactionOutput> outputs) {
+    this();
+    outputs.forEach(this::add);
+  }
+
+  private UtxoSet(UtxoSet parent) {
+    outputs = parent.outputs;
+    byAuthor = parent.byAuthor;
+    byEntryClass = parent.byEntryClass;
+    byAuthorAndClass = parent.byAuthorAndClass;
+    votesByElections = parent.votesByElections;
+    nextSequence = parent.nextSequence;
+  }
+
+  /**
+   * Returns an independent copy of this UtxoSet in constant time. Later changes to either set are
+   * not visible in the other.
+   *
+   * @return the copy of this UtxoSet
+   */
+  public UtxoSet branch() {
+    return new UtxoSet(this);
+  }
+
+  /**
+   * Tests whether an output is unconsumed.
+   *
+   * @param outpoint the outpoint of the output
+   * @return true if the output is in this UtxoSet; false otherwise
+   */
+  @Override
+  public boolean contains(@NonNull Outpoint outpoint) {
+    return outputs.containsKey(outpoint);
+  }
+
+  /**
+   * Tests whether an output is unconsumed.
+   *
+   * @param output the output
+   * @return true if an output with the same outpoint is in this UtxoSet; false otherwise
+   */
+  public boolean contains(@NonNull TransactionOutput output) {
+    return contains(output.getOutpoint());
+  }
+
+  /**
+   * Returns an unconsumed output.
+   *
+   * @param outpoint the outpoint of the output
+   * @return the output; null if it is not in this UtxoSet
+   */
+  @Override
+  public TransactionOutput get(@NonNull Outpoint outpoint) {
+    Slot slot = outputs.get(outpoint);
+    return slot == null ? null : slot.output;
+  }
+
+  /**
+   * Adds an output to this UtxoSet. Replaces an output with the same outpoint.
+   *
+   * @param output the output
+   */
+  @Override
+  public void add(@NonNull TransactionOutput output) {
+    Outpoint outpoint = output.getOutpoint();
+    Slot replaced = outputs.get(outpoint);
+    long sequence;
+    if (replaced != null) {
+      unindex(outpoint, replaced.output);
+      sequence = replaced.sequence;
+    } else {
+      sequence = nextSequence++;
+    }
+    outputs = outputs.plus(outpoint, new Slot(sequence, output));
+    index(outpoint, output, sequence);
+  }
+
+  /**
+   * Removes an output from this UtxoSet.
+   *
+   * @param outpoint the outpoint of the output
+   * @return the removed output; null if it was not in this UtxoSet
+   */
+  @Override
+  public TransactionOutput spend(@NonNull Outpoint outpoint) {
+    Slot spent = outputs.get(outpoint);
+    if (spent == null) {
+      return null;
+    }
+    outputs = outputs.minus(outpoint);
+    unindex(outpoint, spent.output);
+    return spent.output;
+  }
+
+  /**
+   * Removes an output from this UtxoSet.
+   *
+   * @param output the output
+   * @return the removed output; null if it was not in this UtxoSet
+   */
+  public TransactionOutput spend(@NonNull TransactionOutput output) {
+    return spend(output.getOutpoint());
+  }
+
+  /**
+   * Returns the number of unconsumed outputs.
+   *
+   * @return the size of this UtxoSet
+   */
+  @Override
+  public int size() {
+    return outputs.size();
+  }
+
+  /**
+   * Returns the unconsumed outputs.
+   *
+   * @return an unmodifiable list of the outputs in this UtxoSet, in the order they were added in
+   */
+  @Override
+  public List<TransactionOutput> outputs() {
+    List<Slot> slots = new ArrayList<>(outputs.size());
+    outputs.forEach((outpoint, slot) -> slots.add(slot));
+    slots.sort(Comparator.comparingLong(slot -> slot.sequence));
+    List<TransactionOutput> sorted = new ArrayList<>(slots.size());
+    slots.forEach(slot -> sorted.add(slot.output));
+    return Collections.unmodifiableList(sorted);
+  }
+
+  @Override
+  public Iterator<TransactionOutput> iterator() {
+    return outputs().iterator();
+  }
+
+  /**
+   * Returns the outputs authored by the provided public key.
+   *
+   * @param author the public ECDSA key of the author; null for outputs without an author
+   * @return the outputs authored by the key, in the order they were added in
+   */
+  public List<TransactionOutput> authoredBy(PublicKey author) {
+    return resolve(List.of(orEmpty(byAuthor.get(authorKeyId(author)))));
+  }
+
+  /**
+   * Returns the outputs authored by the provided public key with an Entry of the selected class or
+   * its subclasses.
+   *
+   * @param author the public ECDSA key of the author; null for outputs without an author
+   * @param selectedClass the class of the Entry objects
+   * @return the matching outputs, in the order they were added in
+   */
+  public <T extends Entry> List<TransactionOutput> authoredBy(
+      PublicKey author, @NonNull Class<T> selectedClass) {
+    PersistentHashMap<Class<?>, PersistentHashMap<Outpoint, Long>> byClass =
+        byAuthorAndClass.get(authorKeyId(author));
+    return byClass == null ? new ArrayList<>() : resolve(byClass, selectedClass);
+  }
+
+  /**
+   * Returns the outputs with an Entry of the selected class or its subclasses.
+   *
+   * @param selectedClass the class of the Entry objects
+   * @return the matching outputs, in the order they were added in
+   */
+  public <T extends Entry> List<TransactionOutput> ofEntryClass(@NonNull Class<T> selectedClass) {
+    return resolve(byEntryClass, selectedClass);
+  }
+
+  /**
+   * Returns the outputs with Votes cast in the Elections.
+   *
+   * @param electionsId the id of the Elections
+   * @return the outputs with Votes cast in the Elections, in the order they were added in
+   */
+  public List<TransactionOutput> votesIn(@NonNull Hash256 electionsId) {
+    return resolve(List.of(orEmpty(votesByElections.get(electionsId))));
+  }
+
+  /**
+   * Adds an output to the secondary indexes.
+   *
+   * @param outpoint the outpoint of the output
+   * @param output the output
+   * @param sequence the sequence number of the output
+   */
+  private void index(Outpoint outpoint, TransactionOutput output, long sequence) {
+    int authorKeyId = output.getAuthorKeyId();
+    byAuthor = addTo(byAuthor, authorKeyId, outpoint, sequence);
+    if (output.data == null) {
+      return;
+    }
+    Class<?> entryClass = output.data.getClass();
+    byEntryClass = addTo(byEntryClass, entryClass, outpoint, sequence);
+    byAuthorAndClass =
+        byAuthorAndClass.plus(
+            authorKeyId,
+            addTo(orEmpty(byAuthorAndClass.get(authorKeyId)), entryClass, outpoint, sequence));
+    Hash256 electionsId = electionsIdOf(output);
+    if (electionsId != null) {
+      votesByElections = addTo(votesByElections, electionsId, outpoint, sequence);
+    }
+  }
+
+  /**
+   * Removes an output from the secondary indexes.
+   *
+   * @param outpoint the outpoint of the output
+   * @param output the output
+   */
+  private void unindex(Outpoint outpoint, TransactionOutput output) {
+    int authorKeyId = output.getAuthorKeyId();
+    byAuthor = removeFrom(byAuthor, authorKeyId, outpoint);
+    if (output.data == null) {
+      return;
+    }
+    Class<?> entryClass = output.data.getClass();
+    byEntryClass = removeFrom(byEntryClass, entryClass, outpoint);
+    PersistentHashMap<Class<?>, PersistentHashMap<Outpoint, Long>> byClass =
+        byAuthorAndClass.get(authorKeyId);
+    if (byClass != null) {
+      byClass = removeFrom(byClass, entryClass, outpoint);
+      byAuthorAndClass =
+          byClass.isEmpty()
+              ? byAuthorAndClass.minus(authorKeyId)
+              : byAuthorAndClass.plus(authorKeyId, byClass);
+    }
+    Hash256 electionsId = electionsIdOf(output);
+    if (electionsId != null) {
+      votesByElections = removeFrom(votesByElections, electionsId, outpoint);
+    }
+  }
+
+  private static <K> PersistentHashMap<K, PersistentHashMap<Outpoint, Long>> addTo(
+      PersistentHashMap<K, PersistentHashMap<Outpoint, Long>> index,
+      K key,
+      Outpoint outpoint,
+      long sequence) {
+    return index.plus(key, orEmpty(index.get(key)).plus(outpoint, sequence));
+  }
+
+  private static <K> PersistentHashMap<K, PersistentHashMap<Outpoint, Long>> removeFrom(
+      PersistentHashMap<K, PersistentHashMap<Outpoint, Long>> index, K key, Outpoint outpoint) {
+    PersistentHashMap<Outpoint, Long> outpoints = index.get(key);
+    if (outpoints == null) {
+      return index;
+    }
+    outpoints = outpoints.minus(outpoint);
+    return outpoints.isEmpty() ? index.minus(key) : index.plus(key, outpoints);
+  }
+
+  private static <K, V> PersistentHashMap<K, V> orEmpty(PersistentHashMap<K, V> map) {
+    return map == null ? PersistentHashMap.empty() : map;
+  }
+
+  /**
+   * Resolves outpoints to the outputs in this UtxoSet.
+   *
+   * @param outpointMaps the outpoints with their sequence numbers
+   * @return the outputs, in the order they were added in
+   */
+  private List<TransactionOutput> resolve(
+      Collection<PersistentHashMap<Outpoint, Long>> outpointMaps) {
+    List<Slot> slots = new ArrayList<>();
+    outpointMaps.forEach(
+        outpoints -> outpoints.forEach((outpoint, sequence) -> slots.add(outputs.get(outpoint))));
+    slots.sort(Comparator.comparingLong(slot -> slot.sequence));
+    List<TransactionOutput> resolved = new ArrayList<>(slots.size());
+    slots.forEach(slot -> resolved.add(slot.output));
+    return resolved;
+  }
+
+  private List<TransactionOutput> resolve(
+      PersistentHashMap<Class<?>, PersistentHashMap<Outpoint, Long>> byClass,
+      Class<?> selectedClass) {
+    List<PersistentHashMap<Outpoint, Long>> selected = new ArrayList<>();
+    byClass.forEach(
+        (entryClass, outpoints) -> {
+          if (selectedClass.isAssignableFrom(entryClass)) {
+            selected.add(outpoints);
+          }
+        });
+    return resolve(selected);
+  }
+
+  private static int authorKeyId(PublicKey author) {
+    return author == null ? -1 : KeyRegistry.getDefault().register(author).getId();
+  }
+
+  private static Hash256 electionsIdOf(TransactionOutput output) {
+    return output.data instanceof Vote ? ((Vote) output.data).getElectionsIdDigest() : null;
+  }
+
+  /** An unconsumed output with the sequence number it was added with. */
+  private static final class Slot {
+    final long sequence;
+    final TransactionOutput output;
+
+    Slot(long sequence, TransactionOutput output) {
+      this.sequence = sequence;
+      this.output = output;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.votebloke.blockchain;
+
+import java.util.List;
+import org.springframework.lang.NonNull;
+
+/**
+ * A store of unconsumed TransactionOutput objects, keyed by their Outpoint.
+ *
+ * <p>UtxoSet keeps the outputs on the heap; MappedUtxoStore keeps fixed-size records in memory
+ * mapped files.
+ *
+ * <p>A store may record the hash of the newest Block whose outputs it holds. A Chain reopening its
+ * BlockStore reuses a store recording the newest stored Block instead of rebuilding the outputs.
+ */
+public interface UtxoStore {
+  /**
+   * Tests whether an output is unconsumed.
+   *
+   * @param outpoint the outpoint of the output
+   * @return true if the output is in this store; false otherwise
+   */
+  boolean contains(@NonNull Outpoint outpoint);
+
+  /**
+   * Returns an unconsumed output.
+   *
+   * @param outpoint the outpoint of the output
+   * @return the output; null if it is not in this store
+   */
+  TransactionOutput get(@NonNull Outpoint outpoint);
+
+  /**
+   * Adds an output to this store. Replaces an output with the same outpoint.
+   *
+   * @param output the output
+   */
+  void add(@NonNull TransactionOutput output);
+
+  /**
+   * Removes an output from this store.
+   *
+   * @param outpoint the outpoint of the output
+   * @return the removed output; null if it was not in this store
+   */
+  TransactionOutput spend(@NonNull Outpoint outpoint);
+
+  /**
+   * Returns the number of unconsumed outputs.
+   *
+   * @return the number of outputs in this store
+   */
+  int size();
+
+  /**
+   * Returns the unconsumed outputs.
+   *
+   * @return the outputs in this store
+   */
+  List<TransactionOutput> outputs();
+
+  /**
+   * Returns the hash of the newest Block whose outputs this store holds.
+   *
+   * @return the hash recorded by setBestBlockHash; null if no hash is recorded
+   */
+  default Hash256 getBestBlockHash() {
+    return null;
+  }
+
+  /**
+   * Records the hash of the newest Block whose outputs this store holds. Stores kept on the heap
+   * need not record it.
+   *
+   * @param hash the hash of the Block; null while the outputs are being changed
+   */
+  default void setBestBlockHash(Hash256 hash) {}
+}
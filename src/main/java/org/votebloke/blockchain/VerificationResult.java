@@ -0,0 +1,83 @@
+package org.votebloke.blockchain;
+
+/**
+ * The result of verifying a batch of Transactions.
+ *
+ * <p>A failed result identifies the first Transaction, which failed to validate - its position in
+ * the verified batch and, when Blocks of a Chain were verified, the position of its Block.
+ */
+public final class VerificationResult {
+  /** The result of a batch where every Transaction is valid. */
+  public static final VerificationResult VALID = new VerificationResult(-1, -1, null);
+
+  /** The position of the Block holding the failed Transaction; -1 if not verifying a Chain. */
+  private final int blockPosition;
+
+  /** The position of the failed Transaction in its Block or batch; -1 if valid. */
+  private final int transactionIndex;
+
+  /** The failed Transaction; null if valid. */
+  private final Transaction failedTransaction;
+
+  /**
+   * A constructor for VerificationResult.
+   *
+   * @param blockPosition the position of the Block holding the failed Transaction in its Chain
+   * @param transactionIndex the position of the failed Transaction in its Block or batch
+   * @param failedTransaction the failed Transaction
+   */
+  VerificationResult(int blockPosition, int transactionIndex, Transaction failedTransaction) {
+    this.blockPosition = blockPosition;
+    this.transactionIndex = transactionIndex;
+    this.failedTransaction = failedTransaction;
+  }
+
+  /**
+   * Tests whether every verified Transaction is valid.
+   *
+   * @return true if no Transaction failed; false otherwise
+   */
+  public boolean isValid() {
+    return failedTransaction == null;
+  }
+
+  /**
+   * Returns the position of the Block holding the failed Transaction.
+   *
+   * @return the position of the Block in its Chain; -1 if valid or not verifying a Chain
+   */
+  public int getBlockPosition() {
+    return blockPosition;
+  }
+
+  /**
+   * Returns the position of the failed Transaction.
+   *
+   * @return the position of the failed Transaction in its Block or batch; -1 if valid
+   */
+  public int getTransactionIndex() {
+    return transactionIndex;
+  }
+
+  /**
+   * Returns the failed Transaction.
+   *
+   * @return the first Transaction which failed to validate; null if valid
+   */
+  public Transaction getFailedTransaction() {
+    return failedTransaction;
+  }
+
+  @Override
+  public String toString() {
+    if (isValid()) {
+      return "VerificationResult: valid";
+    }
+    return "VerificationResult: Transaction "
+        + failedTransaction.getId()
+        + " at index "
+        + transactionIndex
+        + (blockPosition >= 0 ? " of Block " + blockPosition : "")
+        + " is not valid";
+  }
+}
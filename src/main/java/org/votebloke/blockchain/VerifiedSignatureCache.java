@@ -0,0 +1,197 @@
+package org.votebloke.blockchain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.lang.NonNull;
+
+/**
+ * A bounded cache of successfully verified ECDSA signatures.
+ *
+ * <p>An entry is keyed by the hash of the exact signed bytes, the encoding of the signing key and
+ * the signature. Changing any of them - for example tampering with the contents of a Transaction,
+ * which changes its sign data - produces a different key, so a cached entry can never vouch for
+ * data it was not verified for. Only successful verifications are cached.
+ *
+ * <p>Entries are evicted in least-recently-used order once the cache holds maxEntries entries and,
+ * if a time to live is configured, when they are older than it. A VerifiedSignatureCache is
+ * thread-safe.
+ */
+public class VerifiedSignatureCache {
+  /** The default maximum number of cached signatures. */
+  public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+  /** The cache consulted by Transaction.verifySignature. */
+  private static volatile VerifiedSignatureCache defaultCache =
+      new VerifiedSignatureCache(DEFAULT_MAX_ENTRIES);
+
+  /** The maximum number of cached signatures. */
+  private final int maxEntries;
+
+  /** The time to live of an entry in nanoseconds; 0 if entries do not expire. */
+  private final long timeToLive;
+
+  /** The cached keys with the times they were verified at, in least-recently-used order. */
+  private final LinkedHashMap<Hash256, Long> entries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * A constructor for VerifiedSignatureCache.
+   *
+   * @param maxEntries the maximum number of cached signatures; 0 disables caching
+   * @param timeToLive the time after which a cached signature is verified again; null or zero if
+   *     cached signatures do not expire
+   * @throws IllegalArgumentException if maxEntries or timeToLive is negative
+   */
+  public VerifiedSignatureCache(int maxEntries, Duration timeToLive)
+      throws IllegalArgumentException {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("maxEntries must not be negative");
+    }
+    if (timeToLive != null && timeToLive.isNegative()) {
+      throw new IllegalArgumentException("timeToLive must not be negative");
+    }
+    this.maxEntries = maxEntries;
+    this.timeToLive = timeToLive == null ? 0 : timeToLive.toNanos();
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Hash256, Long> eldest) {
+            return size() > VerifiedSignatureCache.this.maxEntries;
+          }
+        };
+  }
+
+  /**
+   * A constructor for VerifiedSignatureCache. Cached signatures do not expire.
+   *
+   * @param maxEntries the maximum number of cached signatures; 0 disables caching
+   * @throws IllegalArgumentException if maxEntries is negative
+   */
+  public VerifiedSignatureCache(int maxEntries) throws IllegalArgumentException {
+    this(maxEntries, null);
+  }
+
+  /**
+   * Returns the cache consulted by Transaction.verifySignature.
+   *
+   * @return the default VerifiedSignatureCache
+   */
+  public static VerifiedSignatureCache getDefault() {
+    return defaultCache;
+  }
+
+  /**
+   * Replaces the cache consulted by Transaction.verifySignature.
+   *
+   * @param cache the new default VerifiedSignatureCache
+   */
+  public static void setDefault(@NonNull VerifiedSignatureCache cache) {
+    defaultCache = cache;
+  }
+
+  /**
+   * Verifies a signature, consulting this cache first.
+   *
+   * @param key the public ECDSA key of the signer
+   * @param data the signed data
+   * @param signature the signature
+   * @return true if the signature matches the key and the data; false otherwise
+   */
+  public boolean verify(@NonNull PublicKey key, @NonNull String data, byte[] signature) {
+    if (signature == null) {
+      return false;
+    }
+    byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+    Hash256 cacheKey = cacheKey(key, dataBytes, signature);
+    if (contains(cacheKey)) {
+      hits.increment();
+      return true;
+    }
+    misses.increment();
+
+    boolean verified = StringUtils.verifyEcdsa(key, dataBytes, signature);
+    if (verified) {
+      put(cacheKey);
+    }
+    return verified;
+  }
+
+  /**
+   * Returns the number of cached signatures.
+   *
+   * @return the number of entries in this cache
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Removes all cached signatures. */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of verifications answered from this cache.
+   *
+   * @return the number of cache hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of verifications, which required an ECDSA verification.
+   *
+   * @return the number of cache misses
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Tests whether a key is cached and not expired. Expired keys are removed.
+   *
+   * @param cacheKey the key of the entry
+   * @return true if the entry is cached; false otherwise
+   */
+  private synchronized boolean contains(Hash256 cacheKey) {
+    Long verifiedAt = entries.get(cacheKey);
+    if (verifiedAt == null) {
+      return false;
+    }
+    if (timeToLive > 0 && System.nanoTime() - verifiedAt > timeToLive) {
+      entries.remove(cacheKey);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Caches a key.
+   *
+   * @param cacheKey the key of the entry
+   */
+  private synchronized void put(Hash256 cacheKey) {
+    if (maxEntries > 0) {
+      entries.put(cacheKey, System.nanoTime());
+    }
+  }
+
+  /**
+   * Calculates the key of a cache entry.
+   *
+   * @param key the public ECDSA key of the signer
+   * @param data the signed bytes
+   * @param signature the signature
+   * @return the hash of the signed bytes, the key and the signature
+   */
+  private static Hash256 cacheKey(PublicKey key, byte[] data, byte[] signature) {
+    return new CanonicalEncoder().writeBytes(data).writeKey(key).writeBytes(signature).digest();
+  }
+}
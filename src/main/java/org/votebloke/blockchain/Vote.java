@@ -2,6 +2,7 @@ package org.votebloke.blockchain;
 
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +10,8 @@ import java.util.Objects;
 
 /** Represents a single vote in particular elections. */
 public class Vote extends Entry {
+  private static final long serialVersionUID = 1L;
+
   /** The public ECDSA key of the account which votes - the voter. */
   private final PublicKey voter;
   /** The id of Elections this Vote was cast in. */
@@ -18,7 +21,7 @@ public class Vote extends Entry {
   /** The voter's answer (as an index of the array of possible answer for the Elections). */
   private int answerInt;
   /** The id of this Vote. */
-  private String id;
+  private Hash256 id;
 
   /**
    * A constructor for Vote.
@@ -69,6 +72,31 @@ public class Vote extends Entry {
     this(voter, null, null);
   }
 
+  /**
+   * A constructor for Vote, which restores a stored Vote, see BlockCodec.
+   *
+   * @param voter the public ECDSA key identifying the agent who cast this Vote in elections
+   * @param elections the elections this Vote was cast in
+   * @param answer the chosen answer to elections
+   * @param answerInt the number of the answer in elections; -1 if it was not processed
+   * @param timeStamp the time of creation of this Vote
+   * @param id the id of this Vote; null if it was not processed
+   */
+  Vote(
+      PublicKey voter,
+      Elections elections,
+      String answer,
+      int answerInt,
+      Date timeStamp,
+      Hash256 id) {
+    super(timeStamp);
+    this.voter = voter;
+    this.elections = elections;
+    this.answer = answer;
+    this.answerInt = answerInt;
+    this.id = id;
+  }
+
   /**
    * This method performs basic validation of `inputEntries` as well as the chosen answer to the
    * question in the Elections' object passed to this Vote. Also, it calculates the unique
@@ -114,9 +142,7 @@ public class Vote extends Entry {
       this.answer = elections.getAnswers()[answerInt];
     }
 
-    id =
-        StringUtils.hashString(
-            StringUtils.keyToString(voter) + elections.getId() + answer + getTimeStamp());
+    id = calculateId();
 
     return new ArrayList<>(List.of(inputEntries.get(0).transactionOut));
   }
@@ -166,14 +192,21 @@ public class Vote extends Entry {
    */
   @Override
   public boolean validateEntry() {
-    return getId()
-        .equals(
-            StringUtils.hashString(
-                StringUtils.keyToString(voter) + elections.getId() + answer + getTimeStamp()));
+    return getIdDigest().equals(calculateId());
   }
 
   @Override
-  public final String getId() {
+  public void encode(CanonicalEncoder encoder) {
+    encoder
+        .writeByte(CanonicalEncoder.VOTE_TAG)
+        .writeKey(voter)
+        .writeHash(elections.getIdDigest())
+        .writeString(answer)
+        .writeDate(getTimeStamp());
+  }
+
+  @Override
+  public final Hash256 getIdDigest() {
     return id;
   }
 
@@ -204,6 +237,42 @@ public class Vote extends Entry {
     return elections.getId();
   }
 
+  /**
+   * Returns the id of the Elections object passed to this Vote.
+   *
+   * @return the id of the Elections object passed to this Vote
+   */
+  public final Hash256 getElectionsIdDigest() {
+    return elections == null ? null : elections.getIdDigest();
+  }
+
+  /**
+   * Returns the public ECDSA key of the voter.
+   *
+   * @return the public key of the agent who cast this Vote
+   */
+  final PublicKey getVoter() {
+    return voter;
+  }
+
+  /**
+   * Returns the Elections this Vote was cast in.
+   *
+   * @return the Elections; null if this Vote was not processed and has no Elections
+   */
+  final Elections getElections() {
+    return elections;
+  }
+
+  /**
+   * Returns the number of the answer of this Vote.
+   *
+   * @return the index of the answer among the answers of the Elections; -1 if it is not known yet
+   */
+  final int getAnswerIndex() {
+    return answerInt;
+  }
+
   /**
    * Returns the answer of this Vote.
    *
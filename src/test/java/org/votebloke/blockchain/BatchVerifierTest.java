@@ -0,0 +1,127 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchVerifierTest {
+  Account account;
+  KeyPair otherKeys;
+  BatchVerifier verifier;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    account = Account.createAccount();
+    otherKeys = Account.generateKeys();
+    verifier = new BatchVerifier(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    verifier.close();
+  }
+
+  List<Transaction> createValidTransactions(int count) {
+    List<Transaction> transactions = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      transactions.add(account.createElections("question " + i, new String[] {"a1"}));
+    }
+    return transactions;
+  }
+
+  Transaction createInvalidTransaction() {
+    Elections elections =
+        new Elections(account.getPublicKey(), "question", new String[] {"a1"});
+    Transaction transaction = new Transaction(account.getPublicKey(), elections, null);
+    transaction.sign(otherKeys.getPrivate());
+    return transaction;
+  }
+
+  @Test
+  void validBatchIsValid() {
+    VerificationResult result = verifier.verify(createValidTransactions(10));
+    Assertions.assertTrue(result.isValid());
+    Assertions.assertNull(result.getFailedTransaction());
+  }
+
+  @Test
+  void firstInvalidTransactionIsReported() {
+    List<Transaction> transactions = createValidTransactions(10);
+    Transaction invalid = createInvalidTransaction();
+    transactions.set(7, createInvalidTransaction());
+    transactions.set(3, invalid);
+
+    VerificationResult result = verifier.verify(transactions);
+    Assertions.assertFalse(result.isValid());
+    Assertions.assertEquals(3, result.getTransactionIndex());
+    Assertions.assertSame(invalid, result.getFailedTransaction());
+  }
+
+  @Test
+  void blockTransactionsAreVerified() {
+    Block block = new Block("0", "v1", 0, null);
+    createValidTransactions(5).forEach(block::addTransaction);
+    block.mineHash();
+    Assertions.assertTrue(verifier.verify(block).isValid());
+    Assertions.assertTrue(block.isBlockValid(new ProofOfWorkSealer(), verifier));
+  }
+
+  @Test
+  void chainRangeReportsBlockOfFailedTransaction() {
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    createValidTransactions(3).forEach(genesisBlock::addTransaction);
+    genesisBlock.mineHash();
+    Chain chain = new Chain(genesisBlock);
+    Block block = new Block(chain.getLatestBlockHash(), "v1", 0, null);
+    createValidTransactions(3).forEach(block::addTransaction);
+    block.mineHash();
+    chain.addBlock(block);
+    Assertions.assertTrue(verifier.verify(chain, 0, chain.size()).isValid());
+    Assertions.assertTrue(chain.isChainValid(verifier));
+
+    block.getTransactions().set(1, createInvalidTransaction());
+    VerificationResult result = verifier.verify(chain, 0, chain.size());
+    Assertions.assertEquals(1, result.getBlockPosition());
+    Assertions.assertEquals(1, result.getTransactionIndex());
+  }
+
+  @Test
+  void nestedBatchesOnBusyPoolComplete() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(1);
+    ExecutorService caller = Executors.newSingleThreadExecutor();
+    try {
+      BatchVerifier nested = new BatchVerifier(pool, 2);
+      CountDownLatch claimed = new CountDownLatch(2);
+      Future<Integer> outer =
+          caller.submit(
+              () ->
+                  nested.findFirstInvalid(
+                      2,
+                      i -> {
+                        claimed.countDown();
+                        try {
+                          claimed.await(1, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                          Thread.currentThread().interrupt();
+                        }
+                        return nested.findFirstInvalid(2, j -> true) < 0;
+                      }));
+      int failed = outer.get(10, TimeUnit.SECONDS);
+      Assertions.assertEquals(-1, failed);
+    } finally {
+      caller.shutdownNow();
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,247 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BlockProducerTest {
+  Chain chain;
+  Mempool mempool;
+  Account account;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    genesisBlock.mineHash();
+    chain = new Chain(genesisBlock);
+    mempool = new Mempool();
+    account = Account.createAccount();
+  }
+
+  BlockProducer producer(int maxTransactions, int maxBytes, Duration maxInterval) {
+    return new BlockProducer(
+        chain,
+        new ProofOfWorkSealer(),
+        mempool,
+        "v1",
+        maxTransactions,
+        maxBytes,
+        maxInterval,
+        Duration.ofMillis(10));
+  }
+
+  void submit(int count) {
+    for (int i = 0; i < count; i++) {
+      Assertions.assertTrue(
+          mempool.add(account.createElections("question " + i, new String[] {"a1"})));
+    }
+  }
+
+  @Test
+  void blockIsSealedOnceFull() {
+    BlockProducer producer = producer(3, Integer.MAX_VALUE, Duration.ofHours(1));
+    submit(7);
+
+    Assertions.assertEquals(2, producer.produce());
+    Assertions.assertEquals(3, chain.size());
+    Assertions.assertEquals(3, chain.getBlockAt(1).getTransactions().size());
+    Assertions.assertEquals(3, chain.getBlockAt(2).getTransactions().size());
+    Assertions.assertEquals(1, producer.getTemplateSize());
+    Assertions.assertEquals(2, producer.getCountTriggers());
+    Assertions.assertEquals(6, producer.getTransactionsIncluded());
+    Assertions.assertEquals(0, mempool.size());
+    Assertions.assertTrue(chain.isChainValid());
+  }
+
+  @Test
+  void blockIsSealedBeforeExceedingMaxBytes() {
+    Transaction probe = account.createElections("probe", new String[] {"a1"});
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    probe.encode(encoder);
+    int size = encoder.size() + probe.getSignature().length;
+    BlockProducer producer = producer(100, 2 * size + size / 2, Duration.ofHours(1));
+    submit(5);
+
+    Assertions.assertEquals(2, producer.produce());
+    Assertions.assertEquals(2, chain.getBlockAt(1).getTransactions().size());
+    Assertions.assertEquals(2, chain.getBlockAt(2).getTransactions().size());
+    Assertions.assertEquals(1, producer.getTemplateSize());
+    Assertions.assertEquals(2, producer.getSizeTriggers());
+  }
+
+  @Test
+  void partialBlockIsSealedAfterMaxInterval() throws InterruptedException {
+    BlockProducer producer = producer(100, Integer.MAX_VALUE, Duration.ofMillis(20));
+    submit(2);
+
+    Assertions.assertEquals(0, producer.produce());
+    Assertions.assertEquals(2, producer.getTemplateSize());
+    Thread.sleep(30);
+    Assertions.assertEquals(1, producer.produce());
+    Assertions.assertEquals(2, chain.size());
+    Assertions.assertEquals(2, chain.getBlockAt(1).getTransactions().size());
+    Assertions.assertEquals(1, producer.getTimeTriggers());
+    Assertions.assertEquals(0, producer.produce());
+  }
+
+  @Test
+  void templateOnStaleTipIsRebuilt() {
+    BlockProducer producer = producer(100, Integer.MAX_VALUE, Duration.ofHours(1));
+    submit(2);
+    producer.produce();
+
+    Block competing = new Block(chain.getBlockAt(0), "v1", 0, new Mempool());
+    competing.mineHash();
+    Assertions.assertTrue(chain.addBlock(competing));
+
+    Assertions.assertEquals(0, producer.produce());
+    Assertions.assertEquals(2, producer.getTemplateSize());
+    Assertions.assertEquals(0, mempool.size());
+  }
+
+  @Test
+  void rejectedBlockEndsTheStep() {
+    BlockSealer unsealed =
+        new BlockSealer() {
+          @Override
+          public void seal(Block block) {}
+
+          @Override
+          public boolean verifySeal(Block block) {
+            return false;
+          }
+
+          @Override
+          public boolean verifySeal(BlockHeader header) {
+            return false;
+          }
+        };
+    BlockProducer producer =
+        new BlockProducer(
+            chain,
+            unsealed,
+            mempool,
+            "v1",
+            2,
+            Integer.MAX_VALUE,
+            Duration.ofHours(1),
+            Duration.ofSeconds(1));
+    submit(5);
+
+    Assertions.assertEquals(0, producer.produce());
+    Assertions.assertEquals(1, producer.getBlocksRejected());
+    Assertions.assertEquals(1, chain.size());
+    Assertions.assertEquals(0, producer.getTemplateSize());
+    Assertions.assertEquals(5, mempool.getReadyCount());
+
+    Assertions.assertEquals(0, producer.produce());
+    Assertions.assertEquals(1, producer.getBlocksRejected());
+    Assertions.assertEquals(5, mempool.getReadyCount());
+  }
+
+  @Test
+  void recordedTransactionsOfRejectedBlockAreDropped() {
+    Transaction recorded = account.createElections("recorded", new String[] {"a1"});
+    mempool.add(recorded);
+    submit(1);
+    ProofOfWorkSealer proofOfWork = new ProofOfWorkSealer();
+    BlockSealer racing =
+        new BlockSealer() {
+          @Override
+          public void seal(Block block) {
+            Block competing = new Block(chain.getBlockAt(0), "v1", 0, new Mempool());
+            competing.addTransaction(recorded);
+            competing.mineHash();
+            Assertions.assertTrue(chain.addBlock(competing));
+          }
+
+          @Override
+          public boolean verifySeal(Block block) {
+            return proofOfWork.verifySeal(block);
+          }
+
+          @Override
+          public boolean verifySeal(BlockHeader header) {
+            return proofOfWork.verifySeal(header);
+          }
+        };
+    BlockProducer producer =
+        new BlockProducer(
+            chain,
+            racing,
+            mempool,
+            "v1",
+            2,
+            Integer.MAX_VALUE,
+            Duration.ofHours(1),
+            Duration.ofSeconds(1));
+
+    Assertions.assertEquals(0, producer.produce());
+    Assertions.assertEquals(1, producer.getBlocksRejected());
+    Assertions.assertEquals(1, producer.getTransactionsRejected());
+    Assertions.assertEquals(1, mempool.getReadyCount());
+    Assertions.assertFalse(mempool.contains(recorded.getIdDigest()));
+  }
+
+  @Test
+  void failedSealReturnsTransactionsToTheMempool() {
+    BlockSealer failing =
+        new BlockSealer() {
+          @Override
+          public void seal(Block block) {
+            throw new IllegalStateException("sealing failed");
+          }
+
+          @Override
+          public boolean verifySeal(Block block) {
+            return false;
+          }
+
+          @Override
+          public boolean verifySeal(BlockHeader header) {
+            return false;
+          }
+        };
+    BlockProducer producer =
+        new BlockProducer(
+            chain,
+            failing,
+            mempool,
+            "v1",
+            2,
+            Integer.MAX_VALUE,
+            Duration.ofHours(1),
+            Duration.ofMillis(10));
+    submit(5);
+
+    Assertions.assertThrows(IllegalStateException.class, producer::produce);
+    Assertions.assertEquals(0, producer.getTemplateSize());
+    Assertions.assertEquals(1, chain.size());
+    Assertions.assertEquals(5, mempool.getReadyCount());
+  }
+
+  @Test
+  void startedProducerAddsBlocksInTheBackground() throws InterruptedException {
+    try (BlockProducer producer = producer(2, Integer.MAX_VALUE, Duration.ofHours(1))) {
+      producer.start();
+      Assertions.assertThrows(IllegalStateException.class, producer::start);
+      submit(4);
+      for (int i = 0; i < 500 && producer.getBlocksProduced() < 2; i++) {
+        Thread.sleep(10);
+      }
+      Assertions.assertEquals(2, producer.getBlocksProduced());
+    }
+    Assertions.assertEquals(3, chain.size());
+  }
+
+  @Test
+  void constructorRejectsNonPositiveLimits() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> producer(0, 1, Duration.ofSeconds(1)));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> producer(1, 1, Duration.ZERO));
+  }
+}
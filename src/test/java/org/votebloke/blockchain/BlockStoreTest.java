@@ -0,0 +1,349 @@
+package org.votebloke.blockchain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BlockStoreTest {
+  Path directory;
+  Account account;
+  HashMap<Hash256, Entry> entries = new HashMap<>();
+
+  @BeforeEach
+  void setUp() throws IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    directory = Files.createTempDirectory("blocks");
+    account = Account.createAccount();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  Block block(Block parent) {
+    Block block = parent == null ? new Block("0", "v1", 0, null) : new Block(parent, "v1", 0);
+    block.addTransaction(account.createElections("question", new String[] {"a1", "a2"}));
+    block.mineHash();
+    return block;
+  }
+
+  MappedUtxoStore openUtxoStore(Path utxoDirectory) throws IOException {
+    return new MappedUtxoStore(utxoDirectory, (type, id) -> entries.get(id));
+  }
+
+  List<Block> blocks(int count) {
+    List<Block> blocks = new ArrayList<>();
+    Block parent = null;
+    for (int i = 0; i < count; i++) {
+      parent = block(parent);
+      blocks.add(parent);
+    }
+    return blocks;
+  }
+
+  @Test
+  void appendedBlocksAreReadBackAfterReopening() throws IOException {
+    List<Block> blocks = blocks(3);
+    try (BlockStore store = new BlockStore(directory)) {
+      for (int i = 0; i < blocks.size(); i++) {
+        Assertions.assertEquals(i, store.append(blocks.get(i)));
+      }
+    }
+
+    try (BlockStore store = new BlockStore(directory, BlockStore.DEFAULT_SEGMENT_SIZE, 0)) {
+      Assertions.assertEquals(3, store.size());
+      for (int i = 0; i < blocks.size(); i++) {
+        Block read = store.read(i);
+        Assertions.assertNotSame(blocks.get(i), read);
+        Assertions.assertEquals(blocks.get(i).getHash(), read.getHash());
+        Assertions.assertTrue(read.isBlockValid());
+        Assertions.assertTrue(read.getTransactions().get(0).verifySignature());
+      }
+      Assertions.assertThrows(IndexOutOfBoundsException.class, () -> store.read(3));
+    }
+  }
+
+  @Test
+  void blocksAreSpreadOverSegments() throws IOException {
+    List<Block> blocks = blocks(4);
+    try (BlockStore store = new BlockStore(directory, 1, 0)) {
+      blocks.forEach(store::append);
+      for (int i = 0; i < blocks.size(); i++) {
+        Assertions.assertEquals(blocks.get(i).getHash(), store.read(i).getHash());
+      }
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertEquals(5, files.count());
+    }
+  }
+
+  @Test
+  void truncateRemovesTheNewestBlocks() throws IOException {
+    List<Block> blocks = blocks(4);
+    try (BlockStore store = new BlockStore(directory, 1, 0)) {
+      blocks.forEach(store::append);
+      store.truncate(2);
+      Assertions.assertEquals(2, store.size());
+      Assertions.assertThrows(IllegalArgumentException.class, () -> store.truncate(3));
+
+      Block replacement = block(blocks.get(1));
+      Assertions.assertEquals(2, store.append(replacement));
+      Assertions.assertEquals(replacement.getHash(), store.read(2).getHash());
+    }
+    try (BlockStore store = new BlockStore(directory)) {
+      Assertions.assertEquals(3, store.size());
+      Assertions.assertEquals(blocks.get(1).getHash(), store.read(1).getHash());
+    }
+  }
+
+  @Test
+  void partiallyWrittenIndexEntryIsDiscarded() throws IOException {
+    List<Block> blocks = blocks(2);
+    try (BlockStore store = new BlockStore(directory)) {
+      blocks.forEach(store::append);
+    }
+    try (FileChannel index =
+        FileChannel.open(directory.resolve("blocks.idx"), StandardOpenOption.WRITE)) {
+      index.truncate(index.size() - 3);
+    }
+
+    try (BlockStore store = new BlockStore(directory)) {
+      Assertions.assertEquals(1, store.size());
+      Assertions.assertEquals(blocks.get(0).getHash(), store.read(0).getHash());
+      Block next = block(blocks.get(0));
+      store.append(next);
+      Assertions.assertEquals(next.getHash(), store.read(1).getHash());
+    }
+  }
+
+  @Test
+  void votesAndTalliesAreDecodedWithoutJavaSerialization()
+      throws IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Block parent = block(null);
+    Transaction electionsTransaction = parent.getTransactions().get(0);
+    Block block = new Block(parent, "v1", 0);
+    Transaction voteTransaction =
+        Account.createAccount()
+            .vote(
+                "a2",
+                (Elections) electionsTransaction.data,
+                new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Assertions.assertTrue(block.addTransaction(voteTransaction));
+    Assertions.assertTrue(
+        block.addTransaction(
+            account.tally(
+                new ArrayList<>(
+                    List.of(
+                        new TransactionInput(electionsTransaction),
+                        new TransactionInput(voteTransaction))))));
+    block.mineHash();
+    try (BlockStore store = new BlockStore(directory)) {
+      store.append(parent);
+      store.append(block);
+    }
+    byte[] segment = Files.readAllBytes(directory.resolve("segment-000000.dat"));
+    Assertions.assertEquals(CanonicalEncoder.BLOCK_TAG, segment[0]);
+
+    try (BlockStore store = new BlockStore(directory, BlockStore.DEFAULT_SEGMENT_SIZE, 0)) {
+      Block read = store.read(1);
+      Assertions.assertEquals(block.getIdDigest(), read.getIdDigest());
+      Assertions.assertEquals(block.getHeader(), read.getHeader());
+      Assertions.assertTrue(read.isBlockValid());
+      Assertions.assertEquals(block.getUndo().getSpent(), read.getUndo().getSpent());
+      Assertions.assertEquals(block.getUndo().getCreated(), read.getUndo().getCreated());
+
+      Vote vote = (Vote) read.getTransactions().get(0).data;
+      Tally tally = (Tally) read.getTransactions().get(1).data;
+      Assertions.assertEquals("a2", vote.getAnswer());
+      Assertions.assertTrue(vote.validateEntry());
+      Assertions.assertTrue(tally.validateEntry());
+      Assertions.assertSame(vote, tally.getVotes().get(0));
+      Assertions.assertSame(vote.getElections(), tally.getElections());
+      HashMap<String, String[]> metadata =
+          ((Tally) block.getTransactions().get(1).data).getMetadata();
+      Assertions.assertFalse(metadata.isEmpty());
+      Assertions.assertEquals(metadata.keySet(), tally.getMetadata().keySet());
+      metadata.forEach(
+          (key, values) -> Assertions.assertArrayEquals(values, tally.getMetadata().get(key)));
+    }
+  }
+
+  @Test
+  void entriesWithoutStoredEncodingAreRejected() throws IOException {
+    Block block = new Block("0", "v1", 0, null);
+    Transaction transaction =
+        new Transaction(account.getPublicKey(), new EntryTest.StringIdEntry("note"), null);
+    transaction.sign(account.getPrivateKey());
+    Assertions.assertTrue(block.addTransaction(transaction));
+    block.mineHash();
+    try (BlockStore store = new BlockStore(directory)) {
+      Assertions.assertThrows(IllegalArgumentException.class, () -> store.append(block));
+      Assertions.assertEquals(0, store.size());
+      store.append(block(null));
+      Assertions.assertEquals(1, store.size());
+    }
+  }
+
+  @Test
+  void damagedBlocksFailToDecode() throws IOException {
+    try (BlockStore store = new BlockStore(directory)) {
+      store.append(block(null));
+    }
+    try (FileChannel segment =
+        FileChannel.open(directory.resolve("segment-000000.dat"), StandardOpenOption.WRITE)) {
+      segment.write(ByteBuffer.wrap(new byte[] {(byte) 0xac, (byte) 0xed}), 0);
+    }
+    try (BlockStore store = new BlockStore(directory, BlockStore.DEFAULT_SEGMENT_SIZE, 0)) {
+      Assertions.assertThrows(UncheckedIOException.class, () -> store.read(0));
+    }
+  }
+
+  @Test
+  void chainReopensStoredBlocks() throws IOException {
+    Block genesisBlock = block(null);
+    Transaction electionsTransaction;
+    try (BlockStore store = new BlockStore(directory)) {
+      Chain chain = new Chain(store, genesisBlock, new ProofOfWorkSealer(), 0, 0, null);
+      Block block = new Block(chain.getBlockAt(0), "v1", 0);
+      electionsTransaction = account.createElections("question", new String[] {"a1"});
+      block.addTransaction(electionsTransaction);
+      block.mineHash();
+      Assertions.assertTrue(chain.addBlock(block));
+    }
+
+    try (BlockStore store = new BlockStore(directory, BlockStore.DEFAULT_SEGMENT_SIZE, 0)) {
+      Chain chain = new Chain(store, genesisBlock, new ProofOfWorkSealer(), 0, 0, null);
+      Assertions.assertEquals(2, chain.size());
+      Assertions.assertTrue(chain.isChainValid());
+      Assertions.assertEquals(2, chain.getUtxoStore().size());
+      Assertions.assertEquals(
+          1, chain.getTransactionLocation(electionsTransaction.getId()).getHeight());
+      Outpoint electionsOutpoint = new TransactionOutput(electionsTransaction).getOutpoint();
+      Assertions.assertTrue(chain.getUtxoStore().contains(electionsOutpoint));
+
+      Block tallyBlock = new Block(chain.getBlockAt(1), "v1", 0);
+      tallyBlock.addTransaction(
+          account.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction)))));
+      tallyBlock.mineHash();
+      Assertions.assertTrue(chain.addBlock(tallyBlock));
+      Assertions.assertFalse(chain.getUtxoStore().contains(electionsOutpoint));
+
+      chain.rewind(1);
+      Assertions.assertEquals(2, store.size());
+      Assertions.assertTrue(chain.getUtxoStore().contains(electionsOutpoint));
+      Assertions.assertThrows(
+          IllegalArgumentException.class,
+          () -> new Chain(store, block(null), new ProofOfWorkSealer(), 0, 0, null));
+    }
+  }
+
+  @Test
+  void chainReusesUtxoStoreOfTheNewestBlock() throws IOException {
+    Path utxoDirectory = directory.resolve("utxo");
+    Block genesisBlock = block(null);
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Outpoint electionsOutpoint = new TransactionOutput(electionsTransaction).getOutpoint();
+    try (BlockStore store = new BlockStore(directory);
+        MappedUtxoStore utxoStore = openUtxoStore(utxoDirectory)) {
+      Chain chain = new Chain(store, genesisBlock, new ProofOfWorkSealer(), 0, 0, utxoStore);
+      Block block = new Block(chain.getBlockAt(0), "v1", 0);
+      block.addTransaction(electionsTransaction);
+      block.mineHash();
+      Assertions.assertTrue(chain.addBlock(block));
+      Assertions.assertEquals(block.getHashDigest(), utxoStore.getBestBlockHash());
+    }
+
+    try (BlockStore store = new BlockStore(directory);
+        MappedUtxoStore utxoStore = openUtxoStore(utxoDirectory)) {
+      Chain chain = new Chain(store, genesisBlock, new ProofOfWorkSealer(), 0, 0, utxoStore);
+      Block latestBlock = chain.getBlockAt(1);
+      Assertions.assertEquals(2, utxoStore.size());
+      Assertions.assertTrue(latestBlock.getUtxoSet().contains(electionsOutpoint));
+
+      Block tallyBlock = new Block(latestBlock, "v1", 0);
+      Assertions.assertTrue(
+          tallyBlock.addTransaction(
+              account.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction))))));
+      tallyBlock.mineHash();
+      Assertions.assertTrue(chain.addBlock(tallyBlock));
+      Assertions.assertFalse(utxoStore.contains(electionsOutpoint));
+
+      chain.rewind(1);
+      Assertions.assertEquals(latestBlock.getHashDigest(), utxoStore.getBestBlockHash());
+      Assertions.assertTrue(chain.getBlockAt(1).getUtxoSet().contains(electionsOutpoint));
+    }
+  }
+
+  @Test
+  void chainRejectsUtxoStoreOfAnotherBlock() throws IOException {
+    Path utxoDirectory = directory.resolve("utxo");
+    Block genesisBlock = block(null);
+    try (BlockStore store = new BlockStore(directory);
+        MappedUtxoStore utxoStore = openUtxoStore(utxoDirectory)) {
+      Chain chain = new Chain(store, genesisBlock, new ProofOfWorkSealer(), 0, 0, utxoStore);
+      Block block = block(chain.getBlockAt(0));
+      Assertions.assertTrue(chain.addBlock(block));
+      utxoStore.setBestBlockHash(genesisBlock.getHashDigest());
+    }
+
+    try (BlockStore store = new BlockStore(directory);
+        MappedUtxoStore utxoStore = openUtxoStore(utxoDirectory)) {
+      Assertions.assertThrows(
+          IllegalArgumentException.class,
+          () -> new Chain(store, genesisBlock, new ProofOfWorkSealer(), 0, 0, utxoStore));
+    }
+  }
+
+  @Test
+  void entriesSurviveRewindingAndReapplyingOnMappedStore() throws IOException {
+    Path utxoDirectory = directory.resolve("utxo");
+    Block genesisBlock = block(null);
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Outpoint electionsOutpoint = new TransactionOutput(electionsTransaction).getOutpoint();
+    try (BlockStore store = new BlockStore(directory);
+        MappedUtxoStore utxoStore = openUtxoStore(utxoDirectory)) {
+      Chain chain = new Chain(store, genesisBlock, new ProofOfWorkSealer(), 0, 0, utxoStore);
+      Block electionsBlock = new Block(chain.getBlockAt(0), "v1", 0);
+      electionsBlock.addTransaction(electionsTransaction);
+      electionsBlock.mineHash();
+      Assertions.assertTrue(chain.addBlock(electionsBlock));
+      Block tallyBlock = new Block(chain.getBlockAt(1), "v1", 0);
+      tallyBlock.addTransaction(
+          account.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction)))));
+      tallyBlock.mineHash();
+
+      for (int i = 0; i < 2; i++) {
+        entries.clear();
+        Assertions.assertTrue(chain.addBlock(tallyBlock));
+        chain.rewind(1);
+        entries.put(electionsTransaction.data.getIdDigest(), electionsTransaction.data);
+
+        Assertions.assertSame(
+            electionsTransaction.data, utxoStore.get(electionsOutpoint).getData());
+        Assertions.assertEquals(
+            List.of(electionsOutpoint),
+            chain.getBlockAt(1).getOpenElections().stream()
+                .map(TransactionOutput::getOutpoint)
+                .collect(Collectors.toList()));
+      }
+    }
+  }
+}
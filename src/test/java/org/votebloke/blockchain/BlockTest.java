@@ -3,8 +3,14 @@ package org.votebloke.blockchain;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 import org.apache.tomcat.util.codec.binary.Base64;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -35,6 +41,115 @@ class BlockTest {
     Assertions.assertEquals(64, block.getHash().length());
   }
 
+  @Test
+  void mineHash_ParallelMinedIsValid() {
+    Block testBlock = new Block("previousHash", "v1", 8, null);
+    testBlock.mineHash(4);
+    Assertions.assertTrue(testBlock.getHash().startsWith("00"));
+    Assertions.assertTrue(testBlock.isBlockValid());
+  }
+
+  @Test
+  void header_CoversTransactionsThroughMerkleRoot() {
+    Hash256 emptyRoot = block.getMerkleRootDigest();
+    Assertions.assertEquals(MerkleTree.EMPTY_ROOT, emptyRoot);
+
+    Transaction transaction =
+        new Account(keyPair.getPublic(), keyPair.getPrivate())
+            .createElections("question", new String[] {"a1"});
+    block.addTransaction(transaction);
+    Assertions.assertEquals(
+        MerkleTree.rootOf(List.of(transaction.getIdDigest())), block.getMerkleRootDigest());
+
+    block.mineHash();
+    BlockHeader header = block.getHeader();
+    Assertions.assertEquals(block.getHashDigest(), header.getHash());
+    Assertions.assertTrue(header.isHashValid());
+    Assertions.assertEquals(block.getMerkleRootDigest(), header.getMerkleRoot());
+
+    block.getTransactions().clear();
+    Assertions.assertEquals(emptyRoot, block.getMerkleRootDigest());
+    Assertions.assertFalse(block.isBlockValid());
+  }
+
+  @Test
+  void header_ReplacedTransactionInvalidatesHash() {
+    Account account = new Account(keyPair.getPublic(), keyPair.getPrivate());
+    block.addTransaction(account.createElections("first", new String[] {"a1"}));
+    block.addTransaction(account.createElections("second", new String[] {"a1"}));
+    block.mineHash();
+    Assertions.assertTrue(block.isBlockValid());
+
+    block.getTransactions().set(1, account.createElections("replaced", new String[] {"a1"}));
+    Assertions.assertFalse(block.isBlockValid());
+  }
+
+  @Test
+  void mineHash_NonPositiveParallelismThrows() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> block.mineHash(0));
+  }
+
+  @Test
+  void mineHashAsync_CompletesWithMinedBlock() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Block testBlock = new Block("previousHash", "v1", 8, null);
+      MiningJob job = testBlock.mineHashAsync(executor, 2);
+      Assertions.assertSame(testBlock, job.join());
+      Assertions.assertTrue(testBlock.isBlockValid());
+      Assertions.assertTrue(job.getNoncesTried() > 0);
+      Assertions.assertTrue(job.getHashRate() > 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void mineHashAsync_CancelledJobLeavesNoHash() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Block testBlock = new Block("previousHash", "v1", 256, null);
+      MiningJob job = testBlock.mineHashAsync(executor, 2);
+      Assertions.assertTrue(job.cancel(true));
+      Assertions.assertTrue(job.isCancelled());
+      Assertions.assertEquals("", testBlock.getHash());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void mineHashAsync_FailsAfterTimeout() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Block testBlock = new Block("previousHash", "v1", 256, null);
+      MiningJob job = testBlock.mineHashAsync(executor, 2, Duration.ofMillis(50));
+      CompletionException exception = Assertions.assertThrows(CompletionException.class, job::join);
+      Assertions.assertTrue(exception.getCause() instanceof TimeoutException);
+      Assertions.assertEquals("", testBlock.getHash());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void mineHashAsync_RestartsAfterTransactionIsAdded() {
+    Transaction testTransaction =
+        new Account(keyPair.getPublic(), keyPair.getPrivate())
+            .createElections("testQuestion", new String[] {"a1"});
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Block testBlock = new Block("previousHash", "v1", 18, null);
+      MiningJob job = testBlock.mineHashAsync(executor, 1);
+      Assertions.assertTrue(testBlock.addTransaction(testTransaction));
+      job.join();
+      Assertions.assertEquals(1, testBlock.getTransactions().size());
+      Assertions.assertTrue(testBlock.isBlockValid());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   void isBlockValid_NoHashNotValid() {
     // Block with no hash is not valid
@@ -48,6 +163,15 @@ class BlockTest {
     Assertions.assertTrue(block.isBlockValid());
   }
 
+  @Test
+  void isBlockValid_HashNotMatchingDifficultyNotValid() {
+    Block testBlock = new Block("previousHash", "v1", 0, null);
+    testBlock.mineHash();
+    Block harderBlock = new Block("previousHash", "v1", 256, null);
+    Assertions.assertFalse(harderBlock.isBlockValid());
+    Assertions.assertTrue(testBlock.isBlockValid());
+  }
+
   @Test
   void constructorDoesNotThrow() {
     Assertions.assertDoesNotThrow(() -> new Block("previousHash", "v1", 0, null, null));
@@ -135,4 +259,175 @@ class BlockTest {
     Assertions.assertEquals(
         testTransaction.getId(), testBlock.getUnconsumedOutputs().get(0).getParentTransactionId());
   }
+
+  @Test
+  void indexedQueriesFollowVotesAndTallies()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account caller = Account.createAccount();
+    Account voter = Account.createAccount();
+    Transaction electionsTransaction = caller.createElections("question", new String[] {"a1"});
+    Assertions.assertTrue(block.addTransaction(electionsTransaction));
+    Elections elections = (Elections) electionsTransaction.data;
+
+    Transaction voteTransaction =
+        voter.vote(
+            "a1", elections, new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Assertions.assertTrue(block.addTransaction(voteTransaction));
+
+    Assertions.assertEquals(1, block.getOpenElections().size());
+    Assertions.assertEquals(1, block.getOpenElections(caller.getPublicKey()).size());
+    Assertions.assertEquals(0, block.getOpenElections(voter.getPublicKey()).size());
+    Assertions.assertEquals(1, block.authoredBy(voter.getPublicKey(), Vote.class).size());
+    Assertions.assertEquals(1, block.getVotes(elections.getId()).size());
+
+    Transaction tallyTransaction =
+        caller.tally(
+            new ArrayList<>(
+                List.of(
+                    new TransactionInput(electionsTransaction),
+                    new TransactionInput(voteTransaction))));
+    Assertions.assertTrue(block.addTransaction(tallyTransaction));
+
+    Assertions.assertEquals(0, block.getOpenElections().size());
+    Assertions.assertEquals(0, block.getVotes(elections.getId()).size());
+    Assertions.assertEquals(1, block.authoredBy(caller.getPublicKey(), Tally.class).size());
+  }
+
+  @Test
+  void addTransactionsReportsEachTransactionOfTheBatch()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account caller = Account.createAccount();
+    Account voter = Account.createAccount();
+    Transaction electionsTransaction = caller.createElections("question", new String[] {"a1"});
+    Elections elections = (Elections) electionsTransaction.data;
+    Transaction voteTransaction =
+        voter.vote(
+            "a1", elections, new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Transaction tallyTransaction =
+        caller.tally(
+            new ArrayList<>(
+                List.of(
+                    new TransactionInput(electionsTransaction),
+                    new TransactionInput(voteTransaction))));
+    Transaction secondTally =
+        caller.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Transaction orphanVote =
+        voter.vote(
+            "a1",
+            elections,
+            new ArrayList<>(
+                List.of(
+                    new TransactionInput(caller.createElections("other", new String[] {"a1"})))));
+    Transaction forged = caller.createElections("forged", new String[] {"a1"});
+    forged.data = new Elections(caller.getPublicKey(), "changed", new String[] {"a1"});
+    Transaction unsigned =
+        new Transaction(
+            keyPair.getPublic(),
+            new Elections(keyPair.getPublic(), "unsigned", new String[] {"a1"}),
+            null);
+
+    List<TransactionResult> results =
+        block.addTransactions(
+            List.of(
+                electionsTransaction,
+                voteTransaction,
+                voteTransaction,
+                tallyTransaction,
+                secondTally,
+                orphanVote,
+                forged,
+                unsigned));
+
+    Assertions.assertEquals(
+        List.of(
+            TransactionResult.ACCEPTED,
+            TransactionResult.ACCEPTED,
+            TransactionResult.DUPLICATE,
+            TransactionResult.ACCEPTED,
+            TransactionResult.DOUBLE_SPEND,
+            TransactionResult.MISSING_INPUT,
+            TransactionResult.INVALID,
+            TransactionResult.PENDING),
+        results);
+    Assertions.assertEquals(
+        List.of(electionsTransaction, voteTransaction, tallyTransaction),
+        block.getTransactions());
+    Assertions.assertEquals(List.of(unsigned), block.getUnsignedTransactions());
+    Assertions.assertEquals(0, block.getOpenElections().size());
+  }
+
+  @Test
+  void addTransactionsAcceptsVotesOnTheSameElections()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account caller = Account.createAccount();
+    Transaction electionsTransaction = caller.createElections("question", new String[] {"a1"});
+    Elections elections = (Elections) electionsTransaction.data;
+    List<Transaction> votes = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      votes.add(
+          Account.createAccount()
+              .vote(
+                  "a1",
+                  elections,
+                  new ArrayList<>(List.of(new TransactionInput(electionsTransaction)))));
+    }
+    Block sequential = new Block("0", "v1", 0, null);
+    sequential.addTransaction(electionsTransaction);
+    List<TransactionResult> expected = new ArrayList<>();
+    for (Transaction vote : votes) {
+      expected.add(
+          sequential.addTransaction(vote)
+              ? TransactionResult.ACCEPTED
+              : TransactionResult.DOUBLE_SPEND);
+    }
+
+    block.addTransaction(electionsTransaction);
+    Assertions.assertEquals(expected, block.addTransactions(votes));
+    Assertions.assertEquals(Collections.nCopies(4, TransactionResult.ACCEPTED), expected);
+    Assertions.assertEquals(4, block.getVotes(elections.getId()).size());
+    Assertions.assertEquals(
+        sequential.getVotes(elections.getId()).size(), block.getVotes(elections.getId()).size());
+  }
+
+  @Test
+  void addTransactionsMatchesSequentialAdds()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account caller = Account.createAccount();
+    List<Transaction> batch = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      batch.add(caller.createElections("question " + i, new String[] {"a1"}));
+    }
+    Block sequential = new Block("0", "v1", 0, null);
+    batch.forEach(sequential::addTransaction);
+
+    try (BatchVerifier verifier = new BatchVerifier(4)) {
+      for (TransactionResult result : block.addTransactions(batch, verifier)) {
+        Assertions.assertEquals(TransactionResult.ACCEPTED, result);
+      }
+    }
+    Assertions.assertEquals(sequential.getTransactions(), block.getTransactions());
+    Assertions.assertEquals(sequential.getMerkleRoot(), block.getMerkleRoot());
+    Assertions.assertEquals(
+        sequential.getUnconsumedOutputs().size(), block.getUnconsumedOutputs().size());
+  }
+
+  @Test
+  void childBlockBranchesUnconsumedOutputsOfItsParent()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account caller = Account.createAccount();
+    Transaction electionsTransaction = caller.createElections("question", new String[] {"a1"});
+    block.addTransaction(electionsTransaction);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new Block(block, "v1", 0));
+    block.mineHash();
+
+    Block child = new Block(block, "v1", 0);
+    Assertions.assertEquals(block.getHash(), child.getPreviousHash());
+    Assertions.assertEquals(1, child.getOpenElections().size());
+    Transaction tallyTransaction =
+        caller.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Assertions.assertTrue(child.addTransaction(tallyTransaction));
+
+    Assertions.assertEquals(0, child.getOpenElections().size());
+    Assertions.assertEquals(1, block.getOpenElections().size());
+  }
 }
@@ -0,0 +1,116 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BlockUndoTest {
+  PublicKey author;
+  TransactionOutput existing;
+  TransactionOutput created;
+  BlockUndo undo;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    author = Account.generateKeys().getPublic();
+    existing = new TransactionOutput(author, null, "existing");
+    created = new TransactionOutput(author, null, "created");
+    undo = new BlockUndo();
+  }
+
+  @Test
+  void outputsCreatedAndSpentWithinTheBlockCancelOut() {
+    undo.recordSpend(existing);
+    undo.recordCreate(created);
+    undo.recordSpend(created);
+
+    Assertions.assertEquals(List.of(existing), undo.getSpent());
+    Assertions.assertTrue(undo.getCreated().isEmpty());
+  }
+
+  @Test
+  void revertRestoresTheStateBeforeTheBlock() {
+    UtxoSet utxoSet = new UtxoSet(List.of(existing));
+    undo.recordSpend(existing);
+    undo.recordCreate(existing);
+    undo.recordCreate(created);
+
+    Assertions.assertTrue(undo.canApplyTo(utxoSet));
+    undo.apply(utxoSet);
+    Assertions.assertEquals(List.of(existing, created), utxoSet.outputs());
+    undo.revert(utxoSet);
+    Assertions.assertEquals(List.of(existing), utxoSet.outputs());
+  }
+
+  @Test
+  void missingSpentOutputCannotBeApplied() {
+    undo.recordSpend(existing);
+    Assertions.assertFalse(undo.canApplyTo(new UtxoSet()));
+  }
+
+  @Test
+  void computedUndoMatchesTheUndoRecordedByTheBlock()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account caller = Account.createAccount();
+    Transaction electionsTransaction = caller.createElections("question", new String[] {"a1"});
+    Block parent = new Block("0", "v1", 0, null);
+    parent.addTransaction(electionsTransaction);
+    parent.mineHash();
+    UtxoSet before = parent.getUtxoSet().branch();
+    Block block = new Block(parent, "v1", 0);
+    Elections elections = (Elections) electionsTransaction.data;
+    Transaction voteTransaction =
+        Account.createAccount()
+            .vote(
+                "a1",
+                elections,
+                new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Assertions.assertTrue(block.addTransaction(voteTransaction));
+    Assertions.assertTrue(
+        block.addTransaction(
+            caller.tally(
+                new ArrayList<>(
+                    List.of(
+                        new TransactionInput(electionsTransaction),
+                        new TransactionInput(voteTransaction))))));
+
+    BlockUndo computed = BlockUndo.of(block.getTransactions(), before);
+    Assertions.assertEquals(block.getUndo().getSpent(), computed.getSpent());
+    Assertions.assertEquals(block.getUndo().getCreated(), computed.getCreated());
+    Assertions.assertNull(BlockUndo.of(block.getTransactions(), new UtxoSet()));
+  }
+
+  @Test
+  void transactionSpendingAnOutputTwiceIsRejected()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account caller = Account.createAccount();
+    Transaction electionsTransaction = caller.createElections("question", new String[] {"a1"});
+    Transaction voteTransaction =
+        Account.createAccount()
+            .vote(
+                "a1",
+                (Elections) electionsTransaction.data,
+                new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Block block = new Block("0", "v1", 0, null);
+    block.addTransaction(electionsTransaction);
+    block.addTransaction(voteTransaction);
+    UtxoSet before = block.getUtxoSet().branch();
+    Transaction tallyTransaction =
+        caller.tally(
+            new ArrayList<>(
+                List.of(
+                    new TransactionInput(electionsTransaction),
+                    new TransactionInput(voteTransaction),
+                    new TransactionInput(voteTransaction))));
+
+    Assertions.assertNull(BlockUndo.of(List.of(tallyTransaction), before));
+    Assertions.assertFalse(block.addTransaction(tallyTransaction));
+    Assertions.assertEquals(
+        List.of(TransactionResult.DOUBLE_SPEND), block.addTransactions(List.of(tallyTransaction)));
+  }
+}
@@ -0,0 +1,87 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CanonicalDecoderTest {
+  @Test
+  void readsWhatTheEncoderWrote()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    KeyPair keyPair = Account.generateKeys();
+    Hash256 hash = Hash256.fromString("hash");
+    byte[] encoded =
+        new CanonicalEncoder()
+            .writeByte(7)
+            .writeInt(-2)
+            .writeLong(Long.MAX_VALUE)
+            .writeBytes(new byte[] {1, 2})
+            .writeString("za\u017c\u00f3\u0142\u0107")
+            .writeStrings(new String[] {"a", null})
+            .writeKey(keyPair.getPublic())
+            .writeHash(hash)
+            .writeDate(new Date(1234L))
+            .toByteArray();
+
+    CanonicalDecoder decoder = new CanonicalDecoder(encoded);
+    Assertions.assertEquals(7, decoder.readByte());
+    Assertions.assertEquals(-2, decoder.readInt());
+    Assertions.assertEquals(Long.MAX_VALUE, decoder.readLong());
+    Assertions.assertArrayEquals(new byte[] {1, 2}, decoder.readBytes());
+    Assertions.assertEquals("za\u017c\u00f3\u0142\u0107", decoder.readString());
+    Assertions.assertArrayEquals(new String[] {"a", null}, decoder.readStrings());
+    Assertions.assertEquals(keyPair.getPublic(), decoder.readKey());
+    Assertions.assertEquals(hash, decoder.readHash());
+    Assertions.assertEquals(new Date(1234L), decoder.readDate());
+    Assertions.assertEquals(0, decoder.remaining());
+  }
+
+  @Test
+  void nullsAreReadBack() {
+    byte[] encoded =
+        new CanonicalEncoder()
+            .writeBytes(null)
+            .writeString(null)
+            .writeStrings(null)
+            .writeKey(null)
+            .writeHash(null)
+            .toByteArray();
+
+    CanonicalDecoder decoder = new CanonicalDecoder(encoded);
+    Assertions.assertNull(decoder.readBytes());
+    Assertions.assertNull(decoder.readString());
+    Assertions.assertNull(decoder.readStrings());
+    Assertions.assertNull(decoder.readKey());
+    Assertions.assertNull(decoder.readHash());
+  }
+
+  @Test
+  void malformedInputIsRejected() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new CanonicalDecoder(new byte[3]).readInt());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new CanonicalDecoder(new CanonicalEncoder().writeInt(5).toByteArray()).readBytes());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new CanonicalDecoder(new CanonicalEncoder().writeInt(-2).toByteArray()).readString());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new CanonicalDecoder(new CanonicalEncoder().writeInt(Integer.MAX_VALUE).toByteArray())
+                .readStrings());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new CanonicalDecoder(new CanonicalEncoder().writeBytes(new byte[4]).toByteArray())
+                .readHash());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new CanonicalDecoder(new CanonicalEncoder().writeBytes(new byte[] {1}).toByteArray())
+                .readKey());
+  }
+}
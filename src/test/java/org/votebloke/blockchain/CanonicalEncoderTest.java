@@ -0,0 +1,54 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CanonicalEncoderTest {
+  @Test
+  void integersAreWrittenBigEndian() {
+    byte[] encoded = new CanonicalEncoder().writeInt(0x01020304).writeLong(5L).toByteArray();
+    Assertions.assertArrayEquals(new byte[] {1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 5}, encoded);
+  }
+
+  @Test
+  void stringsArePrefixedByTheirLength() {
+    byte[] encoded = new CanonicalEncoder().writeString("ab").writeString(null).toByteArray();
+    Assertions.assertArrayEquals(new byte[] {0, 0, 0, 2, 'a', 'b', -1, -1, -1, -1}, encoded);
+  }
+
+  @Test
+  void adjacentStringsDoNotCollide() {
+    Assertions.assertNotEquals(
+        new CanonicalEncoder().writeString("ab").writeString("c").hash(),
+        new CanonicalEncoder().writeString("a").writeString("bc").hash());
+  }
+
+  @Test
+  void datesAreWrittenAsMilliseconds() {
+    Assertions.assertArrayEquals(
+        new CanonicalEncoder().writeLong(1234L).toByteArray(),
+        new CanonicalEncoder().writeDate(new Date(1234L)).toByteArray());
+  }
+
+  @Test
+  void bufferGrowsBeyondInitialCapacity() {
+    byte[] bytes = new byte[1000];
+    Assertions.assertEquals(1004, new CanonicalEncoder().writeBytes(bytes).size());
+  }
+
+  @Test
+  void entryEncodingIsReproducible()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    KeyPair keyPair = Account.generateKeys();
+    Elections elections = new Elections(keyPair.getPublic(), "question", new String[] {"a1"});
+    CanonicalEncoder first = new CanonicalEncoder();
+    CanonicalEncoder second = new CanonicalEncoder();
+    elections.encode(first);
+    elections.encode(second);
+    Assertions.assertArrayEquals(first.toByteArray(), second.toByteArray());
+  }
+}
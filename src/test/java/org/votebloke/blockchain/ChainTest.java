@@ -2,8 +2,24 @@ package org.votebloke.blockchain;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -24,12 +40,13 @@ class ChainTest {
   }
 
   @Test
-  void isChainValid_WrongPreviousHash() {
-    // Chain with a block with a wrong previousHash is not valid
+  void addBlock_RejectsUnknownPreviousHash() {
+    // A block with an unknown previousHash is not added and the chain stays valid
     Block newBlock = new Block("something", "v1", 0, null);
     newBlock.mineHash();
-    blockchain.addBlock(newBlock);
-    assertFalse(blockchain.isChainValid());
+    assertFalse(blockchain.addBlock(newBlock));
+    assertEquals(1, blockchain.size());
+    assertTrue(blockchain.isChainValid());
   }
 
   @Test
@@ -68,4 +85,491 @@ class ChainTest {
     assertEquals(oldSize + 1, blockchain.size());
     assertEquals(2, blockchain.size());
   }
+
+  @Test
+  void getNextMiningDifficulty_RaisedWhenBlocksAreTooFast() {
+    // Blocks arriving faster than targeted raise the difficulty by at most MAX_RETARGET_STEP
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    genesisBlock.mineHash();
+    Chain retargetingChain = new Chain(genesisBlock, 3_600_000, 2);
+    Block newBlock = new Block(retargetingChain.getLatestBlockHash(), "v1", 0, null);
+    newBlock.mineHash();
+    assertTrue(retargetingChain.addBlock(newBlock));
+    assertEquals(Chain.MAX_RETARGET_STEP, retargetingChain.getNextMiningDifficulty());
+  }
+
+  @Test
+  void addBlock_UnexpectedDifficultyNotAdded() {
+    // Blocks with a difficulty other than the retargeted one are not added
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    genesisBlock.mineHash();
+    Chain retargetingChain = new Chain(genesisBlock, 3_600_000, 2);
+    Block newBlock = new Block(retargetingChain.getLatestBlockHash(), "v1", 0, null);
+    newBlock.mineHash();
+    retargetingChain.addBlock(newBlock);
+
+    Block easyBlock = new Block(retargetingChain.getLatestBlockHash(), "v1", 0, null);
+    easyBlock.mineHash();
+    assertFalse(retargetingChain.addBlock(easyBlock));
+
+    Block retargetedBlock =
+        new Block(
+            retargetingChain.getLatestBlockHash(),
+            "v1",
+            retargetingChain.getNextMiningDifficulty(),
+            null);
+    retargetedBlock.mineHash();
+    assertTrue(retargetingChain.addBlock(retargetedBlock));
+    assertTrue(retargetingChain.isChainValid());
+  }
+
+  @Test
+  void rewind_RevertsUnconsumedOutputs()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account account = Account.createAccount();
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Block electionsBlock = new Block(blockchain.getBlockAt(0), "v1", 0);
+    electionsBlock.addTransaction(electionsTransaction);
+    electionsBlock.mineHash();
+    assertTrue(blockchain.addBlock(electionsBlock));
+
+    Transaction tallyTransaction =
+        account.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction))));
+    Block tallyBlock = new Block(electionsBlock, "v1", 0);
+    tallyBlock.addTransaction(tallyTransaction);
+    tallyBlock.mineHash();
+    assertTrue(blockchain.addBlock(tallyBlock));
+    Outpoint electionsOutpoint = new TransactionOutput(electionsTransaction).getOutpoint();
+    assertFalse(blockchain.getUtxoStore().contains(electionsOutpoint));
+
+    assertEquals(List.of(tallyBlock), blockchain.rewind(1));
+    assertTrue(blockchain.getUtxoStore().contains(electionsOutpoint));
+    assertEquals(electionsBlock.getHash(), blockchain.getLatestBlockHash());
+
+    blockchain.rewind(1);
+    assertEquals(0, blockchain.getUtxoStore().size());
+    assertThrows(IllegalArgumentException.class, () -> blockchain.rewind(1));
+  }
+
+  @Test
+  void addBlock_RejectsSpendsOfMissingOutputs()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account account = Account.createAccount();
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Block block =
+        new Block(
+            blockchain.getLatestBlockHash(),
+            "v1",
+            0,
+            new ArrayList<>(List.of(new TransactionOutput(electionsTransaction))));
+    block.addTransaction(
+        account.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction)))));
+    block.mineHash();
+
+    assertFalse(blockchain.addBlock(block));
+    assertEquals(1, blockchain.size());
+  }
+
+  @Test
+  void isChainValid_OnlyValidatesNewBlocksUnlessAudited()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Block validatedBlock = new Block(blockchain.getLatestBlockHash(), "v1", 0, null);
+    validatedBlock.mineHash();
+    blockchain.addBlock(validatedBlock);
+    assertTrue(blockchain.isChainValid());
+    assertEquals(2, blockchain.getValidatedHeight());
+
+    // Tampering with a validated block is only noticed by a full audit
+    validatedBlock.addTransaction(
+        Account.createAccount().createElections("question", new String[] {"a1"}));
+    assertTrue(blockchain.isChainValid());
+    assertFalse(blockchain.isChainValid(true));
+
+    blockchain.rewind(1);
+    assertEquals(1, blockchain.getValidatedHeight());
+    Block newBlock = new Block(blockchain.getLatestBlockHash(), "v1", 0, null);
+    newBlock.mineHash();
+    blockchain.addBlock(newBlock);
+    newBlock.addTransaction(
+        Account.createAccount().createElections("question", new String[] {"a1"}));
+    assertFalse(blockchain.isChainValid());
+    assertEquals(1, blockchain.getValidatedHeight());
+  }
+
+  @Test
+  void getFirstInvalidHeight_ParallelMatchesSequential()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    for (int i = 0; i < 7; i++) {
+      Block block = new Block(blockchain.getBlockAt(blockchain.size() - 1), "v1", 0);
+      block.mineHash();
+      blockchain.addBlock(block);
+    }
+    Account account = Account.createAccount();
+    blockchain
+        .getBlockAt(7)
+        .addTransaction(account.createElections("question", new String[] {"a1"}));
+
+    try (BatchVerifier verifier = new BatchVerifier(4)) {
+      assertEquals(7, blockchain.getFirstInvalidHeight(verifier, true));
+      assertEquals(7, blockchain.getValidatedHeight());
+
+      for (int position : new int[] {5, 3}) {
+        blockchain
+            .getBlockAt(position)
+            .addTransaction(account.createElections("question", new String[] {"a1"}));
+      }
+      assertEquals(7, blockchain.getFirstInvalidHeight(verifier, false));
+      assertEquals(3, blockchain.getFirstInvalidHeight(verifier, true));
+      assertEquals(3, blockchain.getFirstInvalidHeight(true));
+      assertEquals(3, blockchain.getValidatedHeight());
+    }
+  }
+
+  @Test
+  void getFirstInvalidHeight_ValidatesWithoutBlockingWritersAndRetriesAfterReorganisations()
+      throws Exception {
+    assertValidationDoesNotBlockWriters(chain -> chain.getFirstInvalidHeight(false));
+    try (BatchVerifier verifier = new BatchVerifier(2)) {
+      assertValidationDoesNotBlockWriters(chain -> chain.getFirstInvalidHeight(verifier, false));
+    }
+  }
+
+  /**
+   * Replaces the Block being validated by a validation, and asserts that the validation let the
+   * replacement proceed and then validated the new Blocks.
+   */
+  private void assertValidationDoesNotBlockWriters(ToIntFunction<Chain> validation)
+      throws Exception {
+    ProofOfWorkSealer proofOfWork = new ProofOfWorkSealer();
+    AtomicReference<Hash256> gated = new AtomicReference<>();
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    BlockSealer sealer =
+        new BlockSealer() {
+          @Override
+          public void seal(Block block) {
+            proofOfWork.seal(block);
+          }
+
+          @Override
+          public boolean verifySeal(Block block) {
+            Hash256 hash = gated.get();
+            if (hash != null
+                && hash.equals(block.getHashDigest())
+                && gated.compareAndSet(hash, null)) {
+              entered.countDown();
+              try {
+                proceed.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return proofOfWork.verifySeal(block);
+          }
+
+          @Override
+          public boolean verifySeal(BlockHeader header) {
+            return proofOfWork.verifySeal(header);
+          }
+        };
+    Chain chain = new Chain(blockchain.getBlockAt(0), sealer);
+    Block replacedBlock = new Block(chain.getBlockAt(0), "v1", 0);
+    replacedBlock.mineHash();
+    assertTrue(chain.addBlock(replacedBlock));
+    gated.set(replacedBlock.getHashDigest());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> result = executor.submit(() -> validation.applyAsInt(chain));
+      assertTrue(entered.await(10, TimeUnit.SECONDS));
+      chain.rewind(1);
+      Block block = new Block(chain.getBlockAt(0), "v2", 0);
+      block.mineHash();
+      assertTrue(chain.addBlock(block));
+      Block child = new Block(block, "v1", 0);
+      child.mineHash();
+      assertTrue(chain.addBlock(child));
+      proceed.countDown();
+
+      int failed = result.get(10, TimeUnit.SECONDS);
+      assertEquals(-1, failed);
+      assertEquals(3, chain.getValidatedHeight());
+      assertEquals(block.getHash(), chain.getBlockAt(1).getHash());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void addBlock_IgnoresTheUndoCarriedByTheBlock()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account account = Account.createAccount();
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Block block = new Block(blockchain.getBlockAt(0), "v1", 0);
+    block.addTransaction(electionsTransaction);
+    TransactionOutput forged =
+        new TransactionOutput(account.getPublicKey(), null, Hash256.fromString("forged"), 0);
+    block.getUndo().recordCreate(forged);
+    block.mineHash();
+
+    assertTrue(blockchain.addBlock(block));
+    assertFalse(blockchain.getUtxoStore().contains(forged.getOutpoint()));
+    assertTrue(
+        blockchain
+            .getUtxoStore()
+            .contains(new TransactionOutput(electionsTransaction).getOutpoint()));
+    assertEquals(1, block.getUndo().getCreated().size());
+  }
+
+  @Test
+  void lookups_FindBlocksAndTransactions()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account account = Account.createAccount();
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Block block = new Block(blockchain.getBlockAt(0), "v1", 0);
+    block.addTransaction(electionsTransaction);
+    block.mineHash();
+    blockchain.addBlock(block);
+
+    assertEquals(1, blockchain.getHeightOfHash(block.getHash()));
+    assertSame(block, blockchain.getBlockByHash(block.getHash()));
+    assertSame(block, blockchain.getBlockById(block.getId()));
+    assertEquals(
+        new TransactionLocation(1, 0),
+        blockchain.getTransactionLocation(electionsTransaction.getId()));
+    assertSame(electionsTransaction, blockchain.getTransaction(electionsTransaction.getId()));
+    assertSame(
+        electionsTransaction,
+        blockchain.getTransactionByEntryId(electionsTransaction.data.getId()));
+
+    blockchain.rewind(1);
+    assertEquals(-1, blockchain.getHeightOfHash(block.getHash()));
+    assertNull(blockchain.getBlockById(block.getId()));
+    assertNull(blockchain.getTransaction(electionsTransaction.getId()));
+    assertNull(blockchain.getEntryLocation(electionsTransaction.data.getId()));
+  }
+
+  @Test
+  void lookups_RunConcurrentlyWithAddBlock() throws Exception {
+    Account account = Account.createAccount();
+    List<Transaction> transactions = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      transactions.add(account.createElections("question " + i, new String[] {"a1"}));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Future<?> writer =
+          executor.submit(
+              () -> {
+                for (Transaction transaction : transactions) {
+                  Block block =
+                      new Block(blockchain.getBlockAt(blockchain.size() - 1), "v1", 0);
+                  block.addTransaction(transaction);
+                  block.mineHash();
+                  assertTrue(blockchain.addBlock(block));
+                }
+              });
+      List<Future<?>> readers = new ArrayList<>();
+      for (int r = 0; r < 2; r++) {
+        readers.add(
+            executor.submit(
+                () -> {
+                  while (!writer.isDone()) {
+                    for (Transaction transaction : transactions) {
+                      Transaction found = blockchain.getTransaction(transaction.getId());
+                      if (found != null) {
+                        assertSame(transaction, found);
+                        assertNotNull(blockchain.getInclusionProof(transaction.getId()));
+                      }
+                    }
+                    blockchain.getBlockAt(blockchain.size() - 1).getHeader();
+                  }
+                }));
+      }
+      writer.get();
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(201, blockchain.size());
+    assertTrue(blockchain.isChainValid());
+  }
+
+  @Test
+  void addBlock_ReorganisesToTheBranchWithMostWork() {
+    Block genesisBlock = blockchain.getBlockAt(0);
+    Block lightBlock = new Block(genesisBlock, "v1", 0);
+    lightBlock.mineHash();
+    assertTrue(blockchain.addBlock(lightBlock));
+
+    List<List<Block>> changes = new ArrayList<>();
+    blockchain.addTipChangeListener(
+        (disconnected, connected) -> {
+          changes.add(disconnected);
+          changes.add(connected);
+        });
+    Block heavyBlock = new Block(genesisBlock, "v1", 2);
+    heavyBlock.mineHash();
+    assertTrue(blockchain.addBlock(heavyBlock));
+
+    assertEquals(heavyBlock.getHash(), blockchain.getLatestBlockHash());
+    assertEquals(2, blockchain.size());
+    assertEquals(List.of(List.of(lightBlock), List.of(heavyBlock)), changes);
+    assertEquals(-1, blockchain.getHeightOfHash(lightBlock.getHash()));
+    assertTrue(blockchain.isKnownBlock(lightBlock.getHash()));
+    assertEquals(BigInteger.valueOf(5), blockchain.getCumulativeWork(heavyBlock.getHash()));
+    assertFalse(blockchain.addBlock(heavyBlock));
+    assertTrue(blockchain.isChainValid());
+  }
+
+  @Test
+  void addBlock_ReorganisesToTheLongestBranch() {
+    Block genesisBlock = blockchain.getBlockAt(0);
+    Chain longestChain =
+        new Chain(null, genesisBlock, new ProofOfWorkSealer(), 0, 0, null, ForkChoice.LONGEST);
+    Block first = new Block(genesisBlock, "v1", 2);
+    first.mineHash();
+    assertTrue(longestChain.addBlock(first));
+
+    Block competitor = new Block(genesisBlock, "v1", 0);
+    competitor.mineHash();
+    assertTrue(longestChain.addBlock(competitor));
+    assertEquals(first.getHash(), longestChain.getLatestBlockHash());
+
+    Block extension = new Block(competitor, "v1", 0);
+    extension.mineHash();
+    assertTrue(longestChain.addBlock(extension));
+    assertEquals(extension.getHash(), longestChain.getLatestBlockHash());
+    assertSame(competitor, longestChain.getBlockAt(1));
+    assertEquals(3, longestChain.size());
+  }
+
+  @Test
+  void addBlock_RejectsBranchesSpendingMissingOutputs()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account account = Account.createAccount();
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Block electionsBlock = new Block(blockchain.getBlockAt(0), "v1", 0);
+    electionsBlock.addTransaction(electionsTransaction);
+    electionsBlock.mineHash();
+    assertTrue(blockchain.addBlock(electionsBlock));
+
+    Block doubleSpend =
+        new Block(
+            blockchain.getBlockAt(0).getHash(),
+            "v1",
+            2,
+            new ArrayList<>(List.of(new TransactionOutput(electionsTransaction))));
+    doubleSpend.addTransaction(
+        account.tally(new ArrayList<>(List.of(new TransactionInput(electionsTransaction)))));
+    doubleSpend.mineHash();
+
+    assertFalse(blockchain.addBlock(doubleSpend));
+    assertFalse(blockchain.isKnownBlock(doubleSpend.getHash()));
+    assertEquals(electionsBlock.getHash(), blockchain.getLatestBlockHash());
+    assertTrue(
+        blockchain
+            .getUtxoStore()
+            .contains(new TransactionOutput(electionsTransaction).getOutpoint()));
+  }
+
+  @Test
+  void addBlock_RejectsReplayedTransactions()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Account account = Account.createAccount();
+    Transaction electionsTransaction = account.createElections("question", new String[] {"a1"});
+    Block electionsBlock = new Block(blockchain.getBlockAt(0), "v1", 0);
+    electionsBlock.addTransaction(electionsTransaction);
+    electionsBlock.mineHash();
+    assertTrue(blockchain.addBlock(electionsBlock));
+
+    Block replay = new Block(electionsBlock, "v1", 0);
+    assertTrue(replay.addTransaction(electionsTransaction));
+    replay.mineHash();
+    assertFalse(blockchain.addBlock(replay));
+    assertEquals(2, blockchain.size());
+
+    Block branch = new Block(blockchain.getBlockAt(0), "v2", 2);
+    branch.addTransaction(electionsTransaction);
+    branch.mineHash();
+    assertTrue(blockchain.addBlock(branch));
+    assertEquals(branch.getHash(), blockchain.getLatestBlockHash());
+    assertSame(electionsTransaction, blockchain.getTransaction(electionsTransaction.getId()));
+
+    Block branchReplay = new Block(branch, "v1", 0);
+    branchReplay.addTransaction(electionsTransaction);
+    branchReplay.mineHash();
+    assertFalse(blockchain.addBlock(branchReplay));
+    assertEquals(branch.getHash(), blockchain.getLatestBlockHash());
+  }
+
+  @Test
+  void rewind_ForgetsBranchesOfRemovedBlocks() {
+    Block block = new Block(blockchain.getBlockAt(0), "v1", 0);
+    block.mineHash();
+    blockchain.addBlock(block);
+    Block child = new Block(block, "v1", 0);
+    child.mineHash();
+    blockchain.addBlock(child);
+    Block sibling = new Block(block, "v2", 0);
+    sibling.mineHash();
+    assertTrue(blockchain.addBlock(sibling));
+    assertEquals(child.getHash(), blockchain.getLatestBlockHash());
+
+    blockchain.rewind(2);
+    assertFalse(blockchain.isKnownBlock(block.getHash()));
+    assertFalse(blockchain.isKnownBlock(sibling.getHash()));
+    assertFalse(blockchain.addBlock(sibling));
+  }
+
+  @Test
+  void constructor_RejectsUnsealedGenesisBlock() {
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    assertThrows(IllegalArgumentException.class, () -> new Chain(genesisBlock));
+  }
+
+  @Test
+  void addBlock_BoundsTheDepthOfCompetingBranches() {
+    Block genesisBlock = blockchain.getBlockAt(0);
+    Block tip = genesisBlock;
+    for (int i = 0; i < Chain.MAX_FORK_DEPTH; i++) {
+      tip = new Block(tip, "v1", 0);
+      tip.mineHash();
+      assertTrue(blockchain.addBlock(tip));
+    }
+    Block shallowFork = new Block(genesisBlock, "v2", 0);
+    shallowFork.mineHash();
+    assertTrue(blockchain.addBlock(shallowFork));
+
+    tip = new Block(tip, "v1", 0);
+    tip.mineHash();
+    assertTrue(blockchain.addBlock(tip));
+    assertFalse(blockchain.isKnownBlock(shallowFork.getHash()));
+    Block deepFork = new Block(genesisBlock, "v3", 0);
+    deepFork.mineHash();
+    assertFalse(blockchain.addBlock(deepFork));
+    assertFalse(blockchain.isKnownBlock(deepFork.getHash()));
+    Block fork = new Block(blockchain.getBlockAt(1), "v2", 0);
+    fork.mineHash();
+    assertTrue(blockchain.addBlock(fork));
+  }
+
+  @Test
+  void addBlock_BoundsTheNumberOfCompetingBlocks() {
+    Block genesisBlock = blockchain.getBlockAt(0);
+    Block block = new Block(genesisBlock, "v1", 0);
+    block.mineHash();
+    assertTrue(blockchain.addBlock(block));
+    for (int i = 0; i < Chain.MAX_SIDE_BLOCKS; i++) {
+      Block competitor = new Block(genesisBlock, "side" + i, 0);
+      competitor.mineHash();
+      assertTrue(blockchain.addBlock(competitor));
+    }
+    Block competitor = new Block(genesisBlock, "side", 0);
+    competitor.mineHash();
+    assertFalse(blockchain.addBlock(competitor));
+    assertEquals(block.getHash(), blockchain.getLatestBlockHash());
+  }
 }
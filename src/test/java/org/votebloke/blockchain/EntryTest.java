@@ -0,0 +1,73 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EntryTest {
+  /** An Entry written against the String id of Entry, without a canonical encoding. */
+  static class StringIdEntry extends Entry {
+    private final String id;
+
+    StringIdEntry(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public ArrayList<TransactionOutput> processEntry(List<TransactionInput> inputEntries) {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public boolean validateEntry() {
+      return true;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public String getEntryType() {
+      return "note";
+    }
+
+    @Override
+    public String getAuthor() {
+      return null;
+    }
+
+    @Override
+    public HashMap<String, String[]> getMetadata() {
+      return new HashMap<>();
+    }
+  }
+
+  @Test
+  void idDigestIsDerivedFromStringId() {
+    Hash256 hash = Hash256.fromString("note");
+    Assertions.assertEquals(hash, new StringIdEntry(hash.toString()).getIdDigest());
+    Assertions.assertEquals(hash, new StringIdEntry("note").getIdDigest());
+    Assertions.assertNull(new StringIdEntry(null).getIdDigest());
+  }
+
+  @Test
+  void entryWithoutEncodingCannotCalculateId() {
+    StringIdEntry entry = new StringIdEntry("note");
+    Assertions.assertThrows(UnsupportedOperationException.class, entry::calculateId);
+  }
+
+  @Test
+  void stringIdIsDerivedFromIdDigest()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Elections elections =
+        new Elections(Account.generateKeys().getPublic(), "question", new String[] {"a1"});
+    elections.processEntry();
+    Assertions.assertEquals(elections.getIdDigest().toString(), elections.getId());
+  }
+}
@@ -0,0 +1,53 @@
+package org.votebloke.blockchain;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class Hash256Test {
+  static final String HEX = "00000f0102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d";
+
+  @Test
+  void hexRoundTrips() {
+    Hash256 hash = Hash256.fromHex(HEX);
+    Assertions.assertEquals(HEX, hash.toString());
+    Assertions.assertEquals(hash, Hash256.of(hash.toByteArray()));
+    Assertions.assertEquals(HEX, Hash256.of(hash.toByteArray()).toString());
+  }
+
+  @Test
+  void equalHashesHaveEqualHashCodes() {
+    Hash256 first = Hash256.fromHex(HEX);
+    Hash256 second = Hash256.of(StringUtils.hexToBytes(HEX));
+    Assertions.assertEquals(first, second);
+    Assertions.assertEquals(first.hashCode(), second.hashCode());
+    Assertions.assertNotEquals(first, Hash256.ZERO);
+  }
+
+  @Test
+  void leadingZeroBitsAreCounted() {
+    Assertions.assertEquals(20, Hash256.fromHex(HEX).leadingZeroBits());
+    Assertions.assertEquals(256, Hash256.ZERO.leadingZeroBits());
+  }
+
+  @Test
+  void fromStringHashesNonHexStrings() {
+    Assertions.assertEquals(Hash256.fromHex(HEX), Hash256.fromString(HEX));
+    Assertions.assertEquals(
+        Hash256.digest("0".getBytes(StandardCharsets.UTF_8)), Hash256.fromString("0"));
+    Assertions.assertNull(Hash256.fromString(null));
+  }
+
+  @Test
+  void invalidLengthsThrow() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Hash256.of(new byte[31]));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Hash256.fromHex("00"));
+  }
+
+  @Test
+  void digestMatchesHashString() {
+    Assertions.assertEquals(
+        StringUtils.hashString("text"),
+        Hash256.digest("text".getBytes(StandardCharsets.UTF_8)).toString());
+  }
+}
@@ -0,0 +1,85 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HeaderChainTest {
+  Chain chain;
+  Transaction provenTransaction;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    genesisBlock.mineHash();
+    chain = new Chain(genesisBlock);
+    Account account = Account.createAccount();
+    for (int height = 1; height <= 3; height++) {
+      Block block = new Block(chain.getBlockAt(height - 1), "v1", 0);
+      for (int i = 0; i < 5; i++) {
+        Transaction transaction = account.createElections("question" + i, new String[] {"a1"});
+        block.addTransaction(transaction);
+        if (height == 2 && i == 3) {
+          provenTransaction = transaction;
+        }
+      }
+      block.mineHash();
+      Assertions.assertTrue(chain.addBlock(block));
+    }
+  }
+
+  @Test
+  void proofOfRecordedTransactionIsVerified() {
+    MerkleProof proof = chain.getInclusionProof(provenTransaction.getId());
+    Assertions.assertTrue(proof.verify());
+    Assertions.assertEquals(3, proof.getAuditPath().size());
+
+    HeaderChain headers = HeaderChain.of(chain.getHeaders(0, chain.size()));
+    Assertions.assertTrue(headers.verify(proof));
+    Assertions.assertEquals(2, headers.getConfirmations(proof));
+  }
+
+  @Test
+  void forgedProofsAreRejected() {
+    MerkleProof proof = chain.getInclusionProof(provenTransaction.getId());
+    HeaderChain headers = HeaderChain.of(chain.getHeaders(0, chain.size()));
+
+    MerkleProof otherTransaction =
+        new MerkleProof(
+            chain.getBlockAt(2).getTransactions().get(0).getIdDigest(),
+            proof.getIndex(),
+            proof.getTransactionCount(),
+            proof.getAuditPath(),
+            proof.getHeader());
+    Assertions.assertFalse(headers.verify(otherTransaction));
+
+    MerkleProof otherBlock =
+        new MerkleProof(
+            proof.getTransactionId(),
+            proof.getIndex(),
+            proof.getTransactionCount(),
+            proof.getAuditPath(),
+            chain.getBlockAt(1).getHeader());
+    Assertions.assertFalse(headers.verify(otherBlock));
+
+    HeaderChain shortHeaders = HeaderChain.of(chain.getHeaders(0, 2));
+    Assertions.assertFalse(shortHeaders.verify(proof));
+    Assertions.assertNull(chain.getInclusionProof(Hash256.ZERO.toString()));
+  }
+
+  @Test
+  void unlinkedHeadersAreNotAdded() {
+    List<BlockHeader> blockHeaders = chain.getHeaders(0, chain.size());
+    HeaderChain headers = new HeaderChain(blockHeaders.get(0));
+    Assertions.assertFalse(headers.add(blockHeaders.get(2)));
+    Assertions.assertTrue(headers.add(blockHeaders.get(1)));
+    Assertions.assertEquals(2, headers.size());
+    Assertions.assertEquals(1, headers.getHeightOfHash(blockHeaders.get(1).getHash()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> HeaderChain.of(List.of(blockHeaders.get(0), blockHeaders.get(3))));
+  }
+}
@@ -0,0 +1,77 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class KeyRegistryTest {
+  KeyRegistry registry;
+  PublicKey key;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    registry = new KeyRegistry();
+    key = Account.generateKeys().getPublic();
+  }
+
+  @Test
+  void registeringTwiceReturnsTheSameKey() {
+    Assertions.assertSame(registry.register(key), registry.register(key));
+    Assertions.assertEquals(1, registry.size());
+  }
+
+  @Test
+  void equalKeyInstancesShareTheId() throws NoSuchAlgorithmException, InvalidKeySpecException {
+    RegisteredKey registeredKey = registry.register(key);
+    PublicKey decodedKey = StringUtils.decodePublicKey(registeredKey.getBase64());
+    Assertions.assertNotSame(key, decodedKey);
+    Assertions.assertSame(registeredKey, registry.register(decodedKey));
+    Assertions.assertSame(key, registry.register(decodedKey).getKey());
+  }
+
+  @Test
+  void base64LookupReturnsRegisteredKey()
+      throws NoSuchAlgorithmException, InvalidKeySpecException {
+    RegisteredKey registeredKey = registry.register(key);
+    Assertions.assertSame(registeredKey, registry.register(registeredKey.getBase64()));
+    Assertions.assertSame(registeredKey, registry.get(registeredKey.getId()));
+  }
+
+  @Test
+  void distinctKeysGetDistinctIds()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    RegisteredKey first = registry.register(key);
+    RegisteredKey second = registry.register(Account.generateKeys().getPublic());
+    Assertions.assertNotEquals(first.getId(), second.getId());
+  }
+
+  @Test
+  void cachedBase64MatchesEncodedKey() {
+    Assertions.assertEquals(
+        Base64.getEncoder().encodeToString(key.getEncoded()),
+        registry.register(key).getBase64());
+    Assertions.assertArrayEquals(key.getEncoded(), registry.register(key).getEncoded());
+  }
+
+  @Test
+  void unreferencedKeysAreForgotten()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, InterruptedException {
+    RegisteredKey kept = registry.register(key);
+    for (int i = 0; i < 10; i++) {
+      registry.register(Account.generateKeys().getPublic());
+    }
+    for (int attempt = 0; attempt < 100 && registry.size() > 1; attempt++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    Assertions.assertEquals(1, registry.size());
+    Assertions.assertSame(kept, registry.register(key));
+    Assertions.assertSame(kept, registry.get(kept.getId()));
+  }
+}
@@ -0,0 +1,134 @@
+package org.votebloke.blockchain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MappedUtxoStoreTest {
+  Path directory;
+  PublicKey author;
+  Elections elections;
+  HashMap<Hash256, Entry> entries = new HashMap<>();
+
+  @BeforeEach
+  void setUp() throws IOException, InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    directory = Files.createTempDirectory("utxo");
+    author = Account.generateKeys().getPublic();
+    elections = new Elections(author, "question", new String[] {"a1"});
+    elections.processEntry();
+    entries.put(elections.getIdDigest(), elections);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  MappedUtxoStore open() throws IOException {
+    return new MappedUtxoStore(directory, 16, (type, id) -> entries.get(id));
+  }
+
+  TransactionOutput output(int number) {
+    return new TransactionOutput(author, elections, Hash256.fromString("tx" + number), number % 3);
+  }
+
+  @Test
+  void addedOutputIsReadBack() throws IOException {
+    try (MappedUtxoStore store = open()) {
+      store.add(output(1));
+      TransactionOutput read = store.get(output(1).getOutpoint());
+
+      Assertions.assertEquals(output(1), read);
+      Assertions.assertTrue(read.isAddressedFrom(author));
+      Assertions.assertSame(elections, read.getData());
+      Assertions.assertTrue(store.contains(output(1).getOutpoint()));
+      Assertions.assertFalse(store.contains(output(2).getOutpoint()));
+    }
+  }
+
+  @Test
+  void spentOutputIsRemoved() throws IOException {
+    try (MappedUtxoStore store = open()) {
+      store.add(output(1));
+      Assertions.assertEquals(output(1), store.spend(output(1).getOutpoint()));
+      Assertions.assertNull(store.spend(output(1).getOutpoint()));
+      Assertions.assertEquals(0, store.size());
+      store.add(output(1));
+      Assertions.assertEquals(1, store.size());
+    }
+  }
+
+  @Test
+  void storeGrowsBeyondItsInitialCapacity() throws IOException {
+    try (MappedUtxoStore store = open()) {
+      for (int i = 0; i < 1000; i++) {
+        store.add(output(i));
+      }
+      for (int i = 0; i < 1000; i += 2) {
+        store.spend(output(i).getOutpoint());
+      }
+
+      Assertions.assertEquals(500, store.size());
+      Assertions.assertTrue(store.getCapacity() >= 1000);
+      for (int i = 0; i < 1000; i++) {
+        Assertions.assertEquals(i % 2 == 1, store.contains(output(i).getOutpoint()));
+      }
+    }
+  }
+
+  @Test
+  void reopenedStoreKeepsItsRecords() throws IOException {
+    try (MappedUtxoStore store = open()) {
+      for (int i = 0; i < 100; i++) {
+        store.add(output(i));
+      }
+      store.spend(output(7).getOutpoint());
+    }
+
+    try (MappedUtxoStore store = open()) {
+      Assertions.assertEquals(99, store.size());
+      Assertions.assertFalse(store.contains(output(7).getOutpoint()));
+      Assertions.assertTrue(store.get(output(8).getOutpoint()).isAddressedFrom(author));
+    }
+  }
+
+  @Test
+  void bestBlockHashSurvivesGrowingAndReopening() throws IOException {
+    Hash256 bestBlockHash = Hash256.fromString("block");
+    try (MappedUtxoStore store = open()) {
+      Assertions.assertNull(store.getBestBlockHash());
+      store.setBestBlockHash(bestBlockHash);
+      for (int i = 0; i < 100; i++) {
+        store.add(output(i));
+      }
+      Assertions.assertEquals(bestBlockHash, store.getBestBlockHash());
+    }
+
+    try (MappedUtxoStore store = open()) {
+      Assertions.assertEquals(bestBlockHash, store.getBestBlockHash());
+      Assertions.assertEquals(100, store.outputs().size());
+      Assertions.assertTrue(store.outputs().contains(output(42)));
+    }
+  }
+
+  @Test
+  void outputWithoutTransactionIsRejected() throws IOException {
+    try (MappedUtxoStore store = open()) {
+      Assertions.assertThrows(
+          IllegalArgumentException.class,
+          () -> store.add(new TransactionOutput(author, elections)));
+    }
+  }
+}
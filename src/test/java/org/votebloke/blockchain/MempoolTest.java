@@ -0,0 +1,170 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MempoolTest {
+  KeyPair keyPair;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    keyPair = Account.generateKeys();
+  }
+
+  Transaction unsignedElections(KeyPair signer, String question) {
+    Elections elections = new Elections(signer.getPublic(), question, new String[] {"a1"});
+    return new Transaction(signer.getPublic(), elections, null);
+  }
+
+  byte[] signatureOf(Transaction transaction) {
+    return StringUtils.signWithEcdsa(keyPair.getPrivate(), transaction.getSignData());
+  }
+
+  @Test
+  void pendingTransactionIsNotAddedTwice() {
+    Mempool mempool = new Mempool(10);
+    Transaction transaction = unsignedElections(keyPair, "question");
+    Assertions.assertTrue(mempool.add(transaction));
+    Assertions.assertFalse(mempool.add(transaction));
+    Assertions.assertEquals(1, mempool.size());
+    Assertions.assertSame(transaction, mempool.get(transaction.getIdDigest()));
+  }
+
+  @Test
+  void oldestTransactionIsEvictedWhenFull() {
+    Mempool mempool = new Mempool(2);
+    Transaction first = unsignedElections(keyPair, "first");
+    Transaction second = unsignedElections(keyPair, "second");
+    Transaction third = unsignedElections(keyPair, "third");
+    mempool.add(first);
+    mempool.add(second);
+    mempool.add(third);
+
+    Assertions.assertEquals(2, mempool.size());
+    Assertions.assertFalse(mempool.contains(first.getIdDigest()));
+    Assertions.assertEquals(List.of(second, third), mempool.getBySigner(first.getSigner()));
+    Assertions.assertEquals(1, mempool.getEvictions());
+  }
+
+  @Test
+  void transactionsAreIndexedBySigner()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Mempool mempool = new Mempool(10);
+    KeyPair otherKeyPair = Account.generateKeys();
+    Transaction own = unsignedElections(keyPair, "own");
+    Transaction other = unsignedElections(otherKeyPair, "other");
+    mempool.add(own);
+    mempool.add(other);
+
+    Assertions.assertEquals(List.of(own), mempool.getUnsigned(own.getSigner()));
+    Assertions.assertEquals(List.of(other), mempool.getUnsigned(other.getSigner()));
+    Assertions.assertEquals(List.of(own, other), mempool.getUnsigned(null));
+    Assertions.assertTrue(mempool.getUnsigned("unknown").isEmpty());
+  }
+
+  @Test
+  void signedTransactionIsDrainedInOrder() {
+    Mempool mempool = new Mempool(10);
+    Transaction first = unsignedElections(keyPair, "first");
+    Transaction second = unsignedElections(keyPair, "second");
+    mempool.add(first);
+    mempool.add(second);
+
+    Assertions.assertNull(mempool.sign(first.getIdDigest(), new byte[] {1, 2, 3}));
+    Assertions.assertSame(second, mempool.sign(second.getIdDigest(), signatureOf(second)));
+    Assertions.assertSame(first, mempool.sign(first.getIdDigest(), signatureOf(first)));
+    Assertions.assertNull(mempool.sign(first.getIdDigest(), signatureOf(first)));
+    Assertions.assertTrue(mempool.getUnsigned(null).isEmpty());
+    Assertions.assertEquals(2, mempool.getReadyCount());
+
+    Assertions.assertEquals(List.of(second), mempool.drain(1));
+    Assertions.assertEquals(List.of(first), mempool.drain(10));
+    Assertions.assertEquals(0, mempool.size());
+  }
+
+  @Test
+  void rejectedSignedTransactionStaysUnsigned() {
+    Mempool mempool = new Mempool(10);
+    Transaction transaction = unsignedElections(keyPair, "question");
+    mempool.add(transaction);
+
+    Assertions.assertFalse(
+        mempool.signAndTake(
+            transaction.getIdDigest(), signatureOf(transaction), signed -> false));
+    Assertions.assertNull(transaction.getSignature());
+    Assertions.assertEquals(List.of(transaction), mempool.getUnsigned(null));
+    Assertions.assertEquals(0, mempool.getReadyCount());
+
+    List<Transaction> taken = new ArrayList<>();
+    Assertions.assertTrue(
+        mempool.signAndTake(transaction.getIdDigest(), signatureOf(transaction), taken::add));
+    Assertions.assertEquals(List.of(transaction), taken);
+    Assertions.assertEquals(0, mempool.size());
+  }
+
+  @Test
+  void restoredTransactionsDoNotEvictPendingOnes() {
+    Mempool mempool = new Mempool(2);
+    Transaction signed = unsignedElections(keyPair, "signed");
+    mempool.add(signed);
+    mempool.sign(signed.getIdDigest(), signatureOf(signed));
+    List<Transaction> drained = mempool.drain(1);
+    Transaction first = unsignedElections(keyPair, "first");
+    Transaction second = unsignedElections(keyPair, "second");
+    mempool.add(first);
+    mempool.add(second);
+
+    Assertions.assertEquals(0, mempool.restore(drained));
+    Assertions.assertEquals(List.of(first, second), mempool.getUnsigned(null));
+    Assertions.assertEquals(1, mempool.getEvictions());
+
+    mempool.remove(first.getIdDigest());
+    Assertions.assertEquals(1, mempool.restore(drained));
+    Assertions.assertEquals(drained, mempool.drain(10));
+  }
+
+  @Test
+  void invalidSignedTransactionIsRejected() {
+    Mempool mempool = new Mempool(10);
+    Transaction transaction = unsignedElections(keyPair, "question");
+    transaction.setSignature(signatureOf(transaction));
+    transaction.data = new Elections(keyPair.getPublic(), "forged", new String[] {"a1"});
+
+    Assertions.assertFalse(mempool.add(transaction));
+    Assertions.assertEquals(0, mempool.size());
+  }
+
+  @Test
+  void concurrentSubmissionsAreAllKept() throws Exception {
+    Mempool mempool = new Mempool(1000);
+    List<Transaction> transactions = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      transactions.add(unsignedElections(keyPair, "question " + i));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> added = new ArrayList<>();
+      for (Transaction transaction : transactions) {
+        added.add(executor.submit(() -> mempool.add(transaction)));
+        added.add(executor.submit(() -> mempool.add(transaction)));
+      }
+      int count = 0;
+      for (Future<Boolean> result : added) {
+        count += result.get() ? 1 : 0;
+      }
+      Assertions.assertEquals(transactions.size(), count);
+      Assertions.assertEquals(transactions.size(), mempool.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
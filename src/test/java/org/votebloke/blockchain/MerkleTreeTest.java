@@ -0,0 +1,88 @@
+package org.votebloke.blockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MerkleTreeTest {
+  static List<Hash256> ids(int count) {
+    List<Hash256> ids = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      ids.add(Hash256.fromString("transaction" + i));
+    }
+    return ids;
+  }
+
+  /** The recursive definition of the Merkle tree hash of RFC 6962. */
+  static Hash256 referenceRoot(List<Hash256> ids) {
+    if (ids.isEmpty()) {
+      return Hash256.digest(new byte[0]);
+    }
+    if (ids.size() == 1) {
+      byte[] data = new byte[1 + Hash256.LENGTH];
+      ids.get(0).writeTo(data, 1);
+      return Hash256.digest(data);
+    }
+    int split = Integer.highestOneBit(ids.size() - 1);
+    return MerkleTree.hashNode(
+        referenceRoot(ids.subList(0, split)), referenceRoot(ids.subList(split, ids.size())));
+  }
+
+  @Test
+  void rootMatchesTheRecursiveDefinition() {
+    MerkleTree tree = new MerkleTree();
+    Assertions.assertEquals(MerkleTree.EMPTY_ROOT, tree.getRoot());
+    List<Hash256> ids = ids(40);
+    for (int size = 1; size <= ids.size(); size++) {
+      tree.append(ids.get(size - 1));
+      Assertions.assertEquals(referenceRoot(ids.subList(0, size)), tree.getRoot());
+    }
+  }
+
+  @Test
+  void truncatedTreeMatchesAFreshTree() {
+    List<Hash256> ids = ids(37);
+    MerkleTree tree = new MerkleTree(ids);
+    for (int size : new int[] {33, 32, 17, 5, 1, 0}) {
+      tree.truncate(size);
+      Assertions.assertEquals(size, tree.size());
+      Assertions.assertEquals(MerkleTree.rootOf(ids.subList(0, size)), tree.getRoot());
+    }
+    tree.append(ids.get(0));
+    Assertions.assertEquals(MerkleTree.rootOf(ids.subList(0, 1)), tree.getRoot());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> tree.truncate(2));
+  }
+
+  @Test
+  void leafCannotPoseAsInnerNode() {
+    List<Hash256> ids = ids(2);
+    Hash256 inner = MerkleTree.rootOf(ids);
+    Assertions.assertNotEquals(inner, MerkleTree.rootOf(List.of(inner)));
+  }
+
+  @Test
+  void auditPathsLeadToTheRoot() {
+    List<Hash256> ids = ids(33);
+    for (int size = 1; size <= ids.size(); size++) {
+      MerkleTree tree = new MerkleTree(ids.subList(0, size));
+      for (int index = 0; index < size; index++) {
+        List<Hash256> path = tree.getAuditPath(index);
+        Assertions.assertEquals(
+            tree.getRoot(), MerkleTree.rootFromAuditPath(ids.get(index), index, size, path));
+      }
+    }
+  }
+
+  @Test
+  void auditPathOfAnotherLeafIsRejected() {
+    List<Hash256> ids = ids(6);
+    MerkleTree tree = new MerkleTree(ids);
+    List<Hash256> path = tree.getAuditPath(2);
+    Hash256 otherLeafRoot = MerkleTree.rootFromAuditPath(ids.get(3), 2, 6, path);
+    Assertions.assertNotEquals(tree.getRoot(), otherLeafRoot);
+    Assertions.assertNull(MerkleTree.rootFromAuditPath(ids.get(2), 2, 6, path.subList(0, 2)));
+    Assertions.assertNull(MerkleTree.rootFromAuditPath(ids.get(2), 6, 6, path));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> tree.getAuditPath(6));
+  }
+}
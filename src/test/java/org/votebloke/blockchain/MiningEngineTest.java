@@ -0,0 +1,29 @@
+package org.votebloke.blockchain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MiningEngineTest {
+  @Test
+  void hashOfMatchesDigestOfHashBaseAndNonceBytes() throws NoSuchAlgorithmException {
+    byte[] hashBase = "hashBase".getBytes(StandardCharsets.UTF_8);
+    MessageDigest md = MessageDigest.getInstance("SHA-256");
+    md.update(hashBase);
+    md.update(new byte[] {0, 0, 1, 2});
+    String expected = StringUtils.bytesToHex(md.digest());
+
+    Assertions.assertEquals(expected, new MiningEngine(hashBase, 0).hashOf(258).toString());
+  }
+
+  @Test
+  void meetsDifficultyCountsLeadingZeroBits() {
+    byte[] digest = new byte[] {0x00, 0x0f, (byte) 0xff};
+    Assertions.assertTrue(MiningEngine.meetsDifficulty(digest, 0));
+    Assertions.assertTrue(MiningEngine.meetsDifficulty(digest, 12));
+    Assertions.assertFalse(MiningEngine.meetsDifficulty(digest, 13));
+    Assertions.assertFalse(MiningEngine.meetsDifficulty(digest, 25));
+  }
+}
@@ -0,0 +1,91 @@
+package org.votebloke.blockchain;
+
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PersistentHashMapTest {
+  /** A key with a configurable hash code to force collisions. */
+  static final class CollidingKey {
+    final int value;
+
+    CollidingKey(int value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CollidingKey && ((CollidingKey) o).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+      return value % 3;
+    }
+  }
+
+  @Test
+  void matchesHashMapUnderRandomOperations() {
+    Random random = new Random(42);
+    HashMap<Integer, Integer> expected = new HashMap<>();
+    PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 20_000; i++) {
+      int key = random.nextInt(5_000);
+      if (random.nextBoolean()) {
+        expected.put(key, i);
+        map = map.plus(key, i);
+      } else {
+        expected.remove(key);
+        map = map.minus(key);
+      }
+    }
+
+    Assertions.assertEquals(expected.size(), map.size());
+    HashMap<Integer, Integer> actual = new HashMap<>();
+    map.forEach(actual::put);
+    Assertions.assertEquals(expected, actual);
+    for (int key = 0; key < 5_000; key++) {
+      Assertions.assertEquals(expected.get(key), map.get(key));
+    }
+  }
+
+  @Test
+  void previousVersionsAreUnchanged() {
+    PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+    PersistentHashMap<String, Integer> first = empty.plus("a", 1);
+    PersistentHashMap<String, Integer> second = first.plus("b", 2).plus("a", 3);
+    PersistentHashMap<String, Integer> third = second.minus("a");
+
+    Assertions.assertEquals(1, first.size());
+    Assertions.assertEquals(Integer.valueOf(1), first.get("a"));
+    Assertions.assertNull(first.get("b"));
+    Assertions.assertEquals(Integer.valueOf(3), second.get("a"));
+    Assertions.assertFalse(third.containsKey("a"));
+    Assertions.assertEquals(Integer.valueOf(2), third.get("b"));
+  }
+
+  @Test
+  void collidingKeysAreKeptApart() {
+    PersistentHashMap<CollidingKey, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 30; i++) {
+      map = map.plus(new CollidingKey(i), i);
+    }
+    Assertions.assertEquals(30, map.size());
+    for (int i = 0; i < 30; i += 2) {
+      map = map.minus(new CollidingKey(i));
+    }
+    Assertions.assertEquals(15, map.size());
+    Assertions.assertNull(map.get(new CollidingKey(4)));
+    Assertions.assertEquals(Integer.valueOf(5), map.get(new CollidingKey(5)));
+  }
+
+  @Test
+  void unchangedMapIsReturnedAsIs() {
+    PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+    PersistentHashMap<String, Integer> map = empty.plus("a", 1);
+    Assertions.assertSame(map, map.minus("b"));
+    Assertions.assertSame(map, map.plus("a", map.get("a")));
+    Assertions.assertTrue(map.minus("a").isEmpty());
+  }
+}
@@ -0,0 +1,112 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProofOfAuthoritySealerTest {
+  Account authority;
+  Account outsider;
+  ProofOfAuthoritySealer sealer;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    authority = Account.createAccount();
+    outsider = Account.createAccount();
+    sealer = new ProofOfAuthoritySealer(authority, List.of(authority.getPublicKey()));
+  }
+
+  @Test
+  void sealedBlockIsValid() {
+    Block block = new Block("previousHash", "v1", 0, null);
+    block.seal(sealer);
+    Assertions.assertEquals(authority.getPublicKey(), block.getSealSigner());
+    Assertions.assertTrue(block.isBlockValid(sealer));
+  }
+
+  @Test
+  void blockSealedByOutsiderIsNotVerified() {
+    Block block = new Block("previousHash", "v1", 0, null);
+    block.seal(
+        new ProofOfAuthoritySealer(
+            outsider, List.of(authority.getPublicKey(), outsider.getPublicKey())));
+    Assertions.assertTrue(block.isBlockValid());
+    Assertions.assertFalse(sealer.verifySeal(block));
+  }
+
+  @Test
+  void minedBlockIsNotVerified() {
+    Block block = new Block("previousHash", "v1", 0, null);
+    block.mineHash();
+    Assertions.assertFalse(sealer.verifySeal(block));
+  }
+
+  @Test
+  void sealingByOutsiderThrows() {
+    ProofOfAuthoritySealer outsiderSealer =
+        new ProofOfAuthoritySealer(outsider, List.of(authority.getPublicKey()));
+    Block block = new Block("previousHash", "v1", 0, null);
+    Assertions.assertThrows(IllegalStateException.class, () -> block.seal(outsiderSealer));
+  }
+
+  @Test
+  void chainAcceptsOnlyBlocksSealedByAuthority() {
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    genesisBlock.seal(sealer);
+    Chain chain =
+        new Chain(genesisBlock, new ProofOfAuthoritySealer(List.of(authority.getPublicKey())));
+
+    Block minedBlock = new Block(chain.getLatestBlockHash(), "v1", 0, null);
+    minedBlock.mineHash();
+    Assertions.assertFalse(chain.addBlock(minedBlock));
+
+    Block sealedBlock = new Block(chain.getLatestBlockHash(), "v1", 0, null);
+    sealedBlock.seal(sealer);
+    Assertions.assertTrue(chain.addBlock(sealedBlock));
+    Assertions.assertTrue(chain.isChainValid());
+  }
+
+  @Test
+  void headerChainAcceptsOnlyHeadersSealedByAuthority() {
+    ProofOfAuthoritySealer verifier = new ProofOfAuthoritySealer(List.of(authority.getPublicKey()));
+    Block genesisBlock = new Block("0", "v1", 0, null);
+    genesisBlock.seal(sealer);
+    Chain chain = new Chain(genesisBlock, verifier);
+    Block sealedBlock = new Block(chain.getBlockAt(0), "v1", 0);
+    sealedBlock.seal(sealer);
+    Assertions.assertTrue(chain.addBlock(sealedBlock));
+
+    HeaderChain headers = HeaderChain.of(chain.getHeaders(0, chain.size()), verifier);
+    Assertions.assertEquals(2, headers.size());
+    Assertions.assertTrue(verifier.verifySeal(sealedBlock.getHeader()));
+
+    Block minedBlock = new Block(sealedBlock, "v1", 0);
+    minedBlock.mineHash();
+    Assertions.assertTrue(minedBlock.getHeader().isHashValid());
+    Assertions.assertFalse(headers.add(minedBlock.getHeader()));
+
+    Block outsiderBlock = new Block(sealedBlock, "v2", 0);
+    outsiderBlock.seal(
+        new ProofOfAuthoritySealer(
+            outsider, List.of(authority.getPublicKey(), outsider.getPublicKey())));
+    Assertions.assertFalse(headers.add(outsiderBlock.getHeader()));
+
+    BlockHeader header = minedBlock.getHeader();
+    BlockHeader copiedSeal =
+        new BlockHeader(
+            header.getBlockVersion(),
+            header.getTimeStamp(),
+            header.getPreviousHash(),
+            header.getMerkleRoot(),
+            header.getMiningDifficulty(),
+            header.getNonce(),
+            header.getHash(),
+            sealedBlock.getSealSigner(),
+            sealedBlock.getSealSignature());
+    Assertions.assertFalse(headers.add(copiedSeal));
+    Assertions.assertEquals(2, headers.size());
+  }
+}
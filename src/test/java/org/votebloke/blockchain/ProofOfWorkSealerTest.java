@@ -0,0 +1,25 @@
+package org.votebloke.blockchain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ProofOfWorkSealerTest {
+  @Test
+  void sealedBlockIsValid() {
+    Block block = new Block("previousHash", "v1", 8, null);
+    ProofOfWorkSealer sealer = new ProofOfWorkSealer(2);
+    block.seal(sealer);
+    Assertions.assertTrue(block.isBlockValid(sealer));
+  }
+
+  @Test
+  void unsealedBlockIsNotVerified() {
+    Block block = new Block("previousHash", "v1", 0, null);
+    Assertions.assertFalse(new ProofOfWorkSealer().verifySeal(block));
+  }
+
+  @Test
+  void nonPositiveParallelismThrows() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new ProofOfWorkSealer(0));
+  }
+}
@@ -41,4 +41,16 @@ class StringUtilsTest {
     byte[] encryptedData = StringUtils.signWithEcdsa(keyPair.getPrivate(), dummyData);
     Assertions.assertTrue(StringUtils.verifyEcdsa(keyPair.getPublic(), dummyData, encryptedData));
   }
+
+  @Test
+  void bytesToHexPadsEveryByteToTwoDigits() {
+    Assertions.assertEquals("000fa0ff", StringUtils.bytesToHex(new byte[] {0, 15, -96, -1}));
+  }
+
+  @Test
+  void hexToBytesReversesBytesToHex() {
+    byte[] bytes = new byte[] {0, 15, -96, -1};
+    Assertions.assertArrayEquals(bytes, StringUtils.hexToBytes(StringUtils.bytesToHex(bytes)));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> StringUtils.hexToBytes("0g"));
+  }
 }
@@ -3,6 +3,7 @@ package org.votebloke.blockchain;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -33,9 +34,29 @@ class TransactionOutputTest {
     Assertions.assertTrue(to.isAddressedFrom(author));
   }
 
+  @Test
+  void isAddressedMatchesDecodedCopyOfAuthor()
+      throws NoSuchAlgorithmException, InvalidKeySpecException {
+    TransactionOutput to = new TransactionOutput(author, testElections);
+    PublicKey decodedAuthor = StringUtils.decodePublicKey(StringUtils.keyToString(author));
+    Assertions.assertTrue(to.isAddressedFrom(decodedAuthor));
+    Assertions.assertEquals(
+        KeyRegistry.getDefault().register(author).getId(), to.getAuthorKeyId());
+  }
+
   @Test
   void getDataMatchesPassedData() {
     TransactionOutput to = new TransactionOutput(author, testElections);
     Assertions.assertEquals(testElections, to.getData());
   }
+
+  @Test
+  void outputsWithEqualOutpointsAreEqual() {
+    TransactionOutput to = new TransactionOutput(author, testElections, "parent");
+    TransactionOutput copy = new TransactionOutput(author, new Elections(author), "parent");
+    Assertions.assertEquals(to, copy);
+    Assertions.assertEquals(to.hashCode(), copy.hashCode());
+    Assertions.assertEquals(to.getOutpoint(), copy.getOutpoint());
+    Assertions.assertNotEquals(to, new TransactionOutput(author, testElections, "other"));
+  }
 }
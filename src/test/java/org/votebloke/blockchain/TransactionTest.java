@@ -28,4 +28,21 @@ class TransactionTest {
     Transaction transaction = new Transaction(keyPair.getPublic(), elections, null);
     Assertions.assertNotNull(transaction.getId());
   }
+
+  @Test
+  void signDataIsTheHashOfTheCanonicalEncoding() {
+    elections.processEntry();
+    Transaction transaction = new Transaction(keyPair.getPublic(), elections, null);
+    CanonicalEncoder encoder = new CanonicalEncoder();
+    transaction.encode(encoder);
+    Assertions.assertEquals(encoder.hash(), transaction.getSignData());
+    Assertions.assertEquals(transaction.getId(), transaction.getSignData());
+  }
+
+  @Test
+  void signedTransactionValidates() {
+    Transaction transaction = new Transaction(keyPair.getPublic(), elections, null);
+    transaction.sign(keyPair.getPrivate());
+    Assertions.assertTrue(transaction.validate());
+  }
 }
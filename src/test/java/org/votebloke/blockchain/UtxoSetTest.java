@@ -0,0 +1,89 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UtxoSetTest {
+  PublicKey author;
+  UtxoSet utxoSet;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    author = Account.generateKeys().getPublic();
+    utxoSet = new UtxoSet();
+  }
+
+  @Test
+  void addedOutputIsContainedByOutpoint() {
+    TransactionOutput output = new TransactionOutput(author, new Elections(author), "parent");
+    utxoSet.add(output);
+    Assertions.assertTrue(utxoSet.contains(new Outpoint(Hash256.fromString("parent"), 0)));
+    Assertions.assertFalse(utxoSet.contains(new Outpoint(Hash256.fromString("parent"), 1)));
+    Assertions.assertSame(output, utxoSet.get(output.getOutpoint()));
+  }
+
+  @Test
+  void spentOutputIsRemoved() {
+    TransactionOutput output = new TransactionOutput(author, new Elections(author), "parent");
+    utxoSet.add(output);
+    Assertions.assertSame(output, utxoSet.spend(new TransactionOutput(author, null, "parent")));
+    Assertions.assertEquals(0, utxoSet.size());
+    Assertions.assertNull(utxoSet.spend(output));
+  }
+
+  @Test
+  void outputsAreIteratedInInsertionOrder() {
+    TransactionOutput first = new TransactionOutput(author, null, "first");
+    TransactionOutput second = new TransactionOutput(author, null, "second");
+    utxoSet = new UtxoSet(List.of(second, first));
+    Assertions.assertEquals(List.of(second, first), List.copyOf(utxoSet.outputs()));
+  }
+
+  @Test
+  void negativeIndexThrows() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new Outpoint(Hash256.ZERO, -1));
+  }
+
+  @Test
+  void indexesFollowAddAndSpend() {
+    Elections elections = new Elections(author, "question", new String[] {"a1"});
+    elections.processEntry();
+    TransactionOutput electionsOutput = new TransactionOutput(author, elections, "elections");
+    Vote vote = new Vote(author, elections, "a1");
+    vote.processEntry();
+    TransactionOutput voteOutput = new TransactionOutput(author, vote, "vote");
+    utxoSet.add(electionsOutput);
+    utxoSet.add(voteOutput);
+
+    Assertions.assertEquals(List.of(electionsOutput, voteOutput), utxoSet.authoredBy(author));
+    Assertions.assertEquals(List.of(voteOutput), utxoSet.authoredBy(author, Vote.class));
+    Assertions.assertEquals(2, utxoSet.authoredBy(author, Entry.class).size());
+    Assertions.assertEquals(List.of(electionsOutput), utxoSet.ofEntryClass(Elections.class));
+    Assertions.assertEquals(List.of(voteOutput), utxoSet.votesIn(elections.getIdDigest()));
+
+    utxoSet.spend(voteOutput);
+    Assertions.assertEquals(List.of(electionsOutput), utxoSet.authoredBy(author));
+    Assertions.assertTrue(utxoSet.votesIn(elections.getIdDigest()).isEmpty());
+    Assertions.assertTrue(utxoSet.authoredBy(null).isEmpty());
+  }
+
+  @Test
+  void branchIsIndependentOfItsParent() {
+    TransactionOutput first = new TransactionOutput(author, new Elections(author), "first");
+    TransactionOutput second = new TransactionOutput(author, new Elections(author), "second");
+    utxoSet.add(first);
+    UtxoSet branch = utxoSet.branch();
+    branch.spend(first);
+    branch.add(second);
+
+    Assertions.assertEquals(List.of(first), utxoSet.outputs());
+    Assertions.assertEquals(List.of(first), utxoSet.authoredBy(author));
+    Assertions.assertEquals(List.of(second), branch.outputs());
+    Assertions.assertEquals(List.of(second), branch.ofEntryClass(Elections.class));
+  }
+}
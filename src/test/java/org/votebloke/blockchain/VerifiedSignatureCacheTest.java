@@ -0,0 +1,68 @@
+package org.votebloke.blockchain;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VerifiedSignatureCacheTest {
+  KeyPair keyPair;
+  byte[] signature;
+
+  @BeforeEach
+  void setUp() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    keyPair = Account.generateKeys();
+    signature = StringUtils.signWithEcdsa(keyPair.getPrivate(), "data");
+  }
+
+  @Test
+  void repeatedVerificationIsAHit() {
+    VerifiedSignatureCache cache = new VerifiedSignatureCache(10);
+    Assertions.assertTrue(cache.verify(keyPair.getPublic(), "data", signature));
+    Assertions.assertTrue(cache.verify(keyPair.getPublic(), "data", signature));
+    Assertions.assertEquals(1, cache.getMisses());
+    Assertions.assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  void differentDataIsNotVouchedFor() {
+    VerifiedSignatureCache cache = new VerifiedSignatureCache(10);
+    Assertions.assertTrue(cache.verify(keyPair.getPublic(), "data", signature));
+    Assertions.assertFalse(cache.verify(keyPair.getPublic(), "other data", signature));
+    Assertions.assertEquals(1, cache.size());
+  }
+
+  @Test
+  void leastRecentlyUsedEntryIsEvicted() {
+    VerifiedSignatureCache cache = new VerifiedSignatureCache(1);
+    byte[] otherSignature = StringUtils.signWithEcdsa(keyPair.getPrivate(), "other data");
+    cache.verify(keyPair.getPublic(), "data", signature);
+    cache.verify(keyPair.getPublic(), "other data", otherSignature);
+    Assertions.assertEquals(1, cache.size());
+    cache.verify(keyPair.getPublic(), "data", signature);
+    Assertions.assertEquals(3, cache.getMisses());
+  }
+
+  @Test
+  void expiredEntryIsVerifiedAgain() throws InterruptedException {
+    VerifiedSignatureCache cache = new VerifiedSignatureCache(10, Duration.ofMillis(1));
+    cache.verify(keyPair.getPublic(), "data", signature);
+    Thread.sleep(5);
+    cache.verify(keyPair.getPublic(), "data", signature);
+    Assertions.assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  void transactionValidationConsultsDefaultCache()
+      throws InvalidAlgorithmParameterException, NoSuchAlgorithmException {
+    Transaction transaction =
+        Account.createAccount().createElections("question", new String[] {"a1"});
+    long hits = VerifiedSignatureCache.getDefault().getHits();
+    Assertions.assertTrue(transaction.validate());
+    Assertions.assertTrue(transaction.validate());
+    Assertions.assertTrue(VerifiedSignatureCache.getDefault().getHits() > hits);
+  }
+}